@@ -0,0 +1,45 @@
+package networksimulator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time to add a topology's devices one by one, including the duplicate name and IP checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AddDeviceBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int deviceCount;
+
+    private String[] names;
+    private String[] addresses;
+    private NetworkSimulator simulator;
+
+    @Setup(Level.Trial)
+    public void generateDevices() {
+        names = new String[deviceCount];
+        addresses = new String[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            names[i] = TopologyGenerator.name(i);
+            addresses[i] = NetworkSimulator.formatAddress((10 << 24) | i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newSimulator() {
+        simulator = new NetworkSimulator();
+    }
+
+    @Benchmark
+    public NetworkSimulator addDevices() {
+        for (int i = 0; i < deviceCount; i++) {
+            simulator.addDevice(names[i], addresses[i], "255.0.0.0");
+        }
+        return simulator;
+    }
+}
@@ -0,0 +1,52 @@
+package networksimulator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Longest-prefix-match lookups against a single device's routing table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FindNextHopBenchmark {
+    private static final int ADDRESSES = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int routeCount;
+
+    private NetworkSimulator.NetworkDevice device;
+    private final int[] addresses = new int[ADDRESSES];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("router", "192.168.0.1", "255.255.255.0");
+        Map<String, String> routes = new HashMap<>();
+        int[] prefixes = new int[routeCount];
+        for (int i = 0; i < routeCount; i++) {
+            prefixes[i] = random.nextInt();
+            routes.put(NetworkSimulator.formatAddress(prefixes[i]) + "/" + (8 + random.nextInt(25)), "hop" + (i % 64));
+        }
+        simulator.addStaticRoutes("router", routes);
+        device = simulator.getDevices().get("router");
+
+        // Mostly addresses inside a configured prefix, some anywhere
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses[i] = i % 4 == 0 ? random.nextInt() : prefixes[random.nextInt(routeCount)] ^ random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public String findNextHop() {
+        return device.findNextHop(addresses[next++ & (ADDRESSES - 1)]);
+    }
+}
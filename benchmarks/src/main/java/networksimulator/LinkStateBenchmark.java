@@ -0,0 +1,62 @@
+package networksimulator;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Link-state convergence on a square grid of routers with unit costs: a full SPF over every
+ * router, and the incremental update after one link fails and comes back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LinkStateBenchmark {
+    @Param({"8", "16", "32"})
+    public int side;
+
+    private NetworkSimulator simulator;
+    private String a;
+    private String b;
+
+    @Setup(Level.Trial)
+    public void buildGrid() {
+        simulator = new NetworkSimulator();
+        for (int i = 0; i < side * side; i++) {
+            simulator.addDevice(TopologyGenerator.name(i), NetworkSimulator.formatAddress((10 << 24) | i), "255.0.0.0");
+        }
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int id = row * side + column;
+                if (column + 1 < side) {
+                    simulator.connect(TopologyGenerator.name(id), TopologyGenerator.name(id + 1), 1);
+                }
+                if (row + 1 < side) {
+                    simulator.connect(TopologyGenerator.name(id), TopologyGenerator.name(id + side), 1);
+                }
+            }
+        }
+        simulator.enableLinkStateRouting();
+        // A link in the middle of the grid, used by many shortest paths
+        int middle = (side / 2) * side + side / 2;
+        a = TopologyGenerator.name(middle);
+        b = TopologyGenerator.name(middle + 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LinkStateRouting fullConvergence() {
+        simulator.getLinkStateRouting().rebuild();
+        return simulator.getLinkStateRouting();
+    }
+
+    @Benchmark
+    public LinkStateRouting linkFailureAndRestore() {
+        simulator.disconnect(a, b);
+        simulator.connect(a, b, 1);
+        return simulator.getLinkStateRouting();
+    }
+}
@@ -0,0 +1,72 @@
+package networksimulator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End-to-end packet simulation between random device pairs of generated topologies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PacketPathBenchmark {
+    private static final int PAIRS = 1024;
+    private static final int BATCH_PACKETS = 256;
+
+    @Param({"bus", "star", "ring", "mesh"})
+    public String topology;
+
+    @Param({"10", "1000", "100000"})
+    public int deviceCount;
+
+    private NetworkSimulator simulator;
+    private final String[] sources = new String[PAIRS];
+    private final String[] destinations = new String[PAIRS];
+    private final List<TrafficFlow> batch = new ArrayList<>();
+    private int next;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() {
+        simulator = TopologyGenerator.build(topology, deviceCount);
+        int devices = TopologyGenerator.actualDeviceCount(topology, deviceCount);
+        Random random = new Random(42);
+        for (int i = 0; i < PAIRS; i++) {
+            sources[i] = TopologyGenerator.name(random.nextInt(devices));
+            destinations[i] = TopologyGenerator.name(random.nextInt(devices));
+        }
+        for (int i = 0; i < BATCH_PACKETS; i++) {
+            batch.add(new TrafficFlow(sources[i], destinations[i], 1));
+        }
+        simulator.compileForwarding();
+
+        // simulatePacketPath logs every hop; keep console I/O out of the measurement
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public List<String> simulatePacketPath() {
+        int pair = next++ & (PAIRS - 1);
+        return simulator.simulatePacketPath(sources[pair], destinations[pair]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_PACKETS)
+    public TrafficResult simulateTraffic() {
+        return simulator.simulateTraffic(batch);
+    }
+}
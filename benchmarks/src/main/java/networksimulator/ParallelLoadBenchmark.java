@@ -0,0 +1,63 @@
+package networksimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One load simulation of random paced flows over a 32x32 grid with link-state routing, on one
+ * thread and split into partitions. Every run produces the same result; only the wall time
+ * should change with the partition count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelLoadBenchmark {
+    private static final int SIDE = 32;
+
+    @Param({"1", "2", "4", "8"})
+    public int partitions;
+
+    private NetworkSimulator simulator;
+    private List<TrafficFlow> flows;
+
+    @Setup(Level.Trial)
+    public void buildGrid() {
+        simulator = new NetworkSimulator();
+        for (int i = 0; i < SIDE * SIDE; i++) {
+            simulator.addDevice(TopologyGenerator.name(i), NetworkSimulator.formatAddress((10 << 24) | i), "255.0.0.0");
+        }
+        simulator.setLinkDefaults(100_000_000L, 1, 64, QueueDiscipline.RED);
+        for (int row = 0; row < SIDE; row++) {
+            for (int column = 0; column < SIDE; column++) {
+                int id = row * SIDE + column;
+                if (column + 1 < SIDE) {
+                    simulator.connect(TopologyGenerator.name(id), TopologyGenerator.name(id + 1), 1);
+                }
+                if (row + 1 < SIDE) {
+                    simulator.connect(TopologyGenerator.name(id), TopologyGenerator.name(id + SIDE), 1);
+                }
+            }
+        }
+        simulator.enableLinkStateRouting();
+        simulator.setSeed(1);
+
+        Random random = new Random(42);
+        flows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String source = TopologyGenerator.name(random.nextInt(SIDE * SIDE));
+            String destination = TopologyGenerator.name(random.nextInt(SIDE * SIDE));
+            flows.add(new TrafficFlow(source, destination, 1000, 1000));
+        }
+    }
+
+    @Benchmark
+    public TrafficResult simulateLoad() {
+        return simulator.simulateLoad(flows, partitions);
+    }
+}
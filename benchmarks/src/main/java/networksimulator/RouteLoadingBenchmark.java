@@ -0,0 +1,52 @@
+package networksimulator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time to fill one device's routing table route by route and in bulk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RouteLoadingBenchmark {
+    @Param({"10000", "1000000"})
+    public int routeCount;
+
+    private final Map<String, String> routes = new LinkedHashMap<>();
+    private NetworkSimulator simulator;
+
+    @Setup(Level.Trial)
+    public void generateRoutes() {
+        Random random = new Random(42);
+        while (routes.size() < routeCount) {
+            routes.put(NetworkSimulator.formatAddress(random.nextInt()) + "/" + (8 + random.nextInt(25)), "hop" + random.nextInt(64));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newSimulator() {
+        simulator = new NetworkSimulator();
+        simulator.addDevice("router", "192.168.0.1", "255.255.255.0");
+    }
+
+    @Benchmark
+    public NetworkSimulator addStaticRoute() {
+        for (Map.Entry<String, String> route : routes.entrySet()) {
+            simulator.addStaticRoute("router", route.getKey(), route.getValue());
+        }
+        return simulator;
+    }
+
+    @Benchmark
+    public NetworkSimulator addStaticRoutes() {
+        simulator.addStaticRoutes("router", routes);
+        return simulator;
+    }
+}
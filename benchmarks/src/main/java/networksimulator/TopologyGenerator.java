@@ -0,0 +1,143 @@
+package networksimulator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Builds bus, star, ring and mesh topologies of any size for the benchmarks. Every device
+ * can reach every other one, and routes are aggregated into CIDR blocks so that large
+ * topologies stay at O(log n) routes per device (except the star hub, which has one per leaf).
+ */
+final class TopologyGenerator {
+    private static final int BASE = 10 << 24; // Devices live in 10.0.0.0/8
+    private static final int MESH_ROW_BITS = 12; // Mesh addresses are 10.0.0.0 | row << 12 | column
+
+    private TopologyGenerator() {
+    }
+
+    static NetworkSimulator build(String shape, int deviceCount) {
+        switch (shape) {
+            case "bus":
+                return bus(deviceCount);
+            case "star":
+                return star(deviceCount);
+            case "ring":
+                return ring(deviceCount);
+            case "mesh":
+                return mesh(deviceCount);
+            default:
+                throw new IllegalArgumentException("Unknown topology: " + shape);
+        }
+    }
+
+    static String name(int device) {
+        return "d" + device;
+    }
+
+    // The mesh keeps the largest full grid that fits in deviceCount
+    static int actualDeviceCount(String shape, int deviceCount) {
+        if (!shape.equals("mesh")) {
+            return deviceCount;
+        }
+        int columns = meshColumns(deviceCount);
+        return columns * Math.max(1, deviceCount / columns);
+    }
+
+    private static NetworkSimulator bus(int n) {
+        NetworkSimulator simulator = addDevices(n, i -> i);
+        for (int i = 0; i < n; i++) {
+            Map<String, String> routes = new HashMap<>();
+            addRange(routes, 0, i - 1, name(i - 1));
+            addRange(routes, i + 1, n - 1, name(i + 1));
+            simulator.addStaticRoutes(name(i), routes);
+        }
+        return simulator;
+    }
+
+    private static NetworkSimulator star(int n) {
+        NetworkSimulator simulator = addDevices(n, i -> i);
+        Map<String, String> hubRoutes = new HashMap<>();
+        for (int i = 1; i < n; i++) {
+            hubRoutes.put(NetworkSimulator.formatAddress(BASE | i), name(i));
+            simulator.addStaticRoute(name(i), "0.0.0.0/0", name(0));
+        }
+        simulator.addStaticRoutes(name(0), hubRoutes);
+        return simulator;
+    }
+
+    private static NetworkSimulator ring(int n) {
+        NetworkSimulator simulator = addDevices(n, i -> i);
+        int half = n / 2;
+        for (int i = 0; i < n; i++) {
+            Map<String, String> routes = new HashMap<>();
+            addWrappedRange(routes, i + 1, half, n, name((i + 1) % n)); // Clockwise half
+            addWrappedRange(routes, i + half + 1, n - 1 - half, n, name((i + n - 1) % n));
+            simulator.addStaticRoutes(name(i), routes);
+        }
+        return simulator;
+    }
+
+    // Grid with row-first routing: a packet first moves to its row, then along it
+    private static NetworkSimulator mesh(int requested) {
+        int columns = meshColumns(requested);
+        int rows = Math.max(1, requested / columns);
+        NetworkSimulator simulator = addDevices(rows * columns, i -> (i / columns) << MESH_ROW_BITS | (i % columns));
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int rowStart = row << MESH_ROW_BITS;
+                Map<String, String> routes = new HashMap<>();
+                addRange(routes, 0, rowStart - 1, name((row - 1) * columns + column));
+                addRange(routes, rowStart + (1 << MESH_ROW_BITS), (rows << MESH_ROW_BITS) - 1,
+                    name((row + 1) * columns + column));
+                addRange(routes, rowStart, rowStart + column - 1, name(row * columns + column - 1));
+                addRange(routes, rowStart + column + 1, rowStart + columns - 1, name(row * columns + column + 1));
+                simulator.addStaticRoutes(name(row * columns + column), routes);
+            }
+        }
+        return simulator;
+    }
+
+    private static int meshColumns(int deviceCount) {
+        int columns = (int) Math.ceil(Math.sqrt(deviceCount));
+        if (columns > 1 << MESH_ROW_BITS) {
+            throw new IllegalArgumentException("Mesh too large: " + deviceCount);
+        }
+        return columns;
+    }
+
+    private static NetworkSimulator addDevices(int n, IntUnaryOperator offset) {
+        NetworkSimulator simulator = new NetworkSimulator();
+        for (int i = 0; i < n; i++) {
+            simulator.addDevice(name(i), NetworkSimulator.formatAddress(BASE | offset.applyAsInt(i)), "255.0.0.0");
+        }
+        return simulator;
+    }
+
+    private static void addWrappedRange(Map<String, String> routes, int start, int count, int n, String nextHop) {
+        if (count <= 0) {
+            return;
+        }
+        int first = start % n;
+        int last = first + count - 1;
+        if (last < n) {
+            addRange(routes, first, last, nextHop);
+        } else {
+            addRange(routes, first, n - 1, nextHop);
+            addRange(routes, 0, last - n, nextHop);
+        }
+    }
+
+    // Covers offsets low..high (inclusive) of 10.0.0.0/8 with the fewest CIDR blocks
+    private static void addRange(Map<String, String> routes, int low, int high, String nextHop) {
+        while (low <= high) {
+            int size = low == 0 ? 1 << 24 : Integer.lowestOneBit(low);
+            while (low + size - 1 > high) {
+                size >>= 1;
+            }
+            int prefixLength = 32 - Integer.numberOfTrailingZeros(size);
+            routes.put(NetworkSimulator.formatAddress(BASE | low) + "/" + prefixLength, nextHop);
+            low += size;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Trace sink that hands fixed-size binary records to a background writer through a lock-free
+ * ring buffer. The writer appends them to a memory-mapped file, so the forwarding path never
+ * blocks or formats text. When the buffer is full, records are counted as dropped instead.
+ *
+ * File layout (little-endian): a 32-byte header {int magic, short version, short recordSize,
+ * long recordCount, long droppedRecords, long reserved}, recordCount 32-byte records
+ * {long time, long packet, int event, int engine, int device, int other}, then the device
+ * names as {int count, count x (short length, UTF-8 bytes)}. TraceDecoder reads it back.
+ */
+public class BinaryTrace implements TraceSink, AutoCloseable {
+    static final int MAGIC = 0x4E535452; // "NSTR"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+    private static final int WORDS_PER_RECORD = 4;
+    private static final long REGION_SIZE = 64L << 20; // Bytes mapped at a time
+
+    private final int sampleEvery;
+    private final int mask;
+    private final long[] buffer;
+    private final AtomicLongArray published; // Sequence + 1 of the record last written to each slot
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final LongAdder droppedRecords = new LongAdder();
+
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile boolean closing;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long recordCount;
+
+    public BinaryTrace(Path file, TraceMode mode, int sampleEvery, int bufferRecords) throws IOException {
+        if (mode == TraceMode.OFF) {
+            throw new IllegalArgumentException("Use TraceSink.NONE when tracing is off");
+        }
+        if (Integer.bitCount(bufferRecords) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two: " + bufferRecords);
+        }
+        this.sampleEvery = mode == TraceMode.FULL ? 1 : Math.max(1, sampleEvery);
+        this.mask = bufferRecords - 1;
+        this.buffer = new long[bufferRecords * WORDS_PER_RECORD];
+        this.published = new AtomicLongArray(bufferRecords);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        map(0);
+        region.position(HEADER_SIZE);
+        this.writer = new Thread(this::drainLoop, "trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public boolean samples(long packet) {
+        return packet % sampleEvery == 0;
+    }
+
+    @Override
+    public void record(int event, long time, int engine, long packet, int device, int other) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed > mask) {
+                droppedRecords.increment(); // Never stall the forwarding path on a slow disk
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        int base = slot * WORDS_PER_RECORD;
+        buffer[base] = time;
+        buffer[base + 1] = packet;
+        buffer[base + 2] = ((long) event << 32) | (engine & 0xFFFFFFFFL);
+        buffer[base + 3] = ((long) device << 32) | (other & 0xFFFFFFFFL);
+        published.lazySet(slot, sequence + 1);
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    /** Flushes every published record, writes the device names and closes the file. */
+    public void close(String[] deviceNames) throws IOException {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        long namesStart = HEADER_SIZE + recordCount * RECORD_SIZE;
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE)
+            .putLong(recordCount).putLong(droppedRecords.sum()).putLong(0);
+        header.force();
+
+        channel.truncate(namesStart);
+        int namesSize = 4;
+        byte[][] encoded = new byte[deviceNames.length][];
+        for (int i = 0; i < deviceNames.length; i++) {
+            encoded[i] = deviceNames[i].getBytes(StandardCharsets.UTF_8);
+            namesSize += 2 + encoded[i].length;
+        }
+        ByteBuffer names = ByteBuffer.allocate(namesSize).order(ByteOrder.LITTLE_ENDIAN);
+        names.putInt(deviceNames.length);
+        for (byte[] name : encoded) {
+            names.putShort((short) name.length).put(name);
+        }
+        names.flip();
+        channel.position(namesStart);
+        while (names.hasRemaining()) {
+            channel.write(names);
+        }
+        channel.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(new String[0]);
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean finishing = closing; // Read before draining so nothing published earlier is missed
+            if (drain() == 0) {
+                if (finishing) {
+                    break;
+                }
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+        region.force();
+    }
+
+    private int drain() {
+        long position = consumed;
+        int drained = 0;
+        while (true) {
+            int slot = (int) position & mask;
+            if (published.get(slot) != position + 1) {
+                break;
+            }
+            int base = slot * WORDS_PER_RECORD;
+            if (region.remaining() < RECORD_SIZE) {
+                region.force();
+                map(regionStart + region.position());
+            }
+            region.putLong(buffer[base]);
+            region.putLong(buffer[base + 1]);
+            region.putInt((int) (buffer[base + 2] >>> 32));
+            region.putInt((int) buffer[base + 2]);
+            region.putInt((int) (buffer[base + 3] >>> 32));
+            region.putInt((int) buffer[base + 3]);
+            position++;
+            recordCount++;
+            if (++drained % 1024 == 0) {
+                consumed = position; // Free slots for producers while a long backlog drains
+            }
+        }
+        consumed = position;
+        return drained;
+    }
+
+    private void map(long start) {
+        try {
+            region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map trace file", e);
+        }
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regionStart = start;
+    }
+}
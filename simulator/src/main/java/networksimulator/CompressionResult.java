@@ -0,0 +1,55 @@
+package networksimulator;
+
+/**
+ * Forwarding table sizes before and after NetworkSimulator.compressForwardingTables.
+ */
+public class CompressionResult {
+    private final int devices;
+    private final long routesBefore;
+    private final long entriesAfter;
+    private final int unverified;
+    private final long elapsedNanos;
+
+    public CompressionResult(int devices, long routesBefore, long entriesAfter, int unverified, long elapsedNanos) {
+        this.devices = devices;
+        this.routesBefore = routesBefore;
+        this.entriesAfter = entriesAfter;
+        this.unverified = unverified;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getDevices() {
+        return devices;
+    }
+
+    // Forwarding entries of all devices before, one per route
+    public long getRoutesBefore() {
+        return routesBefore;
+    }
+
+    // Forwarding entries of all devices after, null entries included
+    public long getEntriesAfter() {
+        return entriesAfter;
+    }
+
+    // Devices whose compressed table failed verification and kept their routes; always 0 unless
+    // the compressor is wrong
+    public int getUnverified() {
+        return unverified;
+    }
+
+    // Wall-clock time the compression and verification took
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getReduction() {
+        return routesBefore == 0 ? 0 : 1 - (double) entriesAfter / routesBefore;
+    }
+
+    @Override
+    public String toString() {
+        return "devices=" + devices + " routes=" + routesBefore + " entries=" + entriesAfter
+            + String.format(" reduction=%.1f%%", 100 * getReduction()) + " unverified=" + unverified;
+    }
+}
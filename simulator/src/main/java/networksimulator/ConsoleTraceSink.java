@@ -0,0 +1,62 @@
+package networksimulator;
+
+import java.util.function.Consumer;
+
+/**
+ * Prints forwarding events as the human-readable lines the simulator has always shown. Lines go
+ * to standard output unless another consumer, such as the UI log, has been set.
+ */
+class ConsoleTraceSink implements TraceSink {
+    private final NetworkSimulator simulator;
+    private volatile Consumer<String> output = System.out::println;
+
+    ConsoleTraceSink(NetworkSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    void setOutput(Consumer<String> output) {
+        this.output = output;
+    }
+
+    @Override
+    public void record(int event, long time, int engine, long packet, int device, int other) {
+        record(event, device, other, 0);
+    }
+
+    // The packet's flow hash tells which member of a next-hop group an UNKNOWN_DEVICE line names
+    void record(int event, int device, int other, int flowHash) {
+        String name = simulator.getDevice(device).getName();
+        switch (event) {
+            case FORWARDED:
+                output.accept("Packet forwarded from " + name + " to " + simulator.getDevice(other).getName());
+                break;
+            case DELIVERED:
+                output.accept("Packet successfully delivered to " + name);
+                break;
+            case LOST:
+                output.accept("Packet lost during transmission.");
+                break;
+            case DROPPED_DELAY:
+                output.accept("Packet dropped due to delay.");
+                break;
+            case NO_ROUTE:
+                output.accept("No route to destination from " + name);
+                break;
+            case UNKNOWN_DEVICE:
+                String nextHop = simulator.getDevice(device).findNextHop(simulator.getDevice(other).getAddress(), flowHash);
+                output.accept("Error: Device " + nextHop + " not found.");
+                break;
+            case TTL_EXPIRED:
+                output.accept("Packet dropped: TTL expired at " + name);
+                break;
+            case ROUTING_LOOP:
+                output.accept("Routing loop detected at " + name);
+                break;
+            case DROPPED_QUEUE:
+                output.accept("Packet dropped: queue full on link " + name + " -> " + simulator.getDevice(other).getName());
+                break;
+            default:
+                break;
+        }
+    }
+}
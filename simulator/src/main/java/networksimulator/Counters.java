@@ -0,0 +1,79 @@
+package networksimulator;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Array of atomic counters stored in fixed-size chunks. Growing copies only the references to
+ * the chunks, so an engine still holding the smaller array keeps counting into the same
+ * chunks and no update made during the swap is lost. Counting is lock-free and allocation-free.
+ */
+class Counters {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final AtomicLongArray[] NO_CHUNKS = new AtomicLongArray[0];
+
+    private final AtomicLongArray[] chunks;
+    private final int length;
+
+    Counters(int length) {
+        this(NO_CHUNKS, length);
+    }
+
+    private Counters(AtomicLongArray[] shared, int length) {
+        chunks = Arrays.copyOf(shared, (length + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        for (int chunk = shared.length; chunk < chunks.length; chunk++) {
+            chunks[chunk] = new AtomicLongArray(CHUNK_SIZE);
+        }
+        this.length = length;
+    }
+
+    // Counters from the values, for restoring a snapshot
+    static Counters of(long[] values, int length) {
+        Counters counters = new Counters(length);
+        for (int i = 0; i < length; i++) {
+            if (values[i] != 0) {
+                counters.chunks[i >>> CHUNK_BITS].set(i & (CHUNK_SIZE - 1), values[i]);
+            }
+        }
+        return counters;
+    }
+
+    int length() {
+        return length;
+    }
+
+    long get(int i) {
+        return chunks[i >>> CHUNK_BITS].get(i & (CHUNK_SIZE - 1));
+    }
+
+    void increment(int i) {
+        chunks[i >>> CHUNK_BITS].incrementAndGet(i & (CHUNK_SIZE - 1));
+    }
+
+    void add(int i, long delta) {
+        chunks[i >>> CHUNK_BITS].addAndGet(i & (CHUNK_SIZE - 1), delta);
+    }
+
+    // At least capacity counters, sharing this array's chunks and so its counts
+    Counters grow(int capacity) {
+        return new Counters(chunks, capacity);
+    }
+
+    // The first length counters, 0 past the end
+    long[] copy(int length) {
+        long[] values = new long[length];
+        for (int i = 0; i < length && i < this.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    long sum() {
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            total += get(i);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,144 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of timestamped simulation events kept in primitive arrays.
+ * Events with the same timestamp come out in order of their keys. The engine gives every
+ * pending event a distinct key derived from its packet or flow, so the order does not depend on
+ * when events were scheduled and is the same however the events are spread over engines.
+ */
+class EventQueue {
+    private long[] times = new long[64];
+    private long[] keys = new long[64];
+    private int[] kinds = new int[64];
+    private int[] packets = new int[64];
+    private int size;
+
+    // Fields of the event most recently removed by poll()
+    private long polledTime;
+    private int polledKind;
+    private int polledPacket;
+
+    void schedule(long time, int kind, int packet, long key) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            packets = Arrays.copyOf(packets, capacity);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, key, parent)) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, key, kind, packet);
+    }
+
+    /** Removes the earliest event; read it back with polledTime(), polledKind() and polledPacket(). */
+    void poll() {
+        if (size == 0) {
+            throw new IllegalStateException("No events scheduled");
+        }
+        polledTime = times[0];
+        polledKind = kinds[0];
+        polledPacket = packets[0];
+
+        int last = --size;
+        long time = times[last];
+        long key = keys[last];
+        int kind = kinds[last];
+        int packet = packets[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(times[child + 1], keys[child + 1], child)) {
+                child++;
+            }
+            if (!before(times[child], keys[child], time, key)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        set(i, time, key, kind, packet);
+    }
+
+    long peekTime() {
+        return times[0];
+    }
+
+    long polledTime() {
+        return polledTime;
+    }
+
+    int polledKind() {
+        return polledKind;
+    }
+
+    int polledPacket() {
+        return polledPacket;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    // Heap arrays in their current order, so pending events come out of a restored queue unchanged
+    void write(SnapshotWriter out) throws IOException {
+        out.putInt(size);
+        out.putLongs(times, size);
+        out.putLongs(keys, size);
+        out.putInts(kinds, size);
+        out.putInts(packets, size);
+    }
+
+    void read(SnapshotReader in) throws IOException {
+        size = in.getCount(Integer.MAX_VALUE / 2);
+        int capacity = Math.max(64, size);
+        times = new long[capacity];
+        keys = new long[capacity];
+        kinds = new int[capacity];
+        packets = new int[capacity];
+        in.getLongs(times, size);
+        in.getLongs(keys, size);
+        in.getInts(kinds, size);
+        in.getInts(packets, size);
+    }
+
+    private boolean before(long time, long key, int index) {
+        return before(time, key, times[index], keys[index]);
+    }
+
+    private static boolean before(long time, long key, long otherTime, long otherKey) {
+        return time < otherTime || (time == otherTime && key < otherKey);
+    }
+
+    private void move(int from, int to) {
+        set(to, times[from], keys[from], kinds[from], packets[from]);
+    }
+
+    private void set(int index, long time, long key, int kind, int packet) {
+        times[index] = time;
+        keys[index] = key;
+        kinds[index] = kind;
+        packets[index] = packet;
+    }
+}
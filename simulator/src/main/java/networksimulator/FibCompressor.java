@@ -0,0 +1,239 @@
+package networksimulator;
+
+import java.util.Arrays;
+
+/**
+ * Optimal routing table constructor (ORTC): turns a forwarding table into the smallest table
+ * of prefixes that forwards every address to the same next hop under longest-prefix match.
+ * Addresses without a route count as one more next hop, NetworkSimulator.NO_ROUTE, so the
+ * result may hold null entries that carve unrouted space out of a covering prefix.
+ *
+ * The three passes of Draves et al. run over a binary trie in flat arrays: the first pushes
+ * every next hop down to leaves of a trie in which each node has none or two children, the
+ * second computes bottom-up the set of next hops each subtree could inherit at no cost (the
+ * intersection of its children's sets, or their union when that is empty), and the third
+ * picks top-down a next hop from each set, emitting an entry only where the inherited one is
+ * not in it.
+ *
+ * NetworkSimulator.compressForwardingTables runs it per device and checks each result with
+ * equivalent before using it.
+ */
+final class FibCompressor {
+    private int[] zero = new int[64]; // Child for bit 0, 0 for none; node 0 is the root
+    private int[] one = new int[64];
+    private int[] hop = new int[64]; // Next hop of a leaf after the first pass, NO_HOP above
+    private int[][] sets = new int[64][]; // Sorted next hops a subtree can inherit
+    private int nodeCount;
+
+    // Result of the third pass
+    private int size;
+    private int[] prefixes = new int[16];
+    private int[] lengths = new int[16];
+    private int[] hops = new int[16];
+
+    private static final int NO_HOP = Integer.MIN_VALUE;
+
+    /**
+     * Compresses the table of prefix/length entries with the given next hops, which must be
+     * distinct prefixes. Read the result with size, prefix, length and nextHop.
+     */
+    void compress(int[] entryPrefixes, int[] entryLengths, int[] entryHops, int entryCount) {
+        nodeCount = 1;
+        clearNode(0);
+        for (int i = 0; i < entryCount; i++) {
+            int node = 0;
+            for (int depth = 0; depth < entryLengths[i]; depth++) {
+                boolean bit = ((entryPrefixes[i] >>> (31 - depth)) & 1) != 0;
+                int child = bit ? one[node] : zero[node];
+                if (child == 0) {
+                    child = newNode();
+                    if (bit) {
+                        one[node] = child;
+                    } else {
+                        zero[node] = child;
+                    }
+                }
+                node = child;
+            }
+            hop[node] = entryHops[i];
+        }
+
+        pushDown(0, NetworkSimulator.NO_ROUTE);
+        merge(0);
+        size = 0;
+        choose(0, 0, 0, NetworkSimulator.NO_ROUTE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int prefix(int entry) {
+        return prefixes[entry];
+    }
+
+    int length(int entry) {
+        return lengths[entry];
+    }
+
+    int nextHop(int entry) {
+        return hops[entry];
+    }
+
+    // First pass: every node ends up with none or two children, and the leaves carry the next
+    // hop of their longest covering entry
+    private void pushDown(int node, int inherited) {
+        int own = hop[node] != NO_HOP ? hop[node] : inherited;
+        if (zero[node] == 0 && one[node] == 0) {
+            hop[node] = own;
+            return;
+        }
+        hop[node] = NO_HOP;
+        if (zero[node] == 0) {
+            int leaf = newNode();
+            zero[node] = leaf;
+        }
+        if (one[node] == 0) {
+            int leaf = newNode();
+            one[node] = leaf;
+        }
+        pushDown(zero[node], own);
+        pushDown(one[node], own);
+    }
+
+    // Second pass
+    private void merge(int node) {
+        if (zero[node] == 0) {
+            sets[node] = new int[] {hop[node]};
+            return;
+        }
+        merge(zero[node]);
+        merge(one[node]);
+        int[] a = sets[zero[node]];
+        int[] b = sets[one[node]];
+        int[] both = intersect(a, b);
+        sets[node] = both.length > 0 ? both : union(a, b);
+    }
+
+    // Third pass
+    private void choose(int node, int prefix, int length, int inherited) {
+        int[] set = sets[node];
+        int chosen = inherited;
+        if (Arrays.binarySearch(set, inherited) < 0) {
+            chosen = set[0];
+            add(prefix, length, chosen);
+        }
+        if (zero[node] != 0) {
+            choose(zero[node], prefix, length + 1, chosen);
+            choose(one[node], prefix | (1 << (31 - length)), length + 1, chosen);
+        }
+        sets[node] = null;
+    }
+
+    private void add(int prefix, int length, int nextHop) {
+        if (size == prefixes.length) {
+            prefixes = Arrays.copyOf(prefixes, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+            hops = Arrays.copyOf(hops, 2 * size);
+        }
+        prefixes[size] = prefix;
+        lengths[size] = length;
+        hops[size] = nextHop;
+        size++;
+    }
+
+    private int newNode() {
+        if (nodeCount == hop.length) {
+            int capacity = 2 * nodeCount;
+            zero = Arrays.copyOf(zero, capacity);
+            one = Arrays.copyOf(one, capacity);
+            hop = Arrays.copyOf(hop, capacity);
+            sets = Arrays.copyOf(sets, capacity);
+        }
+        clearNode(nodeCount);
+        return nodeCount++;
+    }
+
+    private void clearNode(int node) {
+        zero[node] = 0;
+        one[node] = 0;
+        hop[node] = NO_HOP;
+        sets[node] = null;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Proves that two tables forward every address alike: both tries map each address to an
+     * index into their next-hop array, NO_MATCH meaning NO_ROUTE. Longest-prefix match can only
+     * change at the first or one past the last address of some prefix, so comparing one
+     * address of each range between consecutive such boundaries of either table covers all
+     * 2^32 addresses.
+     */
+    static boolean equivalent(PrefixTrie first, int[] firstPrefixes, int[] firstLengths, int[] firstHops, int firstCount,
+                              PrefixTrie second, int[] secondPrefixes, int[] secondLengths, int[] secondHops,
+                              int secondCount) {
+        long[] boundaries = new long[2 * (firstCount + secondCount) + 1];
+        int n = 0;
+        boundaries[n++] = 0;
+        for (int i = 0; i < firstCount; i++) {
+            boundaries[n++] = firstPrefixes[i] & 0xFFFFFFFFL;
+            boundaries[n++] = (firstPrefixes[i] & 0xFFFFFFFFL) + (1L << (32 - firstLengths[i]));
+        }
+        for (int i = 0; i < secondCount; i++) {
+            boundaries[n++] = secondPrefixes[i] & 0xFFFFFFFFL;
+            boundaries[n++] = (secondPrefixes[i] & 0xFFFFFFFFL) + (1L << (32 - secondLengths[i]));
+        }
+        Arrays.sort(boundaries, 0, n);
+        for (int i = 0; i < n; i++) {
+            if (boundaries[i] > 0xFFFFFFFFL) {
+                break;
+            }
+            if (i > 0 && boundaries[i] == boundaries[i - 1]) {
+                continue;
+            }
+            int address = (int) boundaries[i];
+            int a = first.lookup(address);
+            int b = second.lookup(address);
+            int hopA = a == PrefixTrie.NO_MATCH ? NetworkSimulator.NO_ROUTE : firstHops[a];
+            int hopB = b == PrefixTrie.NO_MATCH ? NetworkSimulator.NO_ROUTE : secondHops[b];
+            if (hopA != hopB) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory log-linear histogram of non-negative longs in the style of HdrHistogram.
+ * Values below 64 are exact; larger ones land in one of 32 sub-buckets per power of two,
+ * so reported values are within about 3% of the recorded ones. Recording is thread-safe
+ * and allocation-free.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; // Values below this get their own bucket
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram() {
+        counts = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), or 0 if nothing was recorded
+    public long getPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Copy that no longer changes, for snapshots
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        copy.add(this);
+        return copy;
+    }
+
+    public void add(Histogram other) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long bucketCount = other.counts.get(bucket);
+            if (bucketCount != 0) {
+                counts.addAndGet(bucket, bucketCount);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long currentMax = max.get();
+        while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+            currentMax = max.get();
+        }
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    void write(SnapshotWriter out) throws IOException {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            out.putLong(counts.get(bucket));
+        }
+        out.putLong(totalCount.get());
+        out.putLong(sum.get());
+        out.putLong(max.get());
+    }
+
+    // Non-empty buckets only, for a shard's results
+    void write(ShardChannel out) {
+        int used = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            if (counts.get(bucket) != 0) {
+                used++;
+            }
+        }
+        out.putInt(used);
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long bucketCount = counts.get(bucket);
+            if (bucketCount != 0) {
+                out.putInt(bucket);
+                out.putLong(bucketCount);
+            }
+        }
+        out.putLong(totalCount.get());
+        out.putLong(sum.get());
+        out.putLong(max.get());
+    }
+
+    // Adds the histogram written by write(ShardChannel), so shards' histograms merge
+    void add(ShardChannel in) throws IOException {
+        int used = in.getCount(BUCKET_COUNT);
+        for (int i = 0; i < used; i++) {
+            int bucket = in.getCount(BUCKET_COUNT - 1);
+            counts.addAndGet(bucket, in.getLong());
+        }
+        totalCount.addAndGet(in.getLong());
+        sum.addAndGet(in.getLong());
+        long otherMax = in.getLong();
+        if (otherMax > max.get()) {
+            max.set(otherMax);
+        }
+    }
+
+    void read(SnapshotReader in) throws IOException {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, in.getLong());
+        }
+        totalCount.set(in.getLong());
+        sum.set(in.getLong());
+        max.set(in.getLong());
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + " mean=" + String.format("%.1f", getMean()) + " p50=" + getPercentile(50)
+            + " p99=" + getPercentile(99) + " max=" + getMax();
+    }
+
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // At least SUB_BUCKET_BITS + 1
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long lowerBound = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,113 @@
+package networksimulator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A directed link from a device to one of its next hops. A link transmits one packet at a
+ * time at its bandwidth, holds up to queueCapacity more in its output queue, and delivers each
+ * packet propagationDelay after it has been put on the wire. Links are created by
+ * compileForwarding for every source/next-hop pair in use, with the simulator's defaults,
+ * and can be tuned with NetworkSimulator.configureLink.
+ */
+public class Link {
+    // RED thresholds as fractions of the queue capacity, and its other classic parameters
+    static final double RED_MIN_THRESHOLD = 0.25;
+    static final double RED_MAX_THRESHOLD = 0.75;
+    static final double RED_MAX_PROBABILITY = 0.1;
+    static final double RED_WEIGHT = 0.002;
+
+    private final int id;
+    private final int source;
+    private final int target;
+    private long bandwidth; // Bits per second
+    private long propagationDelay; // Nanoseconds
+    private int queueCapacity; // Packets waiting behind the one being transmitted
+    private QueueDiscipline discipline;
+    private double lossProbability; // Per-packet loss on the wire in simulatePacketForwarding
+    private LossModel randomLoss; // Bernoulli model of lossProbability
+    private LossModel lossModel; // Set with NetworkSimulator.setLossModel, null if none
+    private boolean configured; // Set explicitly rather than from the simulator defaults
+
+    Link(int id, int source, int target) {
+        this.id = id;
+        this.source = source;
+        this.target = target;
+    }
+
+    void set(long bandwidth, long propagationDelay, int queueCapacity, QueueDiscipline discipline, double lossProbability) {
+        this.bandwidth = bandwidth;
+        this.propagationDelay = propagationDelay;
+        this.queueCapacity = queueCapacity;
+        this.discipline = discipline;
+        if (randomLoss == null || this.lossProbability != lossProbability) {
+            randomLoss = LossModel.bernoulli(lossProbability);
+        }
+        this.lossProbability = lossProbability;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public long getBandwidth() {
+        return bandwidth;
+    }
+
+    public long getPropagationDelayNanos() {
+        return propagationDelay;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public QueueDiscipline getDiscipline() {
+        return discipline;
+    }
+
+    public double getLossProbability() {
+        return lossProbability;
+    }
+
+    /** The loss model set for this link, or null if it only has the per-hop loss probability. */
+    public LossModel getLossModel() {
+        return lossModel;
+    }
+
+    void setLossModel(LossModel lossModel) {
+        this.lossModel = lossModel;
+    }
+
+    // Model deciding the loss of a packet: the link's own, else the loss probability for packets
+    // sent with randomLoss; null if the packet cannot be lost on the wire
+    LossModel lossModel(boolean randomLoss) {
+        return lossModel != null ? lossModel : randomLoss ? this.randomLoss : null;
+    }
+
+    boolean isConfigured() {
+        return configured;
+    }
+
+    void setConfigured(boolean configured) {
+        this.configured = configured;
+    }
+
+    // Time to put a packet of the given size on the wire
+    long serializationNanos(int packetBytes) {
+        return packetBytes * 8L * TimeUnit.SECONDS.toNanos(1) / bandwidth;
+    }
+
+    @Override
+    public String toString() {
+        return "bandwidth=" + bandwidth + "bps propagationMs=" + propagationDelay / 1e6 + " queue=" + queueCapacity
+            + " " + discipline + (lossModel != null ? " loss=" + lossModel : "");
+    }
+}
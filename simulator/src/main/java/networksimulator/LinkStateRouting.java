@@ -0,0 +1,563 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Link-state routing for a simulator: keeps an undirected graph of device adjacencies with
+ * costs and, for every router, a shortest-path tree over it, and installs a /32 route to each
+ * reachable device via the first hop of that tree. Static routes for the same prefix win.
+ *
+ * Changes are applied incrementally (dynamic SPF). A cheaper or new adjacency only re-runs
+ * Dijkstra from the nodes it improves, and a dearer or removed one only rebuilds the subtree
+ * hanging below it, in the trees that actually use it. Routers are updated in parallel; each
+ * one only touches its own tree and routing table. Memory grows with the square of the device
+ * count.
+ */
+public class LinkStateRouting {
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final int FULL_PREFIX = 32;
+
+    private final NetworkSimulator simulator;
+    private int nodeCount;
+    private int[] degree = new int[0];
+    private int[][] neighbors = new int[0][];
+    private int[][] costs = new int[0][];
+
+    // Shortest-path tree of each router: [router][node]
+    private int[][] distance = new int[0][];
+    private int[][] parent = new int[0][];
+    private int[][] firstHop = new int[0][];
+
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    // Pending adjacency changes, applied by the next update
+    private int[] changedFrom = new int[16];
+    private int[] changedTo = new int[16];
+    private boolean[] changedWorse = new boolean[16];
+    private int changeCount;
+
+    private long lastConvergenceNanos;
+    private int lastRoutersChanged;
+    private long lastRoutesChanged;
+
+    LinkStateRouting(NetworkSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    // Adds isolated nodes for devices created since the last call
+    void addDevices(int count) {
+        if (count <= nodeCount) {
+            return;
+        }
+        int oldCount = nodeCount;
+        if (count > degree.length) {
+            int capacity = Math.max(count, 2 * degree.length);
+            degree = Arrays.copyOf(degree, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            distance = Arrays.copyOf(distance, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            firstHop = Arrays.copyOf(firstHop, capacity);
+        }
+        nodeCount = count;
+        for (int node = oldCount; node < count; node++) {
+            neighbors[node] = new int[4];
+            costs[node] = new int[4];
+        }
+        for (int router = 0; router < count; router++) {
+            if (distance[router] == null || distance[router].length < count) {
+                int capacity = Math.max(count, distance[router] == null ? 0 : 2 * distance[router].length);
+                int from = distance[router] == null ? 0 : distance[router].length;
+                distance[router] = grow(distance[router], capacity, from, UNREACHABLE);
+                parent[router] = grow(parent[router], capacity, from, -1);
+                firstHop[router] = grow(firstHop[router], capacity, from, -1);
+            }
+            if (router >= oldCount) {
+                distance[router][router] = 0;
+            }
+        }
+    }
+
+    /** Sets the cost of the adjacency a-b, adding it if needed; the change applies on update(). */
+    void connect(int a, int b, int cost) {
+        int old = cost(a, b);
+        if (old == cost) {
+            return;
+        }
+        setEdge(a, b, cost);
+        setEdge(b, a, cost);
+        recordChange(a, b, old != UNREACHABLE && cost > old);
+    }
+
+    /** Removes the adjacency a-b if present; the change applies on update(). */
+    void disconnect(int a, int b) {
+        if (cost(a, b) == UNREACHABLE) {
+            return;
+        }
+        removeEdge(a, b);
+        removeEdge(b, a);
+        recordChange(a, b, true);
+    }
+
+    // Removes every adjacency of a device, taking it out of the routing domain
+    void disconnectAll(int node) {
+        while (degree[node] > 0) {
+            disconnect(node, neighbors[node][0]);
+        }
+    }
+
+    // Cost of the adjacency a-b, or UNREACHABLE if there is none
+    int cost(int a, int b) {
+        for (int i = 0; i < degree[a]; i++) {
+            if (neighbors[a][i] == b) {
+                return costs[a][i];
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    // Adjacencies as {a, b, cost} with a < b
+    List<int[]> getAdjacencies() {
+        List<int[]> adjacencies = new ArrayList<>();
+        for (int a = 0; a < nodeCount; a++) {
+            for (int i = 0; i < degree[a]; i++) {
+                if (a < neighbors[a][i]) {
+                    adjacencies.add(new int[] {a, neighbors[a][i], costs[a][i]});
+                }
+            }
+        }
+        return adjacencies;
+    }
+
+    /** Recomputes every tree from scratch and installs all routes. */
+    void rebuild() {
+        changeCount = 0;
+        converge(IntStream.range(0, nodeCount).parallel().mapToLong(this::fullSpf));
+    }
+
+    /** Applies the pending adjacency changes to the affected trees and routing tables. */
+    void update() {
+        if (changeCount == 0) {
+            return;
+        }
+        converge(IntStream.range(0, nodeCount).parallel().mapToLong(this::incrementalSpf));
+        changeCount = 0;
+    }
+
+    // Runs the per-router work, then marks changed routers for recompilation
+    private void converge(LongStream routeChangesPerRouter) {
+        long start = System.nanoTime();
+        long[] changes = routeChangesPerRouter.toArray();
+        int routersChanged = 0;
+        long routesChanged = 0;
+        for (int router = 0; router < changes.length; router++) {
+            if (changes[router] > 0) {
+                simulator.routesChanged(simulator.getDevice(router));
+                routersChanged++;
+                routesChanged += changes[router];
+            }
+        }
+        lastConvergenceNanos = System.nanoTime() - start;
+        lastRoutersChanged = routersChanged;
+        lastRoutesChanged = routesChanged;
+    }
+
+    /** Wall-clock time the last rebuild or update took, including route installation. */
+    public long getLastConvergenceNanos() {
+        return lastConvergenceNanos;
+    }
+
+    public int getLastRoutersChanged() {
+        return lastRoutersChanged;
+    }
+
+    public long getLastRoutesChanged() {
+        return lastRoutesChanged;
+    }
+
+    /** Cost of the shortest path, or UNREACHABLE; reflects the last update. */
+    public int getDistance(String source, String destination) {
+        NetworkSimulator.NetworkDevice from = simulator.getDevices().get(source);
+        NetworkSimulator.NetworkDevice to = simulator.getDevices().get(destination);
+        if (from == null || to == null || from.getId() >= nodeCount || to.getId() >= nodeCount) {
+            return UNREACHABLE;
+        }
+        return distance[from.getId()][to.getId()];
+    }
+
+    // Adjacencies, every shortest-path tree and the pending changes, so a restored instance
+    // continues with incremental updates instead of a full rebuild
+    void write(SnapshotWriter out) throws IOException {
+        out.putInt(nodeCount);
+        out.putInts(degree, nodeCount);
+        for (int node = 0; node < nodeCount; node++) {
+            out.putInts(neighbors[node], degree[node]);
+            out.putInts(costs[node], degree[node]);
+        }
+        for (int router = 0; router < nodeCount; router++) {
+            out.putInts(distance[router], nodeCount);
+            out.putInts(parent[router], nodeCount);
+            out.putInts(firstHop[router], nodeCount);
+        }
+        out.putInt(changeCount);
+        out.putInts(changedFrom, changeCount);
+        out.putInts(changedTo, changeCount);
+        for (int i = 0; i < changeCount; i++) {
+            out.putBoolean(changedWorse[i]);
+        }
+    }
+
+    void read(SnapshotReader in) throws IOException {
+        int nodes = in.getCount(simulator.getDeviceCount());
+        addDevices(nodes);
+        in.getInts(degree, nodes);
+        for (int node = 0; node < nodes; node++) {
+            if (degree[node] < 0 || degree[node] > nodes) {
+                throw new IOException("Corrupt snapshot: adjacency count out of range");
+            }
+            neighbors[node] = new int[Math.max(4, degree[node])];
+            costs[node] = new int[neighbors[node].length];
+            in.getInts(neighbors[node], degree[node]);
+            in.getInts(costs[node], degree[node]);
+        }
+        for (int router = 0; router < nodes; router++) {
+            in.getInts(distance[router], nodes);
+            in.getInts(parent[router], nodes);
+            in.getInts(firstHop[router], nodes);
+        }
+        changeCount = in.getCount(Integer.MAX_VALUE / 2);
+        if (changeCount > changedFrom.length) {
+            changedFrom = new int[changeCount];
+            changedTo = new int[changeCount];
+            changedWorse = new boolean[changeCount];
+        }
+        in.getInts(changedFrom, changeCount);
+        in.getInts(changedTo, changeCount);
+        for (int i = 0; i < changeCount; i++) {
+            changedWorse[i] = in.getBoolean();
+        }
+    }
+
+    private long fullSpf(int router) {
+        Workspace work = workspaces.get().prepare(nodeCount);
+        int[] dist = distance[router];
+        int[] first = firstHop[router];
+        int[] oldFirst = work.oldFirst;
+        for (int node = 0; node < nodeCount; node++) {
+            oldFirst[node] = dist[node] == UNREACHABLE || node == router ? -1 : first[node];
+            dist[node] = UNREACHABLE;
+            parent[router][node] = -1;
+            first[node] = -1;
+            work.touch(node);
+        }
+        dist[router] = 0;
+        work.heap.push(router, dist);
+        dijkstra(router, work);
+        return installRoutes(router, work);
+    }
+
+    private long incrementalSpf(int router) {
+        Workspace work = workspaces.get().prepare(nodeCount);
+        int[] dist = distance[router];
+        int[] par = parent[router];
+        for (int change = 0; change < changeCount; change++) {
+            int a = changedFrom[change];
+            int b = changedTo[change];
+            if (changedWorse[change]) {
+                // Only trees that route over a-b are affected
+                if (par[b] == a) {
+                    rebuildSubtree(router, b, work);
+                } else if (par[a] == b) {
+                    rebuildSubtree(router, a, work);
+                }
+            } else {
+                int cost = cost(a, b);
+                relaxFrom(router, a, b, cost, work);
+                relaxFrom(router, b, a, cost, work);
+            }
+        }
+        return installRoutes(router, work);
+    }
+
+    // Edge u->v became cheaper: propagate any improvement it brings with Dijkstra from v
+    private void relaxFrom(int router, int u, int v, int cost, Workspace work) {
+        int[] dist = distance[router];
+        if (dist[u] == UNREACHABLE || cost == UNREACHABLE) {
+            return;
+        }
+        long candidate = (long) dist[u] + cost;
+        if (candidate >= dist[v]) {
+            return;
+        }
+        work.touch(router, v, this);
+        dist[v] = (int) candidate;
+        parent[router][v] = u;
+        firstHop[router][v] = u == router ? v : firstHop[router][u];
+        work.heap.push(v, dist);
+        dijkstra(router, work);
+    }
+
+    // Edge into root got dearer or vanished: drop the subtree below it and reattach its nodes
+    private void rebuildSubtree(int router, int root, Workspace work) {
+        int[] dist = distance[router];
+        int[] par = parent[router];
+        int[] first = firstHop[router];
+
+        // Collect the subtree; children of x are neighbours whose parent is x
+        int[] subtree = work.subtree;
+        int size = 0;
+        subtree[size++] = root;
+        work.inSubtree[root] = work.epoch;
+        for (int i = 0; i < size; i++) {
+            int node = subtree[i];
+            for (int e = 0; e < degree[node]; e++) {
+                int child = neighbors[node][e];
+                if (par[child] == node && work.inSubtree[child] != work.epoch) {
+                    work.inSubtree[child] = work.epoch;
+                    subtree[size++] = child;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int node = subtree[i];
+            work.touch(router, node, this);
+            dist[node] = UNREACHABLE;
+            par[node] = -1;
+            first[node] = -1;
+        }
+
+        // Best way into each node from outside the subtree, then settle the rest with Dijkstra
+        for (int i = 0; i < size; i++) {
+            int node = subtree[i];
+            for (int e = 0; e < degree[node]; e++) {
+                int from = neighbors[node][e];
+                if (work.inSubtree[from] == work.epoch || dist[from] == UNREACHABLE) {
+                    continue;
+                }
+                long candidate = (long) dist[from] + costs[node][e];
+                if (candidate < dist[node]) {
+                    dist[node] = (int) candidate;
+                    par[node] = from;
+                    first[node] = from == router ? node : first[from];
+                }
+            }
+            if (dist[node] != UNREACHABLE) {
+                work.heap.push(node, dist);
+            }
+        }
+        work.epoch++;
+        dijkstra(router, work);
+    }
+
+    private void dijkstra(int router, Workspace work) {
+        int[] dist = distance[router];
+        int[] par = parent[router];
+        int[] first = firstHop[router];
+        Heap heap = work.heap;
+        while (heap.size > 0) {
+            int node = heap.pop(dist);
+            for (int e = 0; e < degree[node]; e++) {
+                int next = neighbors[node][e];
+                long candidate = (long) dist[node] + costs[node][e];
+                if (candidate < dist[next]) {
+                    work.touch(router, next, this);
+                    dist[next] = (int) candidate;
+                    par[next] = node;
+                    first[next] = node == router ? next : first[node];
+                    heap.push(next, dist);
+                }
+            }
+        }
+    }
+
+    // Updates the router's /32 routes for every node whose first hop changed; returns how many
+    private long installRoutes(int router, Workspace work) {
+        NetworkSimulator.NetworkDevice device = simulator.getDevice(router);
+        int[] dist = distance[router];
+        int[] first = firstHop[router];
+        long changed = 0;
+        for (int i = 0; i < work.touchedCount; i++) {
+            int node = work.touched[i];
+            int now = node == router || dist[node] == UNREACHABLE ? -1 : first[node];
+            if (now == work.oldFirst[node]) {
+                continue;
+            }
+            int address = simulator.getDevice(node).getAddress();
+            boolean updated = now < 0
+                ? device.removeDynamicRoute(address, FULL_PREFIX)
+                : device.setDynamicRoute(address, FULL_PREFIX, simulator.getDevice(now).getName());
+            if (updated) {
+                changed++;
+            }
+        }
+        work.touchedCount = 0;
+        return changed;
+    }
+
+    private void recordChange(int a, int b, boolean worse) {
+        if (changeCount == changedFrom.length) {
+            changedFrom = Arrays.copyOf(changedFrom, 2 * changeCount);
+            changedTo = Arrays.copyOf(changedTo, 2 * changeCount);
+            changedWorse = Arrays.copyOf(changedWorse, 2 * changeCount);
+        }
+        changedFrom[changeCount] = a;
+        changedTo[changeCount] = b;
+        changedWorse[changeCount] = worse;
+        changeCount++;
+    }
+
+    private void setEdge(int from, int to, int cost) {
+        for (int i = 0; i < degree[from]; i++) {
+            if (neighbors[from][i] == to) {
+                costs[from][i] = cost;
+                return;
+            }
+        }
+        if (degree[from] == neighbors[from].length) {
+            neighbors[from] = Arrays.copyOf(neighbors[from], 2 * degree[from]);
+            costs[from] = Arrays.copyOf(costs[from], 2 * degree[from]);
+        }
+        neighbors[from][degree[from]] = to;
+        costs[from][degree[from]] = cost;
+        degree[from]++;
+    }
+
+    private void removeEdge(int from, int to) {
+        for (int i = 0; i < degree[from]; i++) {
+            if (neighbors[from][i] == to) {
+                int last = --degree[from];
+                neighbors[from][i] = neighbors[from][last];
+                costs[from][i] = costs[from][last];
+                return;
+            }
+        }
+    }
+
+    private static int[] grow(int[] row, int capacity, int from, int fill) {
+        int[] grown = row == null ? new int[capacity] : Arrays.copyOf(row, capacity);
+        Arrays.fill(grown, from, capacity, fill);
+        return grown;
+    }
+
+    // Per-thread scratch space, sized to the node count
+    private static final class Workspace {
+        final Heap heap = new Heap();
+        int[] touched = new int[0]; // Nodes whose tree entry may have changed in this update
+        int touchedCount;
+        int[] touchMark = new int[0];
+        int touchEpoch = 1;
+        int[] oldFirst = new int[0]; // First hop of each touched node before the update, -1 if unreachable
+        int[] subtree = new int[0];
+        int[] inSubtree = new int[0];
+        int epoch = 1;
+
+        Workspace prepare(int nodes) {
+            if (touched.length < nodes) {
+                touched = new int[nodes];
+                touchMark = new int[nodes];
+                oldFirst = new int[nodes];
+                subtree = new int[nodes];
+                inSubtree = new int[nodes];
+                heap.resize(nodes);
+            }
+            touchedCount = 0;
+            touchEpoch++;
+            return this;
+        }
+
+        // Used by fullSpf, which has already recorded the old first hop
+        void touch(int node) {
+            touchMark[node] = touchEpoch;
+            touched[touchedCount++] = node;
+        }
+
+        // Remembers the first hop of a node the first time an update changes it
+        void touch(int router, int node, LinkStateRouting routing) {
+            if (touchMark[node] == touchEpoch) {
+                return;
+            }
+            touchMark[node] = touchEpoch;
+            touched[touchedCount++] = node;
+            oldFirst[node] = routing.distance[router][node] == UNREACHABLE || node == router
+                ? -1 : routing.firstHop[router][node];
+        }
+    }
+
+    // Binary min-heap of node ids keyed by a distance array, with decrease-key
+    private static final class Heap {
+        int[] nodes = new int[0];
+        int[] positions = new int[0]; // Index of each node in nodes, -1 if absent
+        int size;
+
+        void resize(int capacity) {
+            nodes = new int[capacity];
+            positions = new int[capacity];
+            Arrays.fill(positions, -1);
+            size = 0;
+        }
+
+        // Inserts node, or moves it up if its distance dropped
+        void push(int node, int[] dist) {
+            int i = positions[node];
+            if (i < 0) {
+                i = size++;
+                nodes[i] = node;
+                positions[node] = i;
+            }
+            siftUp(i, dist);
+        }
+
+        int pop(int[] dist) {
+            int top = nodes[0];
+            positions[top] = -1;
+            int last = nodes[--size];
+            if (size > 0) {
+                nodes[0] = last;
+                positions[last] = 0;
+                siftDown(0, dist);
+            }
+            return top;
+        }
+
+        private void siftUp(int i, int[] dist) {
+            int node = nodes[i];
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (dist[nodes[up]] <= dist[node]) {
+                    break;
+                }
+                nodes[i] = nodes[up];
+                positions[nodes[i]] = i;
+                i = up;
+            }
+            nodes[i] = node;
+            positions[node] = i;
+        }
+
+        private void siftDown(int i, int[] dist) {
+            int node = nodes[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && dist[nodes[child + 1]] < dist[nodes[child]]) {
+                    child++;
+                }
+                if (dist[nodes[child]] >= dist[node]) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                positions[nodes[i]] = i;
+                i = child;
+            }
+            nodes[i] = node;
+            positions[node] = i;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package networksimulator;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A load simulation that runs in step with the wall clock, so flows can be watched while they
+ * happen and new ones started at any time.
+ * NetworkSimulator.startLive(Collection&lt;TrafficFlow&gt;, double, Consumer&lt;TrafficResult&gt;) starts one.
+ *
+ * Flows are not threads: every flow is a few slots in one SimulationEngine, and a single
+ * pacer thread runs the engine's events once the wall clock reaches their simulated time,
+ * sleeping in between. A run holds a hundred thousand flows as easily as one, and stopping it
+ * is one flag and one unpark. The run ends by itself when its flows have been sent and every
+ * packet has completed.
+ */
+public final class LiveSimulation {
+    private static final long PUBLISH_NANOS = TimeUnit.MILLISECONDS.toNanos(50); // Longest sleep between results
+    private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // Simulated time run between checks
+
+    private final NetworkSimulator simulator;
+    private final SimulationEngine engine;
+    private final double speed; // Simulated nanoseconds per wall-clock nanosecond
+    private final Consumer<TrafficResult> progress;
+    private final ConcurrentLinkedQueue<TrafficFlow> pending = new ConcurrentLinkedQueue<>();
+    private final Thread pacer;
+    private final long start = System.nanoTime();
+    private int flowCount; // Flows handed to the engine, which numbers them for packet serials
+    private boolean finished; // Guarded by this
+    private volatile boolean cancelled;
+    private volatile TrafficResult result;
+    private volatile long lag; // Simulated nanoseconds the engine trails the wall clock by
+
+    LiveSimulation(NetworkSimulator simulator, SimulationEngine engine, double speed, Consumer<TrafficResult> progress) {
+        this.simulator = simulator;
+        this.engine = engine;
+        this.speed = speed;
+        this.progress = progress;
+        this.result = new TrafficResult(0, 0, 0, 0, 0);
+        pacer = new Thread(this::pace, "simulator-live");
+        pacer.setDaemon(true);
+    }
+
+    void start() {
+        pacer.start();
+    }
+
+    /**
+     * Starts a flow at the current simulated time. Returns false if the run has already ended
+     * or been stopped, in which case the flow is not sent.
+     */
+    public synchronized boolean addFlow(TrafficFlow flow) {
+        if (finished || cancelled) {
+            return false;
+        }
+        pending.add(flow);
+        LockSupport.unpark(pacer);
+        return true;
+    }
+
+    /** Stops the run where it is and waits for the pacer thread to finish. */
+    public void cancel() {
+        cancelled = true;
+        LockSupport.unpark(pacer);
+        if (Thread.currentThread() != pacer) {
+            try {
+                pacer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Waits up to the given time for the run to end; returns whether it has. */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        pacer.join(Math.max(1, unit.toMillis(timeout)));
+        return !pacer.isAlive();
+    }
+
+    public boolean isRunning() {
+        return pacer.isAlive();
+    }
+
+    /**
+     * How far simulated time trails the wall clock, in milliseconds. It grows when the flows
+     * send more packets than one thread can simulate in real time.
+     */
+    public long getLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lag);
+    }
+
+    /** Packets sent, delivered, lost and unroutable so far, updated at least every 50 ms. */
+    public TrafficResult getResult() {
+        return result;
+    }
+
+    private void pace() {
+        long simulatedStart = engine.getTime();
+        long nextProgress = start + PROGRESS_NANOS;
+        try {
+            while (!cancelled) {
+                // Catch up in slices, so a backlog still lets results out and a stop in
+                long sliceStart = System.nanoTime();
+                long simulatedNow = simulatedStart + (long) ((sliceStart - start) * speed);
+                long next;
+                while ((next = engine.nextEventTime()) <= simulatedNow && !cancelled
+                        && System.nanoTime() - sliceStart < PUBLISH_NANOS) {
+                    engine.run(Math.min(simulatedNow, next + SLICE_NANOS));
+                }
+                lag = next <= simulatedNow ? simulatedNow - next : 0;
+                engine.advance(simulatedNow);
+                TrafficFlow flow;
+                while ((flow = pending.poll()) != null) {
+                    send(flow);
+                }
+                publish();
+                if (progress != null && System.nanoTime() >= nextProgress) {
+                    nextProgress += PROGRESS_NANOS;
+                    progress.accept(result);
+                }
+
+                next = engine.nextEventTime();
+                if (next == Long.MAX_VALUE) {
+                    synchronized (this) {
+                        if (pending.isEmpty()) {
+                            finished = true;
+                            break;
+                        }
+                    }
+                    continue;
+                }
+                long wake = start + (long) ((next - simulatedStart) / speed);
+                long sleep = Math.min(wake - System.nanoTime(), PUBLISH_NANOS);
+                if (sleep > 0) {
+                    LockSupport.parkNanos(this, sleep);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            System.out.println("Error: Live simulation failed: " + e);
+        } finally {
+            synchronized (this) {
+                finished = true;
+            }
+            pending.clear();
+            publish();
+            simulator.liveEnded(this, result);
+            if (progress != null) {
+                progress.accept(result);
+            }
+        }
+    }
+
+    private void send(TrafficFlow flow) {
+        NetworkSimulator.NetworkDevice source = simulator.getDevices().get(flow.getSource());
+        NetworkSimulator.NetworkDevice destination = simulator.getDevices().get(flow.getDestination());
+        if (source == null || destination == null) {
+            System.out.println("Error: Invalid source or destination device.");
+            return;
+        }
+        long interval = flow.getPacketsPerSecond() > 0 ? Math.round(1e9 / flow.getPacketsPerSecond()) : 0;
+        engine.sendFlow(source, destination, flow.getCount(), interval, flowCount++);
+    }
+
+    private void publish() {
+        long[] counts = engine.getOutcomeCounts();
+        long completed = 0;
+        for (long count : counts) {
+            completed += count;
+        }
+        result = NetworkSimulator.outcomeResult(counts, completed + engine.getPacketsHeld(), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,211 @@
+package networksimulator;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log view that keeps only the most recent lines. Any thread may call append; lines are queued
+ * and moved into a ring buffer on the EDT by a timer, a batch at a time, so a burst of
+ * messages costs one list update per flush instead of one per line. The list only renders the
+ * visible rows. A filter narrows the view to lines containing some text, and Find jumps to the
+ * next matching line.
+ */
+class LogPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int CAPACITY = 10_000; // Lines kept in the view
+    private static final int MAX_PENDING = 2 * CAPACITY; // Older queued lines are discarded beyond this
+    private static final int FLUSH_MILLIS = 100;
+
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LogModel model = new LogModel();
+    private final JList<String> list = new JList<>(model);
+    private final JScrollPane scrollPane = new JScrollPane(list);
+    private final JTextField filterField = new JTextField(15);
+    private final JTextField searchField = new JTextField(15);
+    private final JLabel status = new JLabel();
+    private final AtomicLong dropped = new AtomicLong(); // Queued lines discarded before a flush
+
+    LogPanel(int visibleRows) {
+        super(new BorderLayout());
+        list.setVisibleRowCount(visibleRows);
+        list.setPrototypeCellValue("Packet forwarded from device-0000 to device-0000"); // Fixed row height
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        add(scrollPane, BorderLayout.CENTER);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton findButton = new JButton("Find");
+        JButton clearButton = new JButton("Clear");
+        controls.add(new JLabel("Filter:"));
+        controls.add(filterField);
+        controls.add(new JLabel("Search:"));
+        controls.add(searchField);
+        controls.add(findButton);
+        controls.add(clearButton);
+        controls.add(status);
+        add(controls, BorderLayout.NORTH);
+
+        filterField.addActionListener(e -> model.setFilter(filterField.getText()));
+        searchField.addActionListener(e -> findNext());
+        findButton.addActionListener(e -> findNext());
+        clearButton.addActionListener(e -> model.clear());
+
+        Timer flushTimer = new Timer(FLUSH_MILLIS, e -> flush());
+        flushTimer.setCoalesce(true);
+        flushTimer.start();
+    }
+
+    /** Queues a line for display; safe to call from any thread. */
+    void append(String message) {
+        pending.offer(message);
+        if (pendingCount.incrementAndGet() > MAX_PENDING && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void flush() {
+        int count = pendingCount.get();
+        if (count == 0) {
+            return;
+        }
+        String[] batch = new String[count];
+        int taken = 0;
+        String line;
+        while (taken < count && (line = pending.poll()) != null) {
+            batch[taken++] = line;
+        }
+        pendingCount.addAndGet(-taken);
+
+        JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+        boolean following = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+        model.append(batch, taken);
+        if (following && model.getSize() > 0) {
+            list.ensureIndexIsVisible(model.getSize() - 1);
+        }
+        long discarded = dropped.get() + model.evicted;
+        status.setText(model.getSize() + " lines" + (discarded > 0 ? ", " + discarded + " discarded" : ""));
+    }
+
+    private void findNext() {
+        String text = searchField.getText();
+        if (text.isEmpty() || model.getSize() == 0) {
+            return;
+        }
+        int size = model.getSize();
+        int start = list.getSelectedIndex() + 1;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (model.getElementAt(index).contains(text)) {
+                list.setSelectedIndex(index);
+                list.ensureIndexIsVisible(index);
+                return;
+            }
+        }
+        Toolkit.getDefaultToolkit().beep();
+    }
+
+    /**
+     * Ring buffer of the last CAPACITY lines, addressed by sequence number. With a filter set,
+     * the rows are the sequence numbers of matching lines, kept in order so evicted ones can be
+     * trimmed from the front.
+     */
+    private static class LogModel extends AbstractListModel<String> {
+        private static final long serialVersionUID = 1L;
+        private final String[] lines = new String[CAPACITY];
+        private long first; // Sequence number of the oldest kept line
+        private long next; // Sequence number of the next line
+        private long evicted;
+        private String filter = "";
+        private long[] matches = new long[256];
+        private int matchStart;
+        private int matchEnd;
+
+        @Override
+        public int getSize() {
+            return filter.isEmpty() ? (int) (next - first) : matchEnd - matchStart;
+        }
+
+        @Override
+        public String getElementAt(int index) {
+            long sequence = filter.isEmpty() ? first + index : matches[matchStart + index];
+            return lines[(int) (sequence % CAPACITY)];
+        }
+
+        void append(String[] batch, int count) {
+            int oldSize = getSize();
+            long oldFirst = first;
+            for (int i = 0; i < count; i++) {
+                long sequence = next++;
+                lines[(int) (sequence % CAPACITY)] = batch[i];
+                if (!filter.isEmpty() && batch[i].contains(filter)) {
+                    addMatch(sequence);
+                }
+            }
+            first = Math.max(first, next - CAPACITY);
+            evicted += first - oldFirst;
+
+            // Rows leave from the front, old rows before any new ones evicted within this batch
+            int removed;
+            if (filter.isEmpty()) {
+                removed = (int) Math.min(oldSize, first - oldFirst);
+            } else {
+                int before = matchStart;
+                while (matchStart < matchEnd && matches[matchStart] < first) {
+                    matchStart++;
+                }
+                removed = Math.min(oldSize, matchStart - before);
+            }
+            if (removed > 0) {
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+            int kept = oldSize - removed;
+            if (getSize() > kept) {
+                fireIntervalAdded(this, kept, getSize() - 1);
+            }
+        }
+
+        void setFilter(String text) {
+            filter = text;
+            matchStart = 0;
+            matchEnd = 0;
+            if (!filter.isEmpty()) {
+                for (long sequence = first; sequence < next; sequence++) {
+                    if (lines[(int) (sequence % CAPACITY)].contains(filter)) {
+                        addMatch(sequence);
+                    }
+                }
+            }
+            fireContentsChanged(this, 0, Math.max(0, getSize() - 1));
+        }
+
+        void clear() {
+            int size = getSize();
+            Arrays.fill(lines, null);
+            first = next;
+            matchStart = 0;
+            matchEnd = 0;
+            if (size > 0) {
+                fireIntervalRemoved(this, 0, size - 1);
+            }
+        }
+
+        private void addMatch(long sequence) {
+            if (matchEnd == matches.length) {
+                if (matchStart > 0) {
+                    System.arraycopy(matches, matchStart, matches, 0, matchEnd - matchStart);
+                    matchEnd -= matchStart;
+                    matchStart = 0;
+                }
+                if (matchEnd == matches.length) {
+                    matches = Arrays.copyOf(matches, matches.length * 2);
+                }
+            }
+            matches[matchEnd++] = sequence;
+        }
+    }
+}
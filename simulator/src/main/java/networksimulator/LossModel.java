@@ -0,0 +1,149 @@
+package networksimulator;
+
+/**
+ * Decides which packets a link loses as they go on the wire. Set one per link with
+ * NetworkSimulator.setLossModel; links without one lose the packets of simulatePacketForwarding
+ * and simulateTraffic with the simulator's per-hop loss probability and nothing else.
+ *
+ * Decisions take their randomness from the link's own stream in the deciding engine, derived
+ * from the simulator's seed, and any state a model keeps is an int the engine holds per link,
+ * so a run repeats exactly for a seed however many threads or processes it is spread over.
+ */
+public interface LossModel {
+    /** Added to the state returned by decide when the packet is lost. */
+    int LOST = 1 << 30;
+
+    /** Uniform draws in [0, 1) from the deciding link's random stream. */
+    interface Draws {
+        double nextDouble();
+    }
+
+    /**
+     * Decides the fate of a packet that has been in flight for ageNanos of simulated time.
+     * state is the one this model returned for the link's previous packet in the engine, 0 at
+     * the start of a run; return the next state, plus LOST if the packet is lost. The state
+     * must stay below LOST.
+     */
+    int decide(int state, long ageNanos, Draws random);
+
+    /** Loses every packet independently with the given probability. */
+    static LossModel bernoulli(double probability) {
+        return new Bernoulli(probability);
+    }
+
+    /**
+     * Bursty loss: a two-state Markov chain moves between a good and a bad state before every
+     * packet, with the given transition probabilities, and loses the packet with the loss
+     * probability of the state it is in. The mean burst lasts 1 / badToGood packets.
+     */
+    static LossModel gilbertElliott(double goodToBad, double badToGood, double goodLoss, double badLoss) {
+        return new GilbertElliott(goodToBad, badToGood, goodLoss, badLoss);
+    }
+
+    /** Loses packets that have been in flight for longer than the threshold of simulated time. */
+    static LossModel delayThreshold(double thresholdMillis) {
+        return new DelayThreshold(Math.round(thresholdMillis * 1e6));
+    }
+
+    final class Bernoulli implements LossModel {
+        private final double probability;
+
+        private Bernoulli(double probability) {
+            checkProbability(probability);
+            this.probability = probability;
+        }
+
+        @Override
+        public int decide(int state, long ageNanos, Draws random) {
+            return random.nextDouble() < probability ? LOST : 0;
+        }
+
+        public double getProbability() {
+            return probability;
+        }
+
+        @Override
+        public String toString() {
+            return "bernoulli " + probability;
+        }
+    }
+
+    final class GilbertElliott implements LossModel {
+        private static final int BAD = 1;
+
+        private final double goodToBad;
+        private final double badToGood;
+        private final double goodLoss;
+        private final double badLoss;
+
+        private GilbertElliott(double goodToBad, double badToGood, double goodLoss, double badLoss) {
+            checkProbability(goodToBad);
+            checkProbability(badToGood);
+            checkProbability(goodLoss);
+            checkProbability(badLoss);
+            this.goodToBad = goodToBad;
+            this.badToGood = badToGood;
+            this.goodLoss = goodLoss;
+            this.badLoss = badLoss;
+        }
+
+        @Override
+        public int decide(int state, long ageNanos, Draws random) {
+            boolean bad = state == BAD ? random.nextDouble() >= badToGood : random.nextDouble() < goodToBad;
+            int next = bad ? BAD : 0;
+            return random.nextDouble() < (bad ? badLoss : goodLoss) ? next | LOST : next;
+        }
+
+        public double getGoodToBad() {
+            return goodToBad;
+        }
+
+        public double getBadToGood() {
+            return badToGood;
+        }
+
+        public double getGoodLoss() {
+            return goodLoss;
+        }
+
+        public double getBadLoss() {
+            return badLoss;
+        }
+
+        @Override
+        public String toString() {
+            return "gilbert-elliott " + goodToBad + " " + badToGood + " " + goodLoss + " " + badLoss;
+        }
+    }
+
+    final class DelayThreshold implements LossModel {
+        private final long thresholdNanos;
+
+        private DelayThreshold(long thresholdNanos) {
+            if (thresholdNanos < 0) {
+                throw new IllegalArgumentException("Delay threshold must not be negative");
+            }
+            this.thresholdNanos = thresholdNanos;
+        }
+
+        @Override
+        public int decide(int state, long ageNanos, Draws random) {
+            return ageNanos > thresholdNanos ? LOST : 0;
+        }
+
+        public long getThresholdNanos() {
+            return thresholdNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "delay " + thresholdNanos / 1e6;
+        }
+    }
+
+    private static void checkProbability(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+    }
+}
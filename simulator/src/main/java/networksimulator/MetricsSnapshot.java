@@ -0,0 +1,161 @@
+package networksimulator;
+
+import java.util.*;
+
+/**
+ * Point-in-time copy of a simulator's counters, histograms and top-talker sketch.
+ */
+public class MetricsSnapshot {
+    private final String[] deviceNames;
+    private final long[] forwarded;
+    private final long[] dropped;
+    private final long[] noRoute;
+    private final String[] linkNames;
+    private final long[] linkPackets;
+    private final long[] linkBusyNanos;
+    private final long[] linkQueueNanos;
+    private final long[] linkQueueDrops;
+    private final Histogram hopCounts;
+    private final Histogram latencies;
+    private final HeavyHitters talkers;
+    private final long simulatedNanos;
+
+    MetricsSnapshot(String[] deviceNames, long[] forwarded, long[] dropped, long[] noRoute, String[] linkNames,
+                    long[] linkPackets, long[] linkBusyNanos, long[] linkQueueNanos, long[] linkQueueDrops,
+                    Histogram hopCounts, Histogram latencies, HeavyHitters talkers,
+                    long simulatedNanos) {
+        this.deviceNames = deviceNames;
+        this.forwarded = forwarded;
+        this.dropped = dropped;
+        this.noRoute = noRoute;
+        this.linkNames = linkNames;
+        this.linkPackets = linkPackets;
+        this.linkBusyNanos = linkBusyNanos;
+        this.linkQueueNanos = linkQueueNanos;
+        this.linkQueueDrops = linkQueueDrops;
+        this.hopCounts = hopCounts;
+        this.latencies = latencies;
+        this.talkers = talkers;
+        this.simulatedNanos = simulatedNanos;
+    }
+
+    public int getDeviceCount() {
+        return deviceNames.length;
+    }
+
+    public String getDeviceName(int device) {
+        return deviceNames[device];
+    }
+
+    public long getForwarded(int device) {
+        return forwarded[device];
+    }
+
+    public long getDropped(int device) {
+        return dropped[device];
+    }
+
+    public long getNoRoute(int device) {
+        return noRoute[device];
+    }
+
+    public int getLinkCount() {
+        return linkNames.length;
+    }
+
+    // "source->nextHop"
+    public String getLinkName(int link) {
+        return linkNames[link];
+    }
+
+    public long getLinkPackets(int link) {
+        return linkPackets[link];
+    }
+
+    // Share of the simulated time the link spent transmitting
+    public double getLinkUtilization(int link) {
+        return simulatedNanos == 0 ? 0 : (double) linkBusyNanos[link] / simulatedNanos;
+    }
+
+    public long getLinkQueueDrops(int link) {
+        return linkQueueDrops[link];
+    }
+
+    // Mean time packets sent over the link waited in its output queue
+    public double getLinkMeanQueueDelayMillis(int link) {
+        return linkPackets[link] == 0 ? 0 : linkQueueNanos[link] / 1e6 / linkPackets[link];
+    }
+
+    long getLinkBusyNanos(int link) {
+        return linkBusyNanos[link];
+    }
+
+    long getLinkQueueNanos(int link) {
+        return linkQueueNanos[link];
+    }
+
+    public List<String> getBusiestLinks(int limit) {
+        Integer[] order = new Integer[linkNames.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(linkPackets[b], linkPackets[a]));
+        List<String> busiest = new ArrayList<>();
+        for (int i = 0; i < order.length && i < limit; i++) {
+            int link = order[i];
+            busiest.add(linkNames[link] + " packets=" + linkPackets[link]
+                + String.format(" utilization=%.3f queueMs=%.3f", getLinkUtilization(link), getLinkMeanQueueDelayMillis(link))
+                + " queueDrops=" + linkQueueDrops[link]);
+        }
+        return busiest;
+    }
+
+    public List<String> getBusiestDevices(int limit) {
+        Integer[] order = new Integer[deviceNames.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(forwarded[b], forwarded[a]));
+        List<String> busiest = new ArrayList<>();
+        for (int i = 0; i < order.length && i < limit; i++) {
+            int device = order[i];
+            busiest.add(deviceNames[device] + " forwarded=" + forwarded[device] + " dropped=" + dropped[device]
+                + " noRoute=" + noRoute[device]);
+        }
+        return busiest;
+    }
+
+    // Source/destination address pairs that sent the most packets, heaviest first; the counts
+    // are count-min estimates, never below the true ones
+    public List<String> getTopTalkers(int limit) {
+        List<String> top = new ArrayList<>();
+        for (long pair : talkers.top(limit)) {
+            top.add(NetworkSimulator.formatAddress(HeavyHitters.pairSource(pair)) + "->"
+                + NetworkSimulator.formatAddress(HeavyHitters.pairDestination(pair)) + " packets=" + talkers.estimate(pair));
+        }
+        return top;
+    }
+
+    // Packets sent, keyed by HeavyHitters.pair of source and destination address
+    public HeavyHitters getTalkers() {
+        return talkers;
+    }
+
+    public Histogram getHopCounts() {
+        return hopCounts;
+    }
+
+    // End-to-end latency of delivered packets in simulated nanoseconds
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getSimulatedNanos() {
+        return simulatedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "hops[" + hopCounts + "] latencyNanos[" + latencies + "]";
+    }
+}
@@ -0,0 +1,1658 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class NetworkSimulator {
+    // Results of NetworkDevice.findNextHopId besides a device id
+    static final int NO_ROUTE = -1;
+    static final int UNKNOWN_DEVICE = -2;
+    // Compiled next hop of a route to a NextHopGroup; its link id is the group's offset in the
+    // device's group links
+    static final int NEXT_HOP_GROUP = -3;
+
+    private Map<String, NetworkDevice> devices = new HashMap<>();
+    private Map<Integer, NetworkDevice> devicesByAddress = new HashMap<>(); // IP index for duplicate checks
+    private List<NetworkDevice> deviceTable = new ArrayList<>(); // Indexed by device id
+    private Set<NetworkDevice> staleDevices = new LinkedHashSet<>(); // Next-hop ids need compiling
+    private Set<NetworkDevice> unresolvedDevices = new HashSet<>(); // Routes via a device that does not exist yet
+    private Map<Long, Integer> linkIds = new HashMap<>(); // linkKey(source id, next-hop id) -> link id
+    private List<Link> links = new ArrayList<>(); // Indexed by link id
+    private int indexedLinks; // Links entered in linkIds; a restore defers this to the first lookup
+    private final SimulatorMetrics metrics = new SimulatorMetrics(this);
+    private List<Route> routes = new ArrayList<>();
+    private boolean isSimulating = false;
+    private final LongAdder totalPacketsForwarded = new LongAdder();
+    private final LongAdder totalPacketsLost = new LongAdder();
+    private volatile long delayThresholdMillis; // simulatePacketPath drops packets in flight longer, 0 for never
+    // Defaults for links not set up with configureLink
+    private long linkBandwidth = 1_000_000_000L; // 1 Gbit/s
+    private long propagationDelay = TimeUnit.MILLISECONDS.toNanos(100); // 100ms per hop, in simulated time
+    private int queueCapacity = 64;
+    private QueueDiscipline queueDiscipline = QueueDiscipline.DROP_TAIL;
+    private double lossProbability = 0.05; // Per-hop loss in simulatePacketForwarding
+    private int packetSize = 1500; // Bytes
+    private int initialTtl = 64; // Hops a packet may make before it is dropped
+    private final AtomicInteger engineCount = new AtomicInteger();
+    private long seed = new SplittableRandom().nextLong(); // Seeds the engines' random loss and RED drops
+    private volatile TraceSink trace = TraceSink.NONE; // Binary event trace, off by default
+    private final ConsoleTraceSink console = new ConsoleTraceSink(this);
+    private volatile SimulationEngine engine = new SimulationEngine(this, initialTtl, console); // Replaced by a restore
+    // One quiet engine per worker thread for simulateTraffic
+    private final ThreadLocal<SimulationEngine> batchEngines = ThreadLocal.withInitial(
+        () -> new SimulationEngine(this, initialTtl, null));
+    private int topologyVersion; // Bumped by every device or route change
+    private ReachabilityMatrix reachability; // Cached result of computeReachability
+    private LinkStateRouting linkState; // Adjacency graph, created by the first connect
+    private boolean linkStateEnabled;
+    private SimulationEngine loadEngine; // simulateLoad run in progress, saved with checkpoints
+    private long loadSent;
+    private IntPredicate routeOwner; // Devices whose routes are kept, null for all; see restrictRoutes
+    private final Set<LiveSimulation> liveRuns = ConcurrentHashMap.newKeySet(); // Stopped by stopSimulation
+    private final Map<NextHopGroup, NextHopGroup> nextHopGroups = new ConcurrentHashMap<>(); // Interned groups
+    private static final int PACKETS_PER_TASK = 4096;
+
+    // Returns false, after printing the error, if the device was not added; so do the other
+    // setup methods below that return a boolean
+    public boolean addDevice(String name, String ipAddress, String subnetMask) {
+        long address = parseAddress(ipAddress, 0, ipAddress.length());
+        long mask = parseAddress(subnetMask, 0, subnetMask.length());
+        if (address < 0 || mask < 0) {
+            System.out.println("Error: Invalid IP address or subnet mask.");
+            return false;
+        }
+        return addDevice(name, ipAddress, subnetMask, (int) address, (int) mask) != null;
+    }
+
+    // Adds a device whose address and mask are already parsed; returns null if the name or IP is taken
+    NetworkDevice addDevice(String name, String ipAddress, String subnetMask, int address, int mask) {
+        if (devices.containsKey(name) || devicesByAddress.containsKey(address)) {
+            System.out.println("Error: Device name or IP address already exists.");
+            return null;
+        }
+        NetworkDevice device = new NetworkDevice(deviceTable.size(), name, ipAddress, subnetMask, address, mask);
+        devices.put(name, device);
+        devicesByAddress.put(address, device);
+        deviceTable.add(device);
+        staleDevices.addAll(unresolvedDevices); // The new device may be one of their next hops
+        topologyVersion++;
+        return device;
+    }
+
+    public NetworkDevice getDeviceByAddress(String ipAddress) {
+        return devicesByAddress.get(toInt(ipAddress));
+    }
+
+    public boolean addStaticRoute(String sourceDevice, String destinationIpWithMask, String nextHop) {
+        RouteEntry route = parseRoute(destinationIpWithMask, nextHop);
+        if (route == null) {
+            return false;
+        }
+
+        NetworkDevice device = devices.get(sourceDevice);
+        if (device != null) {
+            device.addRoute(route);
+            return true;
+        } else {
+            System.out.println("Error: Source device " + sourceDevice + " not found.");
+            return false;
+        }
+    }
+
+    // Adds a route that spreads flows over several next hops in proportion to their weights,
+    // like addStaticRoute with a next hop of the form "R1,R2*3"
+    public boolean addEcmpRoute(String sourceDevice, String destinationIpWithMask, String[] nextHops, int[] weights) {
+        NextHopGroup group = NextHopGroup.of(nextHops, weights);
+        return group != null && addStaticRoute(sourceDevice, destinationIpWithMask, group.toString());
+    }
+
+    // Bulk variant of addStaticRoute: maps each destination IP or CIDR to its next hop
+    public void addStaticRoutes(String sourceDevice, Map<String, String> destinationsToNextHops) {
+        NetworkDevice device = devices.get(sourceDevice);
+        if (device == null) {
+            System.out.println("Error: Source device " + sourceDevice + " not found.");
+            return;
+        }
+
+        List<RouteEntry> parsed = new ArrayList<>(destinationsToNextHops.size());
+        for (Map.Entry<String, String> entry : destinationsToNextHops.entrySet()) {
+            RouteEntry route = parseRoute(entry.getKey(), entry.getValue());
+            if (route != null) {
+                parsed.add(route);
+            }
+        }
+        device.addRoutes(parsed);
+    }
+
+    // Keeps only the routes of devices the predicate accepts, by id, from now on. A shard of a
+    // ShardCoordinator run only forwards at its own devices, so it leaves the others' tables
+    // empty and the topology fits in the shards' heaps together.
+    void restrictRoutes(IntPredicate owner) {
+        routeOwner = owner;
+    }
+
+    // Adds an already parsed route, as the topology loader does; false if the next-hop group is invalid
+    boolean addRoute(NetworkDevice device, int destination, int prefixLength, String nextHop) {
+        RouteEntry route = newRoute(destination, prefixLength, nextHop);
+        if (route == null) {
+            return false;
+        }
+        device.addRoute(route);
+        return true;
+    }
+
+    // A route to one device, or to a group if the next hop lists several; null if the group is invalid
+    private RouteEntry newRoute(int destination, int prefixLength, String nextHop) {
+        if (!NextHopGroup.isGroup(nextHop)) {
+            return new RouteEntry(destination, prefixLength, nextHop);
+        }
+        NextHopGroup group = NextHopGroup.parse(nextHop);
+        return group == null ? null : new RouteEntry(destination, prefixLength, nextHopGroups.computeIfAbsent(group, g -> g));
+    }
+
+    // Packets each link from the device has carried, by next hop; shows how groups spread flows
+    public Map<String, Long> getLinkLoads(String sourceDevice) {
+        NetworkDevice source = devices.get(sourceDevice);
+        Map<String, Long> loads = new TreeMap<>();
+        if (source == null) {
+            System.out.println("Error: Device " + sourceDevice + " not found.");
+            return loads;
+        }
+        MetricsSnapshot snapshot = metrics.snapshot();
+        synchronized (this) {
+            for (int link = 0; link < Math.min(links.size(), snapshot.getLinkCount()); link++) {
+                if (links.get(link).getSource() == source.id) {
+                    loads.put(deviceTable.get(links.get(link).getTarget()).name, snapshot.getLinkPackets(link));
+                }
+            }
+        }
+        return loads;
+    }
+
+    // Returns false if lines of the file had to be skipped
+    public boolean loadTopology(Path file) throws IOException {
+        TopologyLoader loader = new TopologyLoader(this);
+        loader.load(file);
+        System.out.println("Loaded " + loader.getDevicesLoaded() + " devices, " + loader.getRoutesLoaded() + " routes and "
+            + loader.getLinksLoaded() + " links from " + file
+            + (loader.getErrors() > 0 ? " (" + loader.getErrors() + " lines skipped)" : ""));
+        if (loader.getLinksLoaded() > 0) {
+            enableLinkStateRouting();
+        }
+        return loader.getErrors() == 0;
+    }
+
+    public void exportTopology(Path file) throws IOException {
+        TopologyExporter.export(this, file);
+    }
+
+    private RouteEntry parseRoute(String destinationIpWithMask, String nextHop) {
+        int end = destinationIpWithMask.length();
+        int prefixLength = 32; // /32 for single IP
+        int slash = destinationIpWithMask.indexOf('/');
+        if (slash >= 0) {
+            // CIDR validation
+            try {
+                prefixLength = Integer.parseInt(destinationIpWithMask, slash + 1, end, 10);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid CIDR prefix: " + destinationIpWithMask);
+                return null;
+            }
+            if (prefixLength < 0 || prefixLength > 32) {
+                System.out.println("Invalid CIDR prefix: " + destinationIpWithMask);
+                return null;
+            }
+            end = slash;
+        }
+
+        long destination = parseAddress(destinationIpWithMask, 0, end);
+        if (destination < 0) {
+            System.out.println("Invalid IP address: " + destinationIpWithMask.substring(0, end));
+            return null;
+        }
+        return newRoute((int) destination, prefixLength, nextHop);
+    }
+
+    public List<String> simulatePacketPath(String sourceDevice, String destinationDevice) {
+        return simulatePacketPath(sourceDevice, destinationDevice, null);
+    }
+
+    // Also fills arrivalTimes, if given, with the simulated nanoseconds after sending at which
+    // the packet reached each device on the path
+    public List<String> simulatePacketPath(String sourceDevice, String destinationDevice, List<Long> arrivalTimes) {
+        List<String> path = new ArrayList<>();
+        NetworkDevice source = devices.get(sourceDevice);
+        NetworkDevice destination = devices.get(destinationDevice);
+    
+        if (source == null || destination == null) {
+            System.out.println("Error: Invalid source or destination device.");
+            return path;
+        }
+    
+        System.out.println("Simulating packet from " + sourceDevice + " to " + destinationDevice);
+        compileForwarding();
+        synchronized (engine) {
+            int packet = engine.send(source, destination, true, delayThresholdMillis > 0, false);
+            engine.run();
+            path.addAll(engine.getPath(packet));
+            if (arrivalTimes != null) {
+                for (long time : engine.getPathTimes(packet)) {
+                    arrivalTimes.add(time);
+                }
+            }
+            engine.release(packet);
+        }
+    
+        return path;
+    }
+    
+
+    private int toInt(String ipAddress) {
+        long address = parseAddress(ipAddress, 0, ipAddress.length());
+        if (address < 0) {
+            throw new IllegalArgumentException("Invalid IP address: " + ipAddress);
+        }
+        return (int) address;
+    }
+
+    // Parses a dotted quad in text[start, end) without regex or allocation; returns -1 if malformed
+    static long parseAddress(CharSequence text, int start, int end) {
+        long result = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            return -1;
+        }
+        return (result << 8) | value;
+    }
+
+    static String formatAddress(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xFF) + "." + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    static int prefixMask(int prefixLength) {
+        return prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+    }
+
+    public void simulatePacketForwarding(String sourceDevice, String destinationDevice) {
+        NetworkDevice source = devices.get(sourceDevice);
+        NetworkDevice destination = devices.get(destinationDevice);
+    
+        if (source == null || destination == null) {
+            System.out.println("Error: Invalid source or destination device.");
+            return;
+        }
+    
+        System.out.println("Simulating packet from " + sourceDevice + " to " + destinationDevice);
+        compileForwarding();
+        synchronized (engine) {
+            int packet = engine.send(source, destination, false, false, true);
+            engine.run();
+            int outcome = engine.getOutcome(packet);
+            engine.release(packet);
+            if (outcome == SimulationEngine.DELIVERED) {
+                totalPacketsForwarded.increment();
+            } else if (outcome == SimulationEngine.LOST) {
+                totalPacketsLost.increment();
+            }
+        }
+    }
+
+    public TrafficResult simulateTraffic(Collection<TrafficFlow> flows) {
+        return simulateTraffic(flows.stream());
+    }
+
+    // Forwards every packet of every flow like simulatePacketForwarding, spread across all cores.
+    // Each batch of packets draws from its own stream split off the seed in batch order, so the
+    // result is the same for a seed however the batches land on threads. The topology must not
+    // change while a batch is running.
+    public TrafficResult simulateTraffic(Stream<TrafficFlow> flows) {
+        long start = System.nanoTime();
+        List<TrafficFlow> tasks = new ArrayList<>();
+        // The batches are numbered in flow order, so a parallel stream must not be split here
+        flows.sequential().forEachOrdered(flow -> {
+            if (!devices.containsKey(flow.getSource()) || !devices.containsKey(flow.getDestination())) {
+                System.out.println("Error: Invalid source or destination device.");
+                return;
+            }
+            for (long sent = 0; sent < flow.getCount(); sent += PACKETS_PER_TASK) {
+                long count = Math.min(PACKETS_PER_TASK, flow.getCount() - sent);
+                tasks.add(new TrafficFlow(flow.getSource(), flow.getDestination(), count, flow.getPacketsPerSecond()));
+            }
+        });
+
+        compileForwarding();
+        LongAdder[] outcomes = new LongAdder[SimulationEngine.OUTCOME_COUNT];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+        SplittableRandom streams = new SplittableRandom(seed);
+        long[] taskSeeds = new long[tasks.size()];
+        for (int i = 0; i < taskSeeds.length; i++) {
+            taskSeeds[i] = streams.split().nextLong();
+        }
+        IntStream.range(0, tasks.size()).parallel().forEach(index -> {
+            TrafficFlow task = tasks.get(index);
+            SimulationEngine worker = batchEngines.get();
+            worker.reseed(taskSeeds[index]);
+            NetworkDevice source = devices.get(task.getSource());
+            NetworkDevice destination = devices.get(task.getDestination());
+            long[] counts = new long[SimulationEngine.OUTCOME_COUNT];
+            for (long i = 0; i < task.getCount(); i++) {
+                int packet = worker.send(source, destination, false, false, true);
+                worker.run();
+                counts[worker.getOutcome(packet)]++;
+                worker.release(packet);
+            }
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                outcomes[outcome].add(counts[outcome]);
+            }
+        });
+
+        long[] counts = new long[outcomes.length];
+        for (int outcome = 0; outcome < counts.length; outcome++) {
+            counts[outcome] = outcomes[outcome].sum();
+        }
+        return loadResult(counts, tasks.stream().mapToLong(TrafficFlow::getCount).sum(), start);
+    }
+
+    // Sends every flow through one engine at its own pace, so packets of different flows share
+    // link queues: throughput, queueing delay and queue drops under load come out of the
+    // simulation. A flow without a rate is sent as one burst at time zero. Queue drops count
+    // as lost; latencies and per-link counters land in the metrics.
+    public TrafficResult simulateLoad(Collection<TrafficFlow> flows) {
+        return simulateLoad(flows, 0, null);
+    }
+
+    // Like simulateLoad, but saves a snapshot to checkpoint after every checkpointMillis of
+    // simulated time. A run cut short can be continued with restoreSnapshot and resumeLoad.
+    public TrafficResult simulateLoad(Collection<TrafficFlow> flows, long checkpointMillis, Path checkpoint) {
+        long start = System.nanoTime();
+        compileForwarding();
+        SimulationEngine load = new SimulationEngine(this, initialTtl, null);
+        load.reseed(seed);
+        long sent = sendFlows(flows, new SimulationEngine[] {load}, null);
+        return runLoad(load, sent, start, checkpointMillis, checkpoint);
+    }
+
+    // Like simulateLoad, but splits the devices into partitions that are simulated on threads of
+    // their own (0 for one per processor). The result, metrics and random drops are exactly
+    // those of simulateLoad with the same seed. Links between partitions need a propagation
+    // delay, the time the partitions can run ahead of each other; without one, or with a
+    // single partition, the flows are simulated on one thread.
+    public TrafficResult simulateLoad(Collection<TrafficFlow> flows, int partitions) {
+        long start = System.nanoTime();
+        compileForwarding();
+        int count = Math.min(partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors(), getDeviceCount());
+        if (count <= 1) {
+            return simulateLoad(flows);
+        }
+        int[] partitionOf = ParallelLoad.partition(this, count);
+        long lookahead = ParallelLoad.lookahead(this, partitionOf);
+        if (lookahead == 0) {
+            System.out.println("Error: Links between partitions have no propagation delay; simulating on one thread.");
+            return simulateLoad(flows);
+        }
+
+        SimulationEngine[] engines = new SimulationEngine[count];
+        for (int partition = 0; partition < count; partition++) {
+            engines[partition] = new SimulationEngine(this, initialTtl, null);
+            engines[partition].reseed(seed);
+        }
+        ParallelLoad parallel = new ParallelLoad(engines, partitionOf, lookahead);
+        long sent = sendFlows(flows, engines, partitionOf);
+        return loadResult(parallel.run(), sent, start);
+    }
+
+    // Engine for a shard of a ShardCoordinator run, set up like the one of simulateLoad
+    SimulationEngine newLoadEngine() {
+        compileForwarding();
+        SimulationEngine load = new SimulationEngine(this, initialTtl, null);
+        load.reseed(seed);
+        return load;
+    }
+
+    // Starts each flow on the engine of its source's partition and returns the packets to send.
+    // Flows are numbered by position, invalid ones included, so serials match across runs.
+    // Partitions without an engine belong to other processes; their flows are left to them.
+    long sendFlows(Collection<TrafficFlow> flows, SimulationEngine[] engines, int[] partitionOf) {
+        long sent = 0;
+        int id = 0;
+        for (TrafficFlow flow : flows) {
+            NetworkDevice source = devices.get(flow.getSource());
+            NetworkDevice destination = devices.get(flow.getDestination());
+            if (source == null || destination == null) {
+                System.out.println("Error: Invalid source or destination device.");
+                id++;
+                continue;
+            }
+            long interval = flow.getPacketsPerSecond() > 0 ? Math.round(1e9 / flow.getPacketsPerSecond()) : 0;
+            SimulationEngine engine = partitionOf == null ? engines[0] : engines[partitionOf[source.getId()]];
+            if (engine == null) {
+                id++;
+                continue;
+            }
+            engine.sendFlow(source, destination, flow.getCount(), interval, id++);
+            sent += flow.getCount();
+        }
+        return sent;
+    }
+
+    // Finishes the load simulation of a snapshot taken by a checkpointing simulateLoad
+    public TrafficResult resumeLoad(long checkpointMillis, Path checkpoint) {
+        SimulationEngine load;
+        long sent;
+        synchronized (this) {
+            load = loadEngine;
+            sent = loadSent;
+        }
+        if (load == null) {
+            System.out.println("Error: No load simulation to resume.");
+            return new TrafficResult(0, 0, 0, 0, 0);
+        }
+        return runLoad(load, sent, System.nanoTime(), checkpointMillis, checkpoint);
+    }
+
+    private TrafficResult runLoad(SimulationEngine load, long sent, long start, long checkpointMillis, Path checkpoint) {
+        synchronized (this) {
+            loadEngine = load;
+            loadSent = sent;
+        }
+        if (checkpoint == null || checkpointMillis <= 0) {
+            load.run();
+        } else {
+            long interval = TimeUnit.MILLISECONDS.toNanos(checkpointMillis);
+            long until = load.getTime();
+            while (load.run(until += interval)) {
+                try {
+                    saveSnapshot(checkpoint);
+                } catch (IOException e) {
+                    System.out.println("Error: Could not write checkpoint: " + e.getMessage());
+                }
+            }
+        }
+        synchronized (this) {
+            loadEngine = null;
+        }
+        return loadResult(load.getOutcomeCounts(), sent, start);
+    }
+
+    private TrafficResult loadResult(long[] counts, long sent, long start) {
+        TrafficResult result = outcomeResult(counts, sent, System.nanoTime() - start);
+        totalPacketsForwarded.add(result.getPacketsDelivered());
+        totalPacketsLost.add(result.getPacketsLost());
+        return result;
+    }
+
+    // Queue and delay drops count as lost, like random loss
+    static TrafficResult outcomeResult(long[] counts, long sent, long elapsedNanos) {
+        long delivered = counts[SimulationEngine.DELIVERED];
+        long lost = counts[SimulationEngine.LOST] + counts[SimulationEngine.DROPPED_QUEUE]
+            + counts[SimulationEngine.DROPPED_DELAY];
+        long unroutable = counts[SimulationEngine.NO_ROUTE] + counts[SimulationEngine.UNKNOWN_DEVICE]
+            + counts[SimulationEngine.TTL_EXPIRED] + counts[SimulationEngine.ROUTING_LOOP];
+        return new TrafficResult(sent, delivered, lost, unroutable, elapsedNanos);
+    }
+
+    // Sends flows like simulateLoad, but in step with the wall clock: speed simulated seconds pass
+    // per second, and flows can be added to the returned run while it goes. It runs on a thread
+    // of its own until every packet has completed or stopSimulation stops it, and hands progress,
+    // if given, its results every second and at the end. The topology must not change meanwhile.
+    public LiveSimulation startLive(Collection<TrafficFlow> flows, double speed, Consumer<TrafficResult> progress) {
+        if (!(speed > 0)) {
+            System.out.println("Error: Live simulation speed must be positive.");
+            return null;
+        }
+        compileForwarding();
+        SimulationEngine live = new SimulationEngine(this, initialTtl, null);
+        live.reseed(seed);
+        LiveSimulation run = new LiveSimulation(this, live, speed, progress);
+        for (TrafficFlow flow : flows) {
+            run.addFlow(flow);
+        }
+        liveRuns.add(run);
+        isSimulating = true;
+        run.start();
+        return run;
+    }
+
+    // Called on the live run's thread as it ends
+    void liveEnded(LiveSimulation run, TrafficResult result) {
+        if (liveRuns.remove(run)) {
+            totalPacketsForwarded.add(result.getPacketsDelivered());
+            totalPacketsLost.add(result.getPacketsLost());
+        }
+    }
+
+    public void stopSimulation() {
+        isSimulating = false;
+        for (LiveSimulation run : liveRuns) {
+            run.cancel();
+        }
+        System.out.println("Simulation stopped.");
+        System.out.println("Total packets forwarded: " + totalPacketsForwarded.sum());
+        System.out.println("Total packets lost: " + totalPacketsLost.sum());
+        System.out.println("Delivered packets: " + metrics.snapshot());
+        synchronized (engine) {
+            System.out.println("Simulated time: " + engine.getTime() / 1_000_000 + " ms");
+        }
+    }
+
+    // Sends the per-hop messages of simulatePacketPath and simulatePacketForwarding somewhere other than stdout
+    public void setEventLog(Consumer<String> log) {
+        console.setOutput(log == null ? System.out::println : log);
+    }
+
+    public Map<String, NetworkDevice> getDevices() {
+        return devices;
+    }
+
+    NetworkDevice getDevice(int id) {
+        return deviceTable.get(id);
+    }
+
+    int getDeviceCount() {
+        return deviceTable.size();
+    }
+
+    int getLinkCount() {
+        return links.size();
+    }
+
+    String getLinkName(int link) {
+        Link endpoints = links.get(link);
+        return getDevice(endpoints.getSource()).getName() + "->" + getDevice(endpoints.getTarget()).getName();
+    }
+
+    Link getLink(int link) {
+        return links.get(link);
+    }
+
+    // Makes the link from source to nextHop lose packets by the given model, on top of its queue
+    // drops, in every kind of simulation; null goes back to the per-hop loss probability, which
+    // only simulatePacketForwarding and simulateTraffic apply.
+    public synchronized boolean setLossModel(String source, String nextHop, LossModel model) {
+        Link link = addLink(source, nextHop);
+        if (link == null) {
+            System.out.println("Error: Device " + (devices.containsKey(source) ? nextHop : source) + " not found.");
+            return false;
+        }
+        link.setLossModel(model);
+        metrics.ensureCapacity(deviceTable.size(), links.size());
+        return true;
+    }
+
+    // The link from source to its next hop nextHop, or null if no route or configuration uses it
+    public synchronized Link getLink(String source, String nextHop) {
+        NetworkDevice from = devices.get(source);
+        NetworkDevice to = devices.get(nextHop);
+        if (from == null || to == null) {
+            return null;
+        }
+        indexLinks();
+        Integer id = linkIds.get(linkKey(from.id, to.id));
+        return id == null ? null : links.get(id);
+    }
+
+    // The link from source to nextHop, created with the defaults if it does not exist yet;
+    // null if either device is unknown
+    Link addLink(String source, String nextHop) {
+        NetworkDevice from = devices.get(source);
+        NetworkDevice to = devices.get(nextHop);
+        return from == null || to == null ? null : links.get(linkId(from.id, to.id));
+    }
+
+    // Sets bandwidth (bits per second), propagation delay and output queue of the link from
+    // source to nextHop. The link need not carry any route yet.
+    public synchronized boolean configureLink(String source, String nextHop, long bandwidthBitsPerSecond,
+                                              double propagationDelayMillis, int queueCapacity, QueueDiscipline discipline) {
+        if (bandwidthBitsPerSecond <= 0 || propagationDelayMillis < 0 || queueCapacity < 0 || discipline == null) {
+            System.out.println("Error: Invalid link bandwidth, delay or queue.");
+            return false;
+        }
+        Link link = addLink(source, nextHop);
+        if (link == null) {
+            System.out.println("Error: Device " + (devices.containsKey(source) ? nextHop : source) + " not found.");
+            return false;
+        }
+        link.set(bandwidthBitsPerSecond, Math.round(propagationDelayMillis * 1e6), queueCapacity, discipline,
+            link.getLossProbability());
+        link.setConfigured(true);
+        metrics.ensureCapacity(deviceTable.size(), links.size());
+        return true;
+    }
+
+    // Changes the defaults, including for every existing link not set up with configureLink
+    public synchronized boolean setLinkDefaults(long bandwidthBitsPerSecond, double propagationDelayMillis,
+                                                int queueCapacity, QueueDiscipline discipline) {
+        if (bandwidthBitsPerSecond <= 0 || propagationDelayMillis < 0 || queueCapacity < 0 || discipline == null) {
+            System.out.println("Error: Invalid link bandwidth, delay or queue.");
+            return false;
+        }
+        linkBandwidth = bandwidthBitsPerSecond;
+        propagationDelay = Math.round(propagationDelayMillis * 1e6);
+        this.queueCapacity = queueCapacity;
+        queueDiscipline = discipline;
+        for (Link link : links) {
+            if (!link.isConfigured()) {
+                link.set(linkBandwidth, propagationDelay, queueCapacity, queueDiscipline, lossProbability);
+            }
+        }
+        return true;
+    }
+
+    public int getPacketSize() {
+        return packetSize;
+    }
+
+    public long getDelayThresholdMillis() {
+        return delayThresholdMillis;
+    }
+
+    // Makes simulatePacketPath drop packets that have been in flight for longer than the given
+    // simulated time; 0, the default, traces every path to its end
+    public void setDelayThreshold(long millis) {
+        if (millis < 0) {
+            System.out.println("Error: Delay threshold must not be negative.");
+            return;
+        }
+        delayThresholdMillis = millis;
+    }
+
+    public boolean setPacketSize(int bytes) {
+        if (bytes <= 0) {
+            System.out.println("Error: Packet size must be positive.");
+            return false;
+        }
+        packetSize = bytes;
+        return true;
+    }
+
+    private int linkId(int source, int nextHop) {
+        indexLinks();
+        int id = linkIds.computeIfAbsent(linkKey(source, nextHop), endpoints -> {
+            Link link = new Link(links.size(), source, nextHop);
+            link.set(linkBandwidth, propagationDelay, queueCapacity, queueDiscipline, lossProbability);
+            links.add(link);
+            return link.getId();
+        });
+        indexedLinks = links.size();
+        return id;
+    }
+
+    // Enters links added since, or restored, in linkIds
+    private void indexLinks() {
+        if (indexedLinks < links.size()) {
+            linkIds = new HashMap<>(2 * links.size());
+            for (Link link : links) {
+                linkIds.put(linkKey(link.getSource(), link.getTarget()), link.getId());
+            }
+            indexedLinks = links.size();
+        }
+    }
+
+    // Both ids in one long, scrambled by an odd multiplier (a bijection, so keys stay unique)
+    // because Long.hashCode of source << 32 | nextHop is source ^ nextHop, which collides a lot
+    private static long linkKey(int source, int nextHop) {
+        return (((long) source << 32) | nextHop) * 0x9E3779B97F4A7C15L;
+    }
+
+    // Records forwarding events of every engine to a binary trace file; read it with TraceDecoder
+    public synchronized void startTrace(Path file, TraceMode mode, int sampleEvery) throws IOException {
+        stopTrace();
+        if (mode != TraceMode.OFF) {
+            trace = new BinaryTrace(file, mode, sampleEvery, 1 << 18);
+        }
+    }
+
+    // Flushes and closes the trace file; call it once no simulation is running
+    public synchronized void stopTrace() throws IOException {
+        TraceSink current = trace;
+        trace = TraceSink.NONE;
+        if (current instanceof BinaryTrace) {
+            String[] names = new String[deviceTable.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = deviceTable.get(i).getName();
+            }
+            BinaryTrace binaryTrace = (BinaryTrace) current;
+            binaryTrace.close(names);
+            if (binaryTrace.getDroppedRecords() > 0) {
+                System.out.println("Trace buffer overflowed; " + binaryTrace.getDroppedRecords() + " records dropped.");
+            }
+        }
+    }
+
+    TraceSink getTraceSink() {
+        return trace;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Makes random drops repeatable: every simulateLoad and simulateTraffic run and the packets
+    // of simulatePacketForwarding after this draw the same sequence for the same seed
+    public void setSeed(long seed) {
+        this.seed = seed;
+        synchronized (engine) {
+            engine.reseed(seed);
+        }
+    }
+
+    int nextEngineId() {
+        return engineCount.getAndIncrement();
+    }
+
+    public SimulatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    public MetricsSnapshot getMetricsSnapshot() {
+        return metrics.snapshot();
+    }
+
+    // Source/destination devices that have sent the most packets since the metrics were last
+    // reset, heaviest first, as "A->B packets=n". Counts come from a fixed-size sketch, so they may
+    // be slightly high but never low; they can be read while a simulation runs.
+    public List<String> getTopTalkers(int limit) {
+        HeavyHitters talkers = metrics.getTalkers();
+        List<String> top = new ArrayList<>();
+        for (long pair : talkers.top(limit)) {
+            top.add(addressName(HeavyHitters.pairSource(pair)) + "->" + addressName(HeavyHitters.pairDestination(pair))
+                + " packets=" + talkers.estimate(pair));
+        }
+        return top;
+    }
+
+    // Name of the device with the address, or the address itself
+    private String addressName(int address) {
+        NetworkDevice device = devicesByAddress.get(address);
+        return device != null ? device.name : formatAddress(address);
+    }
+
+    // Exposes the metrics as NetworkSimulator:type=Metrics,name=<name> on the platform MBean server
+    public void registerMetricsMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("NetworkSimulator:type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+        } catch (JMException e) {
+            System.out.println("Error: Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // Writes devices, routing tables with their compiled forwarding state, links, link-state
+    // trees, counters and the engines' pending events to a versioned binary file. Restoring it
+    // skips parsing, route insertion and compiling, so large topologies come back in moments.
+    public synchronized void saveSnapshot(Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file)) {
+            out.section(SnapshotWriter.SETTINGS);
+            out.putLong(linkBandwidth);
+            out.putLong(propagationDelay);
+            out.putInt(queueCapacity);
+            out.putByte(queueDiscipline.ordinal());
+            out.putDouble(lossProbability);
+            out.putInt(packetSize);
+            out.putLong(delayThresholdMillis);
+            out.putInt(topologyVersion);
+            out.putLong(totalPacketsForwarded.sum());
+            out.putLong(totalPacketsLost.sum());
+
+            out.section(SnapshotWriter.DEVICES);
+            out.putInt(deviceTable.size());
+            for (NetworkDevice device : deviceTable) {
+                out.putString(device.name);
+                out.putString(device.ipAddress);
+                out.putString(device.subnetMask);
+                out.putInt(device.address);
+                out.putInt(device.mask);
+            }
+
+            out.section(SnapshotWriter.LINKS);
+            out.putInt(links.size());
+            for (Link link : links) {
+                out.putInt(link.getSource());
+                out.putInt(link.getTarget());
+                out.putLong(link.getBandwidth());
+                out.putLong(link.getPropagationDelayNanos());
+                out.putInt(link.getQueueCapacity());
+                out.putByte(link.getDiscipline().ordinal());
+                out.putDouble(link.getLossProbability());
+                out.putBoolean(link.isConfigured());
+                writeLossModel(out, link.getLossModel());
+            }
+
+            out.section(SnapshotWriter.ROUTING);
+            for (NetworkDevice device : deviceTable) {
+                device.write(out);
+            }
+            for (Set<NetworkDevice> set : List.of(staleDevices, unresolvedDevices)) {
+                out.putInt(set.size());
+                for (NetworkDevice device : set) {
+                    out.putInt(device.id);
+                }
+            }
+
+            out.section(SnapshotWriter.LINK_STATE);
+            out.putBoolean(linkState != null);
+            out.putBoolean(linkStateEnabled);
+            if (linkState != null) {
+                linkState.write(out);
+            }
+
+            out.section(SnapshotWriter.METRICS);
+            metrics.write(out, deviceTable.size(), links.size());
+
+            out.section(SnapshotWriter.ENGINES);
+            synchronized (engine) {
+                engine.write(out);
+            }
+            out.putBoolean(loadEngine != null);
+            if (loadEngine != null) {
+                out.putLong(loadSent);
+                loadEngine.write(out);
+            }
+        }
+    }
+
+    // Loads a snapshot written by saveSnapshot into this simulator, which must be empty. If the
+    // file turns out to be corrupt part way, the simulator is left empty with its old settings.
+    public synchronized void restoreSnapshot(Path file) throws IOException {
+        if (!deviceTable.isEmpty()) {
+            System.out.println("Error: Snapshots can only be restored into an empty simulator.");
+            return;
+        }
+        long start = System.nanoTime();
+        long routeCount = 0;
+        long oldBandwidth = linkBandwidth;
+        long oldPropagationDelay = propagationDelay;
+        int oldQueueCapacity = queueCapacity;
+        QueueDiscipline oldDiscipline = queueDiscipline;
+        double oldLossProbability = lossProbability;
+        int oldPacketSize = packetSize;
+        long oldDelayThreshold = delayThresholdMillis;
+        try (SnapshotReader in = new SnapshotReader(file)) {
+            in.section(SnapshotWriter.SETTINGS);
+            linkBandwidth = in.getLong();
+            propagationDelay = in.getLong();
+            queueCapacity = in.getInt();
+            queueDiscipline = discipline(in.getByte());
+            lossProbability = in.getDouble();
+            packetSize = in.getInt();
+            delayThresholdMillis = in.getLong();
+            int savedVersion = in.getInt();
+            totalPacketsForwarded.add(in.getLong());
+            totalPacketsLost.add(in.getLong());
+
+            in.section(SnapshotWriter.DEVICES);
+            int deviceCount = in.getCount(Integer.MAX_VALUE);
+            devices = new HashMap<>(2 * deviceCount);
+            devicesByAddress = new HashMap<>(2 * deviceCount);
+            for (int i = 0; i < deviceCount; i++) {
+                String name = in.getString();
+                String ipAddress = in.getString();
+                String subnetMask = in.getString();
+                if (addDevice(name, ipAddress, subnetMask, in.getInt(), in.getInt()) == null) {
+                    throw new IOException("Corrupt snapshot: duplicate device " + name);
+                }
+            }
+
+            in.section(SnapshotWriter.LINKS);
+            int linkCount = in.getCount(Integer.MAX_VALUE);
+            for (int i = 0; i < linkCount; i++) {
+                int source = in.getCount(deviceCount - 1);
+                int target = in.getCount(deviceCount - 1);
+                Link link = new Link(i, source, target);
+                link.set(in.getLong(), in.getLong(), in.getInt(), discipline(in.getByte()), in.getDouble());
+                link.setConfigured(in.getBoolean());
+                link.setLossModel(readLossModel(in));
+                links.add(link);
+            }
+
+            in.section(SnapshotWriter.ROUTING);
+            for (NetworkDevice device : deviceTable) {
+                device.read(in);
+                routeCount += device.routingTable.size();
+            }
+            for (Set<NetworkDevice> set : List.of(staleDevices, unresolvedDevices)) {
+                set.clear();
+                int count = in.getCount(deviceCount);
+                for (int i = 0; i < count; i++) {
+                    set.add(deviceTable.get(in.getCount(deviceCount - 1)));
+                }
+            }
+
+            in.section(SnapshotWriter.LINK_STATE);
+            boolean hasLinkState = in.getBoolean();
+            linkStateEnabled = in.getBoolean();
+            if (hasLinkState) {
+                linkState = new LinkStateRouting(this);
+                linkState.read(in);
+            }
+
+            in.section(SnapshotWriter.METRICS);
+            metrics.read(in, deviceCount, linkCount);
+
+            in.section(SnapshotWriter.ENGINES);
+            SimulationEngine restored = new SimulationEngine(this, initialTtl, console);
+            restored.read(in);
+            if (in.getBoolean()) {
+                loadSent = in.getLong();
+                loadEngine = new SimulationEngine(this, initialTtl, null);
+                loadEngine.read(in);
+            }
+            engine = restored;
+            topologyVersion = savedVersion + 1; // Invalidates anything cached before the restore
+        } catch (IOException | RuntimeException e) {
+            clearTopology();
+            linkBandwidth = oldBandwidth;
+            propagationDelay = oldPropagationDelay;
+            queueCapacity = oldQueueCapacity;
+            queueDiscipline = oldDiscipline;
+            lossProbability = oldLossProbability;
+            packetSize = oldPacketSize;
+            delayThresholdMillis = oldDelayThreshold;
+            throw e;
+        }
+        System.out.println("Restored " + deviceTable.size() + " devices and " + routeCount + " routes from " + file
+            + " in " + (System.nanoTime() - start) / 1_000_000 + " ms"
+            + (loadEngine != null ? "; a load simulation can be continued with resumeLoad." : "."));
+    }
+
+    // Drops whatever a failed restore had read, down to the counters
+    private void clearTopology() {
+        devices = new HashMap<>();
+        devicesByAddress = new HashMap<>();
+        deviceTable.clear();
+        staleDevices.clear();
+        unresolvedDevices.clear();
+        linkIds.clear();
+        links.clear();
+        indexedLinks = 0;
+        nextHopGroups.clear();
+        linkState = null;
+        linkStateEnabled = false;
+        loadEngine = null;
+        loadSent = 0;
+        totalPacketsForwarded.reset();
+        totalPacketsLost.reset();
+        metrics.reset();
+        topologyVersion++;
+    }
+
+    // A type byte, 0 for none, then the model's parameters
+    private static void writeLossModel(SnapshotWriter out, LossModel model) throws IOException {
+        if (model == null) {
+            out.putByte(0);
+        } else if (model instanceof LossModel.Bernoulli) {
+            out.putByte(1);
+            out.putDouble(((LossModel.Bernoulli) model).getProbability());
+        } else if (model instanceof LossModel.GilbertElliott) {
+            LossModel.GilbertElliott gilbertElliott = (LossModel.GilbertElliott) model;
+            out.putByte(2);
+            out.putDouble(gilbertElliott.getGoodToBad());
+            out.putDouble(gilbertElliott.getBadToGood());
+            out.putDouble(gilbertElliott.getGoodLoss());
+            out.putDouble(gilbertElliott.getBadLoss());
+        } else if (model instanceof LossModel.DelayThreshold) {
+            out.putByte(3);
+            out.putLong(((LossModel.DelayThreshold) model).getThresholdNanos());
+        } else {
+            throw new IOException("Loss model " + model.getClass().getName() + " cannot be saved in a snapshot");
+        }
+    }
+
+    private static LossModel readLossModel(SnapshotReader in) throws IOException {
+        try {
+            switch (in.getByte()) {
+                case 0:
+                    return null;
+                case 1:
+                    return LossModel.bernoulli(in.getDouble());
+                case 2:
+                    return LossModel.gilbertElliott(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+                case 3:
+                    return LossModel.delayThreshold(in.getLong() / 1e6);
+                default:
+                    throw new IOException("Corrupt snapshot: unknown loss model");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt snapshot: " + e.getMessage());
+        }
+    }
+
+    private static QueueDiscipline discipline(int ordinal) throws IOException {
+        QueueDiscipline[] disciplines = QueueDiscipline.values();
+        if (ordinal < 0 || ordinal >= disciplines.length) {
+            throw new IOException("Corrupt snapshot: unknown queue discipline " + ordinal);
+        }
+        return disciplines[ordinal];
+    }
+
+    // Declares an adjacency between two devices with a link-state cost (both directions), or
+    // changes its cost. With link-state routing on, routing tables converge before this returns.
+    public synchronized boolean connect(String deviceA, String deviceB, int cost) {
+        NetworkDevice a = devices.get(deviceA);
+        NetworkDevice b = devices.get(deviceB);
+        if (a == null || b == null || a == b) {
+            System.out.println("Error: Invalid devices for a link: " + deviceA + ", " + deviceB);
+            return false;
+        }
+        if (cost <= 0) {
+            System.out.println("Error: Link cost must be positive.");
+            return false;
+        }
+        addAdjacency(a, b, cost);
+        convergeLinkState();
+        return true;
+    }
+
+    // Records an adjacency without converging; used by the loader for bulk input
+    void addAdjacency(NetworkDevice a, NetworkDevice b, int cost) {
+        linkId(a.id, b.id);
+        linkId(b.id, a.id);
+        linkState().connect(a.id, b.id, cost);
+    }
+
+    public synchronized void disconnect(String deviceA, String deviceB) {
+        NetworkDevice a = devices.get(deviceA);
+        NetworkDevice b = devices.get(deviceB);
+        if (a == null || b == null) {
+            System.out.println("Error: Invalid devices for a link: " + deviceA + ", " + deviceB);
+            return;
+        }
+        linkState().disconnect(a.id, b.id);
+        convergeLinkState();
+    }
+
+    // Removes all adjacencies of a device, as if it had failed
+    public synchronized void disconnectDevice(String name) {
+        NetworkDevice device = devices.get(name);
+        if (device == null) {
+            System.out.println("Error: Device " + name + " not found.");
+            return;
+        }
+        linkState().disconnectAll(device.id);
+        convergeLinkState();
+    }
+
+    // Fills every routing table with /32 routes along the shortest paths of the connect graph
+    // and keeps them up to date as adjacencies change. Static routes take precedence.
+    public synchronized void enableLinkStateRouting() {
+        linkStateEnabled = true;
+        linkState().rebuild();
+        System.out.println("Link-state routing converged in " + linkState.getLastConvergenceNanos() / 1_000_000 + " ms ("
+            + linkState.getLastRoutesChanged() + " routes on " + linkState.getLastRoutersChanged() + " routers).");
+    }
+
+    public synchronized LinkStateRouting getLinkStateRouting() {
+        return linkState();
+    }
+
+    // Adjacencies as {a, b, cost} with a < b, for export
+    synchronized List<int[]> getAdjacencies() {
+        return linkState == null ? List.of() : linkState.getAdjacencies();
+    }
+
+    // Called by link-state routing for each router whose table it changed
+    void routesChanged(NetworkDevice device) {
+        staleDevices.add(device);
+        topologyVersion++;
+    }
+
+    private LinkStateRouting linkState() {
+        if (linkState == null) {
+            linkState = new LinkStateRouting(this);
+        }
+        linkState.addDevices(deviceTable.size());
+        return linkState;
+    }
+
+    private void convergeLinkState() {
+        if (linkStateEnabled) {
+            linkState.update();
+        }
+    }
+
+    // All-pairs next hops, paths and reachability for the current routing tables, computed in
+    // parallel and cached until the next device or route change
+    public synchronized ReachabilityMatrix computeReachability() {
+        compileForwarding();
+        if (reachability == null || reachability.getVersion() != topologyVersion) {
+            reachability = new ReachabilityMatrix(deviceTable, topologyVersion);
+        }
+        return reachability;
+    }
+
+    // Turns next-hop names into device ids for every device changed since the last compile.
+    // The simulate methods call this themselves; routes added meanwhile take effect on the next call.
+    public synchronized void compileForwarding() {
+        for (NetworkDevice device : staleDevices) {
+            device.compileNextHops();
+        }
+        staleDevices.clear();
+        metrics.ensureCapacity(deviceTable.size(), links.size());
+    }
+
+    // Gives every device the smallest forwarding table that sends each address where its routes
+    // do (ORTC), after checking it address range by address range. Devices are compressed in
+    // parallel. Routes stay as configured; a device whose routes change goes back to forwarding
+    // by them until the next call. Compressed tables are not saved in snapshots.
+    public synchronized CompressionResult compressForwardingTables() {
+        long start = System.nanoTime();
+        compileForwarding();
+        ThreadLocal<FibCompressor> compressors = ThreadLocal.withInitial(FibCompressor::new);
+        long before = 0;
+        for (NetworkDevice device : deviceTable) {
+            before += device.routingTable.size();
+        }
+        int unverified = (int) deviceTable.parallelStream()
+            .filter(device -> !device.compress(compressors.get()))
+            .count();
+        long after = 0;
+        for (NetworkDevice device : deviceTable) {
+            after += device.getForwardingTableSize();
+        }
+        CompressionResult result = new CompressionResult(deviceTable.size(), before, after, unverified,
+            System.nanoTime() - start);
+        System.out.println("Compressed forwarding tables of " + result.getDevices() + " devices from " + before
+            + " to " + after + " entries in " + result.getElapsedNanos() / 1_000_000 + " ms"
+            + (unverified > 0 ? "; " + unverified + " failed verification and keep their routes." : "."));
+        return result;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    class NetworkDevice {
+        private String name;
+        private String ipAddress;
+        private String subnetMask;
+        private int address;
+        private int mask;
+        private int id;
+        private ArrayList<RouteEntry> routingTable; // In insertion order
+        private PrefixTrie forwardingTable; // Longest-prefix-match index into routingTable
+        private int[] nextHopIds = new int[0]; // Compiled next-hop device id per routingTable entry
+        private int[] routeLinkIds = new int[0]; // Compiled link id per routingTable entry, -1 if unresolved
+        private int compiledRoutes; // Leading routingTable entries covered by nextHopIds
+        // Links to the members of each next-hop group the routes use, one run per group, -1 for
+        // members that do not exist; groupAt holds the group at the start of its run
+        private int[] groupLinks = new int[0];
+        private NextHopGroup[] groupAt = new NextHopGroup[0];
+        // Smaller table forwarding like forwardingTable, from compressForwardingTables; null if
+        // none or the routes have changed since. Its entries index the two arrays below.
+        private PrefixTrie compressedTable;
+        private int[] compressedNextHops; // Next-hop device id, NO_ROUTE for a null entry, or UNKNOWN_DEVICE
+        private int[] compressedLinkIds;
+
+        public NetworkDevice(int id, String name, String ipAddress, String subnetMask, int address, int mask) {
+            this.id = id;
+            this.name = name;
+            this.ipAddress = ipAddress;
+            this.subnetMask = subnetMask;
+            this.address = address;
+            this.mask = mask;
+            this.routingTable = new ArrayList<>();
+            this.forwardingTable = new PrefixTrie();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getIpAddress() {
+            return ipAddress;
+        }
+
+        public String getSubnetMask() {
+            return subnetMask;
+        }
+
+        public int getAddress() {
+            return address;
+        }
+
+        public int getMask() {
+            return mask;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public List<RouteEntry> getRoutingTable() {
+            return Collections.unmodifiableList(routingTable);
+        }
+
+        public String findNextHop(String destinationIp) {
+            return findNextHop(toInt(destinationIp));
+        }
+
+        // Group routes answer with the member of a flow hashing to 0
+        public String findNextHop(int destinationAddress) {
+            return findNextHop(destinationAddress, 0);
+        }
+
+        // Name of the next hop the engines send a flow with the given hash to: from the compressed
+        // table if there is one and, for a group route, the member the hash picks here. Null
+        // without a route.
+        public String findNextHop(int destinationAddress, int flowHash) {
+            if (compressedTable != null) {
+                int entry = findRoute(destinationAddress);
+                if (entry == PrefixTrie.NO_MATCH) {
+                    return null;
+                }
+                int nextHop = compressedNextHops[entry];
+                if (nextHop >= 0) {
+                    return deviceTable.get(nextHop).name;
+                }
+                if (nextHop == NEXT_HOP_GROUP) {
+                    NextHopGroup group = groupAt[compressedLinkIds[entry]];
+                    return group.getMember(group.select(flowHash, id));
+                }
+                // A missing device, whose name only the routes kept; they forward alike
+            }
+            int index = forwardingTable.lookup(destinationAddress);
+            if (index == PrefixTrie.NO_MATCH) {
+                return null;
+            }
+            RouteEntry route = routingTable.get(index);
+            NextHopGroup group = route.getNextHopGroup();
+            return group == null ? route.getNextHop() : group.getMember(group.select(flowHash, id));
+        }
+
+        // Id of the next-hop device, NO_ROUTE or UNKNOWN_DEVICE; only valid after compileForwarding().
+        // Group routes answer with the member of a flow hashing to 0.
+        public int findNextHopId(int destinationAddress) {
+            int index = findRoute(destinationAddress);
+            if (index == PrefixTrie.NO_MATCH) {
+                return NO_ROUTE;
+            }
+            int nextHop = getNextHopId(index);
+            if (nextHop == NEXT_HOP_GROUP) {
+                int link = getGroupLinkId(index, 0);
+                return link < 0 ? UNKNOWN_DEVICE : links.get(link).getTarget();
+            }
+            return nextHop;
+        }
+
+        // Entry of the longest match for getNextHopId and getLinkId, or PrefixTrie.NO_MATCH:
+        // a routingTable index, or one of the compressed table if there is one
+        int findRoute(int destinationAddress) {
+            if (compressedTable == null) {
+                return forwardingTable.lookup(destinationAddress);
+            }
+            int entry = compressedTable.lookup(destinationAddress);
+            return entry == PrefixTrie.NO_MATCH || compressedNextHops[entry] == NO_ROUTE ? PrefixTrie.NO_MATCH : entry;
+        }
+
+        int getNextHopId(int route) {
+            return compressedTable == null ? nextHopIds[route] : compressedNextHops[route];
+        }
+
+        int getLinkId(int route) {
+            return compressedTable == null ? routeLinkIds[route] : compressedLinkIds[route];
+        }
+
+        // Link to the member of a NEXT_HOP_GROUP route that the flow hash picks here, -1 if that
+        // member does not exist
+        int getGroupLinkId(int route, int flowHash) {
+            int offset = getLinkId(route);
+            return groupLinks[offset + groupAt[offset].select(flowHash, id)];
+        }
+
+        // Entries packets are forwarded by: the compressed table's, or one per route
+        public int getForwardingTableSize() {
+            return compressedTable == null ? routingTable.size() : compressedTable.size();
+        }
+
+        // Builds the smallest table forwarding like the compiled routes and uses it if it
+        // provably does; returns whether it does
+        boolean compress(FibCompressor compressor) {
+            int count = routingTable.size();
+            int[] prefixes = new int[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                prefixes[i] = routingTable.get(i).getDestination();
+                lengths[i] = routingTable.get(i).getPrefixLength();
+            }
+            // Group routes compress by group: NEXT_HOP_GROUP minus the offset of its links
+            int[] keys = Arrays.copyOf(nextHopIds, count);
+            for (int i = 0; i < count; i++) {
+                if (keys[i] == NEXT_HOP_GROUP) {
+                    keys[i] = NEXT_HOP_GROUP - routeLinkIds[i];
+                }
+            }
+            compressor.compress(prefixes, lengths, keys, count);
+
+            // Every next hop chosen is one of a route, so its link exists already
+            Map<Integer, Integer> hopLinks = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                hopLinks.put(nextHopIds[i], routeLinkIds[i]);
+            }
+            int size = compressor.size();
+            PrefixTrie table = new PrefixTrie();
+            int[] entryPrefixes = new int[size];
+            int[] entryLengths = new int[size];
+            int[] entryHops = new int[size];
+            int[] entryLinks = new int[size];
+            for (int i = 0; i < size; i++) {
+                entryPrefixes[i] = compressor.prefix(i);
+                entryLengths[i] = compressor.length(i);
+                entryHops[i] = compressor.nextHop(i);
+                entryLinks[i] = entryHops[i] >= 0 ? hopLinks.get(entryHops[i])
+                    : entryHops[i] <= NEXT_HOP_GROUP ? NEXT_HOP_GROUP - entryHops[i] : -1;
+                table.insert(entryPrefixes[i], entryLengths[i], i);
+            }
+            if (!FibCompressor.equivalent(forwardingTable, prefixes, lengths, keys, count,
+                    table, entryPrefixes, entryLengths, entryHops, size)) {
+                dropCompressed();
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                entryHops[i] = Math.max(entryHops[i], NEXT_HOP_GROUP);
+            }
+            compressedTable = table;
+            compressedNextHops = entryHops;
+            compressedLinkIds = entryLinks;
+            return true;
+        }
+
+        // Back to forwarding by the routes, which have changed
+        private void dropCompressed() {
+            compressedTable = null;
+            compressedNextHops = null;
+            compressedLinkIds = null;
+        }
+
+        public void addRoute(RouteEntry route) {
+            if (routeOwner != null && !routeOwner.test(id)) {
+                return;
+            }
+            // The first route added for a prefix wins, as with the old stable sort, except that
+            // configured routes take over prefixes that link-state routing filled in
+            if (forwardingTable.insert(route.getDestination(), route.getPrefixLength(), routingTable.size())) {
+                routingTable.add(route);
+            } else {
+                int index = forwardingTable.get(route.getDestination(), route.getPrefixLength());
+                if (route.isDynamic() || !routingTable.get(index).isDynamic()) {
+                    return;
+                }
+                routingTable.set(index, route);
+                invalidateCompiled(index);
+            }
+            dropCompressed();
+            staleDevices.add(this);
+            topologyVersion++;
+        }
+
+        public void addRoutes(Collection<RouteEntry> routes) {
+            routingTable.ensureCapacity(routingTable.size() + routes.size());
+            for (RouteEntry route : routes) {
+                addRoute(route);
+            }
+        }
+
+        // Installs or repoints a link-state route unless a static route holds the prefix. Touches
+        // only this device, so routers can be updated in parallel; the caller marks it stale.
+        boolean setDynamicRoute(int destination, int prefixLength, String nextHop) {
+            if (routeOwner != null && !routeOwner.test(id)) {
+                return false;
+            }
+            int index = forwardingTable.get(destination, prefixLength);
+            if (index == PrefixTrie.NO_MATCH) {
+                forwardingTable.insert(destination, prefixLength, routingTable.size());
+                routingTable.add(new RouteEntry(destination, prefixLength, nextHop, true));
+                dropCompressed();
+                return true;
+            }
+            RouteEntry existing = routingTable.get(index);
+            if (!existing.isDynamic() || existing.getNextHop().equals(nextHop)) {
+                return false;
+            }
+            routingTable.set(index, new RouteEntry(destination, prefixLength, nextHop, true));
+            invalidateCompiled(index);
+            dropCompressed();
+            return true;
+        }
+
+        // Withdraws a link-state route; the last route takes over its slot. Same threading as setDynamicRoute.
+        boolean removeDynamicRoute(int destination, int prefixLength) {
+            int index = forwardingTable.get(destination, prefixLength);
+            if (index == PrefixTrie.NO_MATCH || !routingTable.get(index).isDynamic()) {
+                return false;
+            }
+            forwardingTable.remove(destination, prefixLength);
+            dropCompressed();
+            int last = routingTable.size() - 1;
+            RouteEntry moved = routingTable.remove(last);
+            if (index != last) {
+                routingTable.set(index, moved);
+                forwardingTable.replace(moved.getDestination(), moved.getPrefixLength(), index);
+                if (last < compiledRoutes) {
+                    nextHopIds[index] = nextHopIds[last];
+                    routeLinkIds[index] = routeLinkIds[last];
+                } else {
+                    invalidateCompiled(index);
+                }
+            }
+            compiledRoutes = Math.min(compiledRoutes, routingTable.size());
+            return true;
+        }
+
+        // Routes, with next hops naming a device stored as its id, compiled ids and the trie
+        void write(SnapshotWriter out) throws IOException {
+            out.putInt(routingTable.size());
+            out.putInt(compiledRoutes);
+            for (int i = 0; i < routingTable.size(); i++) {
+                RouteEntry route = routingTable.get(i);
+                NetworkDevice nextHop = route.group != null ? null : i < compiledRoutes && nextHopIds[i] >= 0
+                    ? deviceTable.get(nextHopIds[i]) : devices.get(route.nextHop);
+                out.putInt(route.destination);
+                out.putByte(route.prefixLength | (route.dynamic ? 0x80 : 0) | (route.group != null ? 0x40 : 0));
+                out.putInt(nextHop == null ? -1 : nextHop.id);
+                if (nextHop == null) {
+                    out.putString(route.nextHop);
+                }
+            }
+            out.putInts(nextHopIds, compiledRoutes);
+            out.putInts(routeLinkIds, compiledRoutes);
+        }
+
+        void read(SnapshotReader in) throws IOException {
+            int routeCount = in.getCount(Integer.MAX_VALUE / 2);
+            compiledRoutes = in.getCount(routeCount);
+            routingTable = new ArrayList<>(routeCount);
+            for (int i = 0; i < routeCount; i++) {
+                int destination = in.getInt();
+                int flags = in.getByte();
+                int nextHopId = in.getInt();
+                if (nextHopId >= deviceTable.size() || (flags & 0x3F) > 32) {
+                    throw new IOException("Corrupt snapshot: invalid route on " + name);
+                }
+                String nextHop = nextHopId < 0 ? in.getString() : deviceTable.get(nextHopId).name;
+                RouteEntry route;
+                if ((flags & 0x40) != 0) {
+                    NextHopGroup group = NextHopGroup.parse(nextHop);
+                    if (group == null) {
+                        throw new IOException("Corrupt snapshot: invalid next-hop group on " + name);
+                    }
+                    route = new RouteEntry(destination, flags & 0x3F, nextHopGroups.computeIfAbsent(group, g -> g));
+                } else {
+                    route = new RouteEntry(destination, flags & 0x3F, nextHop, (flags & 0x80) != 0);
+                }
+                forwardingTable.insert(route.destination, route.prefixLength, i);
+                routingTable.add(route);
+            }
+            nextHopIds = new int[routeCount];
+            routeLinkIds = new int[routeCount];
+            in.getInts(nextHopIds, compiledRoutes);
+            in.getInts(routeLinkIds, compiledRoutes);
+            layOutGroups(compiledRoutes); // Same order, so the same offsets as the saved link ids
+        }
+
+        // Points the first routeCount routes that have a next-hop group at the links to its members,
+        // laid out afresh as members may have appeared; returns whether any member is unknown
+        private boolean layOutGroups(int routeCount) {
+            boolean unresolved = false;
+            Map<NextHopGroup, Integer> groupOffsets = new IdentityHashMap<>();
+            int groupLinkCount = 0;
+            for (int i = 0; i < routeCount; i++) {
+                NextHopGroup group = routingTable.get(i).group;
+                if (group == null) {
+                    continue;
+                }
+                Integer offset = groupOffsets.get(group);
+                if (offset == null) {
+                    offset = groupLinkCount;
+                    groupOffsets.put(group, offset);
+                    groupLinkCount += group.size();
+                    if (groupLinks.length < groupLinkCount) {
+                        groupLinks = Arrays.copyOf(groupLinks, Math.max(groupLinkCount, 2 * groupLinks.length));
+                        groupAt = Arrays.copyOf(groupAt, groupLinks.length);
+                    }
+                    groupAt[offset] = group;
+                    for (int member = 0; member < group.size(); member++) {
+                        NetworkDevice nextHop = devices.get(group.getMember(member));
+                        groupLinks[offset + member] = nextHop == null ? -1 : linkId(id, nextHop.id);
+                        unresolved |= nextHop == null;
+                    }
+                }
+                nextHopIds[i] = NEXT_HOP_GROUP;
+                routeLinkIds[i] = offset;
+            }
+            return unresolved;
+        }
+
+        // Makes compileNextHops resolve the entry again
+        private void invalidateCompiled(int index) {
+            if (index < compiledRoutes) {
+                nextHopIds[index] = UNKNOWN_DEVICE;
+            }
+        }
+
+        // Resolves next-hop names of new routes, and of routes whose next hop did not exist before
+        private void compileNextHops() {
+            dropCompressed(); // Next hops may resolve differently now
+            int routeCount = routingTable.size();
+            if (nextHopIds.length < routeCount) {
+                nextHopIds = Arrays.copyOf(nextHopIds, Math.max(routeCount, 2 * nextHopIds.length));
+                routeLinkIds = Arrays.copyOf(routeLinkIds, nextHopIds.length);
+            }
+            boolean unresolved = layOutGroups(routeCount);
+            for (int i = 0; i < routeCount; i++) {
+                if (routingTable.get(i).group != null) {
+                    continue;
+                }
+                if (i >= compiledRoutes || nextHopIds[i] == UNKNOWN_DEVICE) {
+                    NetworkDevice nextHop = devices.get(routingTable.get(i).getNextHop());
+                    nextHopIds[i] = nextHop == null ? UNKNOWN_DEVICE : nextHop.id;
+                    routeLinkIds[i] = nextHop == null ? -1 : linkId(id, nextHop.id);
+                }
+                unresolved |= nextHopIds[i] == UNKNOWN_DEVICE;
+            }
+            compiledRoutes = routeCount;
+            if (unresolved) {
+                unresolvedDevices.add(this);
+            } else {
+                unresolvedDevices.remove(this);
+            }
+        }
+    }
+
+    class RouteEntry {
+        private int destination; // Network address, host bits cleared
+        private int prefixLength;
+        private String nextHop; // Device name, or the text of the group
+        private boolean dynamic; // Installed by link-state routing rather than configured
+        private NextHopGroup group; // Weighted next hops for ECMP routes, null otherwise
+
+        public RouteEntry(int destination, int prefixLength, String nextHop) {
+            this(destination, prefixLength, nextHop, false);
+        }
+
+        public RouteEntry(int destination, int prefixLength, NextHopGroup group) {
+            this(destination, prefixLength, group.toString(), false);
+            this.group = group;
+        }
+
+        RouteEntry(int destination, int prefixLength, String nextHop, boolean dynamic) {
+            this.destination = destination & prefixMask(prefixLength);
+            this.prefixLength = prefixLength;
+            this.nextHop = nextHop;
+            this.dynamic = dynamic;
+        }
+
+        public int getDestination() {
+            return destination;
+        }
+
+        public String getDestinationIp() {
+            return formatAddress(destination);
+        }
+
+        public int getPrefixLength() {
+            return prefixLength;
+        }
+
+        public String getNextHop() {
+            return nextHop;
+        }
+
+        public boolean isDynamic() {
+            return dynamic;
+        }
+
+        public NextHopGroup getNextHopGroup() {
+            return group;
+        }
+    }
+
+    class Route {
+        private String sourceDevice;
+        private String destinationIpWithMask;
+
+        public Route(String sourceDevice, String destinationIpWithMask) {
+            this.sourceDevice = sourceDevice;
+            this.destinationIpWithMask = destinationIpWithMask;
+        }
+
+        public String getSourceDevice() {
+            return sourceDevice;
+        }
+
+        public String getDestinationIpWithMask() {
+            return destinationIpWithMask;
+        }
+    }
+}
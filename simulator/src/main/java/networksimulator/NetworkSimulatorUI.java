@@ -0,0 +1,462 @@
+package networksimulator;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NetworkSimulatorUI extends JFrame {
+    private NetworkSimulator simulator = new NetworkSimulator();
+    private LogPanel logPanel;
+    private TopologyCanvas canvasPanel;
+    private Map<String, Point> deviceLocations = new HashMap<>(); // Store device locations for visualization
+    private List<RouteVisualization> routes = new ArrayList<>(); // Store routes for visualization
+    private String selectedTopology = "Default"; // Default topology
+    private LiveSimulation live; // Live run new flows join, null until the first
+    private static final int ANALYTICS_ROWS = 5; // Entries per list of Traffic Analytics
+    // Traces single packets off the event thread, one at a time
+    private final ExecutorService pathTracer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "simulator-path");
+        thread.setDaemon(true);
+        return thread;
+    });
+     // Current packet location for visualization
+
+    public NetworkSimulatorUI() {
+        simulator.registerMetricsMBean("NetworkSimulatorUI");
+        setTitle("Network Simulator UI");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(1200, 800);
+        setLayout(new BorderLayout());
+
+        // Topology Selection
+        String[] topologies = {"Default", "Bus", "Star", "Ring", "Mesh"};
+        selectedTopology = (String) JOptionPane.showInputDialog(
+            this, "Select Network Topology:", "Topology Selection",
+            JOptionPane.QUESTION_MESSAGE, null, topologies, topologies[0]);
+
+        if (selectedTopology == null) selectedTopology = "Default"; // Default if cancelled
+
+        // Canvas for drawing network topology
+        canvasPanel = new TopologyCanvas(deviceLocations, routes);
+        add(canvasPanel, BorderLayout.CENTER);
+
+        // Control Panel
+        JPanel controlPanel = new JPanel(new GridLayout(1, 9));
+        JButton addDeviceButton = new JButton("Add Device");
+        JButton addRouteButton = new JButton("Add Route");
+        JButton startSimulationButton = new JButton("Start Simulation");
+        JButton stopSimulationButton = new JButton("Stop Simulation");
+        JButton loadTopologyButton = new JButton("Load Topology");
+        JButton exportTopologyButton = new JButton("Export Topology");
+        JButton saveSnapshotButton = new JButton("Save Snapshot");
+        JButton restoreSnapshotButton = new JButton("Restore Snapshot");
+        JButton analyticsButton = new JButton("Traffic Analytics");
+
+        controlPanel.add(addDeviceButton);
+        controlPanel.add(addRouteButton);
+        controlPanel.add(startSimulationButton);
+        controlPanel.add(stopSimulationButton);
+        controlPanel.add(loadTopologyButton);
+        controlPanel.add(exportTopologyButton);
+        controlPanel.add(saveSnapshotButton);
+        controlPanel.add(restoreSnapshotButton);
+        controlPanel.add(analyticsButton);
+        add(controlPanel, BorderLayout.NORTH);
+
+        addDeviceButton.addActionListener(e -> showAddDeviceDialog());
+        addRouteButton.addActionListener(e -> showAddRouteDialog());
+        startSimulationButton.addActionListener(e -> startSimulation());
+        stopSimulationButton.addActionListener(e -> stopSimulation());
+        loadTopologyButton.addActionListener(e -> loadTopology());
+        exportTopologyButton.addActionListener(e -> exportTopology());
+        saveSnapshotButton.addActionListener(e -> saveSnapshot());
+        restoreSnapshotButton.addActionListener(e -> restoreSnapshot());
+        analyticsButton.addActionListener(e -> showAnalytics());
+
+        // Log Area
+        logPanel = new LogPanel(10);
+        add(logPanel, BorderLayout.SOUTH);
+        simulator.setEventLog(this::log);
+
+        setVisible(true);
+    }
+
+    public void log(String message) {
+        logPanel.append(message);
+    }
+
+    /*private void drawLegend(Graphics g) {
+        g.setColor(Color.BLACK);
+        g.drawString("Legend:", 10, canvasPanel.getHeight() - 50);
+        g.setColor(Color.GREEN);
+        g.fillOval(10, canvasPanel.getHeight() - 40, 10, 10);
+        g.drawString("Packet Movement", 30, canvasPanel.getHeight() - 30);
+        g.setColor(Color.RED);
+        g.fillRect(10, canvasPanel.getHeight() - 20, 10, 10);
+        g.drawString("Packet Drop", 30, canvasPanel.getHeight() - 10);
+    }*/
+
+    private void showAddDeviceDialog() {
+        JDialog dialog = new JDialog(this, "Add Device", true);
+        dialog.setSize(400, 200);
+        dialog.setLayout(new GridLayout(4, 2));
+
+        JTextField deviceNameField = new JTextField();
+        JTextField ipField = new JTextField();
+        JTextField subnetMaskField = new JTextField();
+        JButton addButton = new JButton("Add");
+        JButton cancelButton = new JButton("Cancel");
+
+        dialog.add(new JLabel("Device Name:"));
+        dialog.add(deviceNameField);
+        dialog.add(new JLabel("IP Address:"));
+        dialog.add(ipField);
+        dialog.add(new JLabel("Subnet Mask:"));
+        dialog.add(subnetMaskField);
+        dialog.add(addButton);
+        dialog.add(cancelButton);
+
+        addButton.addActionListener(e -> {
+            String deviceName = deviceNameField.getText().trim();
+            String ipAddress = ipField.getText().trim();
+            String subnetMask = subnetMaskField.getText().trim();
+
+            if (deviceName.isEmpty() || ipAddress.isEmpty() || subnetMask.isEmpty()) {
+                log("Error: All fields are required!");
+                return;
+            }
+
+            if (!isValidIP(ipAddress) || !isValidSubnetMask(subnetMask)) {
+                log("Error: Invalid IP Address or Subnet Mask format!");
+                return;
+            }
+
+            if (!simulator.addDevice(deviceName, ipAddress, subnetMask)) {
+                log("Error: Device name or IP address already exists.");
+                return;
+            }
+            addDeviceToCanvas(deviceName);
+            canvasPanel.topologyChanged();
+            log("Device added: " + deviceName + " (" + ipAddress + "/" + subnetMask + ")");
+            dialog.dispose();
+        });
+
+        cancelButton.addActionListener(e -> dialog.dispose());
+        dialog.setVisible(true);
+    }
+
+    private void showAddRouteDialog() {
+        JDialog dialog = new JDialog(this, "Add Route", true);
+        dialog.setSize(400, 200);
+        dialog.setLayout(new GridLayout(4, 2));
+
+        JComboBox<String> sourceComboBox = new JComboBox<>(simulator.getDevices().keySet().toArray(new String[0]));
+        JTextField destinationIpField = new JTextField();
+        JTextField nextHopField = new JTextField();
+        JButton addButton = new JButton("Add");
+        JButton cancelButton = new JButton("Cancel");
+
+        dialog.add(new JLabel("Source Device:"));
+        dialog.add(sourceComboBox);
+        dialog.add(new JLabel("Destination IP Address:"));
+        dialog.add(destinationIpField);
+        dialog.add(new JLabel("Next Hop Device (R1,R2*3 for ECMP):"));
+        dialog.add(nextHopField);
+        dialog.add(addButton);
+        dialog.add(cancelButton);
+
+        addButton.addActionListener(e -> {
+            String sourceDevice = (String) sourceComboBox.getSelectedItem();
+            String destinationIp = destinationIpField.getText().trim();
+            String nextHop = nextHopField.getText().trim();
+
+            if (sourceDevice == null || destinationIp.isEmpty() || nextHop.isEmpty()) {
+                log("Error: All fields are required!");
+                return;
+            }
+
+            NextHopGroup group = NextHopGroup.isGroup(nextHop) ? NextHopGroup.parse(nextHop) : null;
+            if (NextHopGroup.isGroup(nextHop) && group == null) {
+                log("Error: Invalid next-hop group: " + nextHop);
+                return;
+            }
+            if (!simulator.addStaticRoute(sourceDevice, destinationIp, nextHop)) {
+                log("Error: Invalid route: " + destinationIp + " via " + nextHop);
+                return;
+            }
+            for (int member = 0; member < (group == null ? 1 : group.size()); member++) {
+                addRouteToCanvas(sourceDevice, group == null ? nextHop : group.getMember(member));
+            }
+            canvasPanel.topologyChanged();
+            log("Route added: " + sourceDevice + " -> " + nextHop + " (via " + destinationIp + ")");
+            dialog.dispose();
+        });
+
+        cancelButton.addActionListener(e -> dialog.dispose());
+        dialog.setVisible(true);
+    }
+
+    private void loadTopology() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        int firstNewDevice = simulator.getDeviceCount();
+        try {
+            simulator.loadTopology(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            log("Error: Could not load topology: " + e.getMessage());
+            return;
+        }
+        showNewDevices(firstNewDevice);
+        log("Loaded topology: " + simulator.getDeviceCount() + " devices");
+    }
+
+    // Shows devices from firstNewDevice on and one line per source/next-hop pair
+    private void showNewDevices(int firstNewDevice) {
+        Set<String> drawnLinks = new HashSet<>();
+        for (int id = firstNewDevice; id < simulator.getDeviceCount(); id++) {
+            addDeviceToCanvas(simulator.getDevice(id).getName());
+        }
+        for (int id = 0; id < simulator.getDeviceCount(); id++) {
+            NetworkSimulator.NetworkDevice device = simulator.getDevice(id);
+            for (NetworkSimulator.RouteEntry route : device.getRoutingTable()) {
+                NextHopGroup group = route.getNextHopGroup();
+                for (int member = 0; member < (group == null ? 1 : group.size()); member++) {
+                    String nextHop = group == null ? route.getNextHop() : group.getMember(member);
+                    if (drawnLinks.add(device.getName() + " " + nextHop)) {
+                        addRouteToCanvas(device.getName(), nextHop);
+                    }
+                }
+            }
+        }
+        canvasPanel.topologyChanged();
+    }
+
+    private void exportTopology() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            simulator.exportTopology(chooser.getSelectedFile().toPath());
+            log("Exported topology to " + chooser.getSelectedFile());
+        } catch (IOException e) {
+            log("Error: Could not export topology: " + e.getMessage());
+        }
+    }
+
+    private void saveSnapshot() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            simulator.saveSnapshot(chooser.getSelectedFile().toPath());
+            log("Saved snapshot to " + chooser.getSelectedFile());
+        } catch (IOException e) {
+            log("Error: Could not save snapshot: " + e.getMessage());
+        }
+    }
+
+    private void restoreSnapshot() {
+        if (simulator.getDeviceCount() > 0) {
+            log("Error: Snapshots can only be restored before any device is added.");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        try {
+            simulator.restoreSnapshot(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            log("Error: Could not restore snapshot: " + e.getMessage());
+            return;
+        }
+        showNewDevices(0);
+        log("Restored snapshot: " + simulator.getDeviceCount() + " devices");
+    }
+
+    private void addDeviceToCanvas(String deviceName) {
+        int x = 0, y = 0;
+        int deviceCount = deviceLocations.size();
+        switch (selectedTopology) {
+            case "Bus":
+                x = 100 + deviceCount * 150;
+                y = 300;
+                break;
+            case "Star":
+                x = 400 + (int) (200 * Math.cos(2 * Math.PI * deviceCount / 6));
+                y = 300 + (int) (200 * Math.sin(2 * Math.PI * deviceCount / 6));
+                break;
+            case "Ring":
+                x = 500 + (int) (200 * Math.cos(2 * Math.PI * deviceCount / 6));
+                y = 300 + (int) (200 * Math.sin(2 * Math.PI * deviceCount / 6));
+                break;
+            case "Mesh":
+                x = 100 + (deviceCount % 4) * 200;
+                y = 100 + (deviceCount / 4) * 200;
+                break;
+            default: // Default Horizontal Layout
+                x = 100 + deviceCount * 150;
+                y = 300;
+        }
+        deviceLocations.put(deviceName, new Point(x, y));
+    }
+
+    private void addRouteToCanvas(String sourceDevice, String nextHop) {
+        Point sourcePoint = deviceLocations.get(sourceDevice);
+        Point nextHopPoint = deviceLocations.get(nextHop);
+        if (sourcePoint != null && nextHopPoint != null) {
+            routes.add(new RouteVisualization(sourcePoint, nextHopPoint));
+        }
+    }
+
+    /*private void animatePacketMovement(List<Point> path) {
+        Graphics g = canvasPanel.getGraphics();
+    
+        for (int i = 0; i < path.size() - 1; i++) {
+            Point start = path.get(i);
+            Point end = path.get(i + 1);
+    
+            int steps = 500; // Increase the number of animation steps for smoother movement
+            for (int step = 0; step <= steps; step++) {
+                int x = start.x + (end.x - start.x) * step / steps;
+                int y = start.y + (end.y - start.y) * step / steps;
+    
+                // Clear the previous dot and redraw topology
+                canvasPanel.repaint();
+    
+                // Draw the moving dot
+                g.setColor(Color.BLUE);
+                g.fillOval(x, y, 10, 10);
+    
+                try {
+                    Thread.sleep(5000); // Slow down the animation for better visibility
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }*/
+    
+    private void startSimulation() {
+        String source = JOptionPane.showInputDialog(this, "Enter source device name:");
+        String destination = JOptionPane.showInputDialog(this, "Enter destination device name:");
+    
+        if (source == null || destination == null) {
+            log("Simulation cancelled.");
+            return;
+        }
+        String rate = JOptionPane.showInputDialog(this, "Packets per second for a live flow (empty for one packet):");
+        if (rate != null && !rate.isBlank()) {
+            startLiveFlow(source, destination, rate.trim());
+            return;
+        }
+    
+        log("Simulating packet from " + source + " to " + destination);
+    
+        pathTracer.execute(() -> {
+            // Get the path from the simulator
+            List<Long> arrivalTimes = new ArrayList<>();
+            List<String> devicePath = simulator.simulatePacketPath(source, destination, arrivalTimes);
+            SwingUtilities.invokeLater(() -> {
+                // Convert device names to points, keeping the simulated time each was reached
+                List<Point> pointPath = new ArrayList<>();
+                List<Long> pointTimes = new ArrayList<>();
+                for (int i = 0; i < devicePath.size(); i++) {
+                    Point location = deviceLocations.get(devicePath.get(i));
+                    if (location != null) {
+                        pointPath.add(location);
+                        pointTimes.add(arrivalTimes.get(i));
+                    }
+                }
+                long[] hopTimes = new long[pointPath.size()];
+                for (int i = 0; i < hopTimes.length; i++) {
+                    hopTimes[i] = pointTimes.get(i);
+                }
+                canvasPanel.animatePacket(pointPath, hopTimes);
+                log("Simulation complete from " + source + " to " + destination);
+            });
+        });
+    }
+
+    // Joins the running live simulation, or starts one, with a flow that goes on until stopped
+    private void startLiveFlow(String source, String destination, String rate) {
+        double packetsPerSecond;
+        try {
+            packetsPerSecond = Double.parseDouble(rate);
+        } catch (NumberFormatException e) {
+            packetsPerSecond = -1;
+        }
+        if (!(packetsPerSecond > 0)) {
+            log("Error: Invalid packet rate " + rate);
+            return;
+        }
+        TrafficFlow flow = new TrafficFlow(source, destination, Long.MAX_VALUE, packetsPerSecond);
+        if (live == null || !live.addFlow(flow)) {
+            live = simulator.startLive(List.of(flow), 1, result -> log("Live: " + result.getPacketsSent() + " sent, "
+                + result.getPacketsDelivered() + " delivered, " + result.getPacketsLost() + " lost, "
+                + result.getPacketsUnroutable() + " unroutable"));
+        }
+        log("Live flow from " + source + " to " + destination + " at " + rate + " packets/s");
+    }
+    
+    
+
+    private void stopSimulation() {
+        simulator.stopSimulation();
+        live = null;
+        canvasPanel.clearPackets();
+        log("Simulation stopped.");
+    }
+
+    // Logs the heaviest talkers, links and devices and the latency percentiles so far; works
+    // while a live simulation runs
+    private void showAnalytics() {
+        MetricsSnapshot metrics = simulator.getMetricsSnapshot();
+        Histogram latencies = metrics.getLatencies();
+        log(String.format("Latency p50=%.3f ms p90=%.3f ms p99=%.3f ms max=%.3f ms over %d packets",
+            latencies.getPercentile(50) / 1e6, latencies.getPercentile(90) / 1e6, latencies.getPercentile(99) / 1e6,
+            latencies.getMax() / 1e6, latencies.getCount()));
+        simulator.getTopTalkers(ANALYTICS_ROWS).forEach(talker -> log("Top talker: " + talker));
+        metrics.getBusiestLinks(ANALYTICS_ROWS).forEach(link -> log("Hot link: " + link));
+        metrics.getBusiestDevices(ANALYTICS_ROWS).forEach(device -> log("Busiest device: " + device));
+    }
+
+    private boolean isValidIP(String ipAddress) {
+        return ipAddress.matches("(\\d{1,3}\\.){3}\\d{1,3}");
+    }
+
+    private boolean isValidSubnetMask(String subnetMask) {
+        return subnetMask.matches("(\\d{1,3}\\.){3}\\d{1,3}");
+    }
+
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(NetworkSimulatorUI::new);
+    }
+
+    private class RouteVisualization implements TopologyCanvas.Line {
+        Point source, destination;
+
+        RouteVisualization(Point source, Point destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+
+        @Override
+        public Point from() {
+            return source;
+        }
+
+        @Override
+        public Point to() {
+            return destination;
+        }
+    }
+}
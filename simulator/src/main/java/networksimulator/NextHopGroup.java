@@ -0,0 +1,163 @@
+package networksimulator;
+
+import java.util.Arrays;
+
+/**
+ * Weighted equal-cost multipath group: the next hops a route spreads its traffic over. A
+ * packet's member is picked by hashing its flow's 5-tuple, so all packets of a flow take the
+ * same path and flows spread over the members in proportion to their weights.
+ *
+ * Groups are immutable and kept in canonical form, members sorted by name, so the simulator
+ * interns them: every route with the same weighted next hops, on any device, shares one
+ * instance and one bucket table. Written as text, a group is its members separated by commas,
+ * each with an optional *weight: "R1,R2*3".
+ */
+public final class NextHopGroup {
+    static final int MAX_MEMBERS = 64;
+    static final int MAX_WEIGHT = 255;
+
+    private final String[] members;
+    private final int[] weights;
+    private final byte[] buckets; // Member index per bucket, each member once per unit of weight
+    private final int hashCode;
+
+    private NextHopGroup(String[] members, int[] weights) {
+        this.members = members;
+        this.weights = weights;
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        buckets = new byte[total];
+        // Interleave the members so that neighbouring buckets belong to different ones
+        int[] given = new int[members.length];
+        for (int bucket = 0; bucket < total; ) {
+            for (int member = 0; member < members.length; member++) {
+                if (given[member] < weights[member]) {
+                    given[member]++;
+                    buckets[bucket++] = (byte) member;
+                }
+            }
+        }
+        hashCode = 31 * Arrays.hashCode(members) + Arrays.hashCode(weights);
+    }
+
+    /**
+     * Creates a group of the given next hops and weights, or returns null after printing an
+     * error if they are not 1 to 64 distinct names with weights from 1 to 255.
+     */
+    public static NextHopGroup of(String[] nextHops, int[] weights) {
+        if (nextHops.length == 0 || nextHops.length > MAX_MEMBERS || weights.length != nextHops.length) {
+            System.out.println("Error: A next-hop group needs 1 to " + MAX_MEMBERS + " next hops, each with a weight.");
+            return null;
+        }
+        Integer[] order = new Integer[nextHops.length];
+        for (int i = 0; i < order.length; i++) {
+            if (nextHops[i] == null || nextHops[i].isEmpty() || weights[i] < 1 || weights[i] > MAX_WEIGHT) {
+                System.out.println("Error: Invalid next hop or weight in group: " + nextHops[i]);
+                return null;
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> nextHops[a].compareTo(nextHops[b]));
+        String[] members = new String[nextHops.length];
+        int[] memberWeights = new int[nextHops.length];
+        for (int i = 0; i < order.length; i++) {
+            members[i] = nextHops[order[i]];
+            memberWeights[i] = weights[order[i]];
+            if (i > 0 && members[i].equals(members[i - 1])) {
+                System.out.println("Error: Next hop " + members[i] + " appears twice in a group.");
+                return null;
+            }
+        }
+        return new NextHopGroup(members, memberWeights);
+    }
+
+    /** Parses "R1,R2*3"; returns null after printing an error if it is malformed. */
+    public static NextHopGroup parse(String text) {
+        String[] parts = text.split(",", -1);
+        String[] nextHops = new String[parts.length];
+        int[] weights = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            int star = parts[i].indexOf('*');
+            nextHops[i] = star < 0 ? parts[i] : parts[i].substring(0, star);
+            try {
+                weights[i] = star < 0 ? 1 : Integer.parseInt(parts[i].substring(star + 1));
+            } catch (NumberFormatException e) {
+                weights[i] = -1;
+            }
+        }
+        return of(nextHops, weights);
+    }
+
+    // Whether a next-hop text names a group rather than one device
+    static boolean isGroup(String nextHop) {
+        return nextHop.indexOf(',') >= 0 || nextHop.indexOf('*') >= 0;
+    }
+
+    public int size() {
+        return members.length;
+    }
+
+    public String getMember(int index) {
+        return members[index];
+    }
+
+    public int getWeight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Member index for a packet at a device: the flow hash is mixed with the device id first,
+     * so consecutive hops do not all split the same flows the same way.
+     */
+    int select(int flowHash, int device) {
+        int h = mix(flowHash ^ device * 0x9E3779B9);
+        return buckets[(int) (((h & 0xFFFFFFFFL) * buckets.length) >>> 32)];
+    }
+
+    /**
+     * Hash of a flow's 5-tuple: addresses, ports and protocol. Computed on primitives, so
+     * hashing allocates nothing.
+     */
+    static int flowHash(int sourceAddress, int destinationAddress, int sourcePort, int destinationPort, int protocol) {
+        int h = mix(sourceAddress * 0x85EBCA6B + destinationAddress);
+        h = mix(h ^ (sourcePort << 16 | destinationPort & 0xFFFF));
+        return mix(h ^ protocol);
+    }
+
+    // Murmur3's finalizer
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NextHopGroup && Arrays.equals(members, ((NextHopGroup) other).members)
+            && Arrays.equals(weights, ((NextHopGroup) other).weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < members.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(members[i]);
+            if (weights[i] != 1) {
+                text.append('*').append(weights[i]);
+            }
+        }
+        return text.toString();
+    }
+}
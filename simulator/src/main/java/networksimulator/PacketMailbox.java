@@ -0,0 +1,119 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Packets on their way from one partition to another: what the receiving engine needs to
+ * continue each of them, in primitive arrays like PacketTable. ParallelLoad keeps one per pair
+ * of partitions; ShardWorker and ShardCoordinator also send their contents over the wire.
+ */
+final class PacketMailbox {
+    private int size;
+    private long earliest = Long.MAX_VALUE; // Earliest arrival held
+    private long[] arrival = new long[16];
+    private long[] serial = new long[16];
+    private long[] sentAt = new long[16];
+    private int[] flags = new int[16];
+    private int[] destinationDevice = new int[16];
+    private int[] destinationAddress = new int[16];
+    private int[] ttl = new int[16];
+    private int[] hops = new int[16];
+    private int[] loopMark = new int[16];
+    private int[] nextHop = new int[16];
+    private int[] flowHash = new int[16];
+
+    // Copies a packet out of the sending engine's table; it lands at nextHop at the given time
+    void add(long time, PacketTable packets, int packet) {
+        int i = append(time);
+        serial[i] = packets.serial[packet];
+        sentAt[i] = packets.sentAt[packet];
+        flags[i] = packets.flags[packet];
+        destinationDevice[i] = packets.destinationDevice[packet];
+        destinationAddress[i] = packets.destinationAddress[packet];
+        ttl[i] = packets.ttl[packet];
+        hops[i] = packets.hops[packet];
+        loopMark[i] = packets.loopMark[packet];
+        nextHop[i] = packets.nextHop[packet];
+        flowHash[i] = packets.flowHash[packet];
+    }
+
+    private int append(long time) {
+        if (size == arrival.length) {
+            int capacity = 2 * size;
+            arrival = Arrays.copyOf(arrival, capacity);
+            serial = Arrays.copyOf(serial, capacity);
+            sentAt = Arrays.copyOf(sentAt, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            destinationDevice = Arrays.copyOf(destinationDevice, capacity);
+            destinationAddress = Arrays.copyOf(destinationAddress, capacity);
+            ttl = Arrays.copyOf(ttl, capacity);
+            hops = Arrays.copyOf(hops, capacity);
+            loopMark = Arrays.copyOf(loopMark, capacity);
+            nextHop = Arrays.copyOf(nextHop, capacity);
+            flowHash = Arrays.copyOf(flowHash, capacity);
+        }
+        arrival[size] = time;
+        earliest = Math.min(earliest, time);
+        return size++;
+    }
+
+    // Hands every packet to the receiving engine and empties the mailbox
+    void deliver(SimulationEngine engine) {
+        for (int i = 0; i < size; i++) {
+            engine.receive(arrival[i], serial[i], flags[i], destinationDevice[i], destinationAddress[i], sentAt[i],
+                ttl[i], hops[i], loopMark[i], nextHop[i], flowHash[i]);
+        }
+        clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Arrival time of the earliest packet held, Long.MAX_VALUE if empty
+    long earliest() {
+        return earliest;
+    }
+
+    void clear() {
+        size = 0;
+        earliest = Long.MAX_VALUE;
+    }
+
+    // Count, then 53 bytes per packet
+    void write(ShardChannel out) {
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putLong(arrival[i]);
+            out.putLong(serial[i]);
+            out.putLong(sentAt[i]);
+            out.putByte(flags[i]);
+            out.putInt(destinationDevice[i]);
+            out.putInt(destinationAddress[i]);
+            out.putInt(ttl[i]);
+            out.putInt(hops[i]);
+            out.putInt(loopMark[i]);
+            out.putInt(nextHop[i]);
+            out.putInt(flowHash[i]);
+        }
+    }
+
+    // Appends packets written by write
+    void read(ShardChannel in) throws IOException {
+        int count = in.getCount(Integer.MAX_VALUE / 2);
+        for (int n = 0; n < count; n++) {
+            int i = append(in.getLong());
+            serial[i] = in.getLong();
+            sentAt[i] = in.getLong();
+            flags[i] = in.getByte() & 0xFF;
+            destinationDevice[i] = in.getInt();
+            destinationAddress[i] = in.getInt();
+            ttl[i] = in.getInt();
+            hops[i] = in.getInt();
+            loopMark[i] = in.getInt();
+            nextHop[i] = in.getInt();
+            flowHash[i] = in.getInt();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * In-flight packets of one simulation engine, stored column-wise in primitive arrays and
+ * addressed by slot. Released slots go on a free list and are handed out again, so once the
+ * table has grown to the peak number of packets in flight, sending a packet allocates nothing.
+ * Recorded paths live in per-slot arrays that are kept, and reused, across slot recycling.
+ */
+class PacketTable {
+    // Flag bits
+    static final int RECORD_PATH = 1;
+    static final int DROP_ON_DELAY = 2;
+    static final int RANDOM_LOSS = 4;
+    static final int TRACED = 8;
+    static final int RETAINED = 16; // Kept after completion until released, so its outcome can be read
+
+    private int capacity;
+    private int used; // Slots ever handed out; the ones below are live or free
+    private int[] freeSlots;
+    private int freeCount;
+    private int live;
+
+    long[] serial; // Packet number used in traces and to order simultaneous events
+    int[] flags;
+    int[] currentDevice;
+    int[] nextHop;
+    int[] link; // Link towards nextHop
+    int[] destinationDevice;
+    int[] destinationAddress;
+    int[] flowHash; // Hash of the 5-tuple, picks the member of next-hop groups
+    long[] sentAt;
+    long[] queuedAt; // When the packet reached its link's queue
+    int[] ttl;
+    int[] hops;
+    int[] loopMark; // Device reached at the last power-of-two hop count, for finding loops
+    int[] outcome;
+    int[][] pathDevices; // Device ids visited, for RECORD_PATH packets
+    long[][] pathTimes; // Arrival time at each of them, relative to sentAt
+    int[] pathLength;
+
+    PacketTable(int initialCapacity) {
+        resize(Math.max(1, initialCapacity));
+    }
+
+    /** Takes a free slot, growing the columns if there is none, and clears its path. */
+    int allocate() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (used == capacity) {
+                resize(2 * capacity);
+            }
+            slot = used++;
+        }
+        pathLength[slot] = 0;
+        live++;
+        return slot;
+    }
+
+    void release(int slot) {
+        freeSlots[freeCount++] = slot;
+        live--;
+    }
+
+    /** Frees every slot; the columns keep their size. */
+    void clear() {
+        freeCount = 0;
+        used = 0;
+        live = 0;
+    }
+
+    // Slots currently allocated
+    int size() {
+        return live;
+    }
+
+    boolean has(int slot, int flag) {
+        return (flags[slot] & flag) != 0;
+    }
+
+    void recordHop(int slot, int device, long time) {
+        int length = pathLength[slot];
+        int[] devices = pathDevices[slot];
+        if (devices == null || length == devices.length) {
+            int grown = devices == null ? 16 : 2 * length;
+            pathDevices[slot] = devices = devices == null ? new int[grown] : Arrays.copyOf(devices, grown);
+            pathTimes[slot] = pathTimes[slot] == null ? new long[grown] : Arrays.copyOf(pathTimes[slot], grown);
+        }
+        devices[length] = device;
+        pathTimes[slot][length] = time;
+        pathLength[slot] = length + 1;
+    }
+
+    // Columns up to the highest slot handed out, the free list, and the recorded paths
+    void write(SnapshotWriter out) throws IOException {
+        out.putInt(used);
+        out.putInt(live);
+        out.putInt(freeCount);
+        out.putInts(freeSlots, freeCount);
+        out.putLongs(serial, used);
+        out.putInts(flags, used);
+        out.putInts(currentDevice, used);
+        out.putInts(nextHop, used);
+        out.putInts(link, used);
+        out.putInts(destinationDevice, used);
+        out.putInts(destinationAddress, used);
+        out.putInts(flowHash, used);
+        out.putLongs(sentAt, used);
+        out.putLongs(queuedAt, used);
+        out.putInts(ttl, used);
+        out.putInts(hops, used);
+        out.putInts(loopMark, used);
+        out.putInts(outcome, used);
+        out.putInts(pathLength, used);
+        for (int slot = 0; slot < used; slot++) {
+            if (pathLength[slot] > 0) {
+                out.putInts(pathDevices[slot], pathLength[slot]);
+                out.putLongs(pathTimes[slot], pathLength[slot]);
+            }
+        }
+    }
+
+    void read(SnapshotReader in) throws IOException {
+        int slots = in.getCount(Integer.MAX_VALUE / 2);
+        live = in.getCount(slots);
+        freeCount = in.getCount(slots);
+        if (slots > capacity) {
+            resize(slots);
+        }
+        used = slots;
+        in.getInts(freeSlots, freeCount);
+        in.getLongs(serial, used);
+        in.getInts(flags, used);
+        in.getInts(currentDevice, used);
+        in.getInts(nextHop, used);
+        in.getInts(link, used);
+        in.getInts(destinationDevice, used);
+        in.getInts(destinationAddress, used);
+        in.getInts(flowHash, used);
+        in.getLongs(sentAt, used);
+        in.getLongs(queuedAt, used);
+        in.getInts(ttl, used);
+        in.getInts(hops, used);
+        in.getInts(loopMark, used);
+        in.getInts(outcome, used);
+        in.getInts(pathLength, used);
+        for (int slot = 0; slot < used; slot++) {
+            int length = pathLength[slot];
+            if (length < 0) {
+                throw new IOException("Corrupt snapshot: negative path length");
+            }
+            if (length > 0) {
+                pathDevices[slot] = new int[length];
+                pathTimes[slot] = new long[length];
+                in.getInts(pathDevices[slot], length);
+                in.getLongs(pathTimes[slot], length);
+            }
+        }
+    }
+
+    private void resize(int newCapacity) {
+        capacity = newCapacity;
+        freeSlots = Arrays.copyOf(freeSlots == null ? new int[0] : freeSlots, newCapacity);
+        serial = Arrays.copyOf(serial == null ? new long[0] : serial, newCapacity);
+        flags = grow(flags, newCapacity);
+        currentDevice = grow(currentDevice, newCapacity);
+        nextHop = grow(nextHop, newCapacity);
+        link = grow(link, newCapacity);
+        destinationDevice = grow(destinationDevice, newCapacity);
+        destinationAddress = grow(destinationAddress, newCapacity);
+        flowHash = grow(flowHash, newCapacity);
+        sentAt = Arrays.copyOf(sentAt == null ? new long[0] : sentAt, newCapacity);
+        queuedAt = Arrays.copyOf(queuedAt == null ? new long[0] : queuedAt, newCapacity);
+        ttl = grow(ttl, newCapacity);
+        hops = grow(hops, newCapacity);
+        loopMark = grow(loopMark, newCapacity);
+        outcome = grow(outcome, newCapacity);
+        pathDevices = Arrays.copyOf(pathDevices == null ? new int[0][] : pathDevices, newCapacity);
+        pathTimes = Arrays.copyOf(pathTimes == null ? new long[0][] : pathTimes, newCapacity);
+        pathLength = grow(pathLength, newCapacity);
+    }
+
+    private static int[] grow(int[] column, int newCapacity) {
+        return Arrays.copyOf(column == null ? new int[0] : column, newCapacity);
+    }
+}
@@ -0,0 +1,205 @@
+package networksimulator;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Runs a load simulation on several SimulationEngines at once, one per partition of the
+ * devices, each on its own thread. NetworkSimulator.simulateLoad(flows, partitions) sets it up.
+ *
+ * Synchronization is conservative. A packet put on a link between two partitions lands no
+ * sooner than the smallest propagation delay of such links, the lookahead, so in every round
+ * each engine can process the events before the earliest pending event of any engine plus the
+ * lookahead without missing a packet from another partition. At the end of the round the
+ * engines meet at a barrier, take in the packets posted to them and agree on the next round.
+ *
+ * Packets change partitions through one PacketMailbox per pair of partitions. Only the sending
+ * engine writes a mailbox during a round and only the receiving engine reads it between the
+ * barriers, so mailboxes need no locks.
+ */
+final class ParallelLoad implements SimulationEngine.Handoff {
+    private final SimulationEngine[] engines;
+    private final long lookahead;
+    private final PacketMailbox[][] mailboxes; // Indexed by sending, then receiving partition
+    private final CyclicBarrier roundEnd;
+    private final CyclicBarrier roundStart;
+    private long windowEnd; // Events before this time belong to the current round
+    private volatile Throwable failure;
+
+    ParallelLoad(SimulationEngine[] engines, int[] partitionOf, long lookahead) {
+        this.engines = engines;
+        this.lookahead = lookahead;
+        int partitions = engines.length;
+        mailboxes = new PacketMailbox[partitions][partitions];
+        for (int from = 0; from < partitions; from++) {
+            for (int to = 0; to < partitions; to++) {
+                if (from != to) {
+                    mailboxes[from][to] = new PacketMailbox();
+                }
+            }
+            engines[from].partition(this, partitionOf, from);
+        }
+        roundEnd = new CyclicBarrier(partitions);
+        roundStart = new CyclicBarrier(partitions, this::nextRound);
+    }
+
+    /**
+     * Splits the devices into partitions of about equal size: consecutive runs of a
+     * breadth-first walk over the links, so that neighbours mostly end up together and few
+     * links cross between partitions. Returns each device's partition.
+     */
+    static int[] partition(NetworkSimulator simulator, int partitions) {
+        int devices = simulator.getDeviceCount();
+        int links = simulator.getLinkCount();
+
+        // Undirected adjacency of the links in compressed rows
+        int[] start = new int[devices + 1];
+        for (int link = 0; link < links; link++) {
+            Link l = simulator.getLink(link);
+            start[l.getSource() + 1]++;
+            start[l.getTarget() + 1]++;
+        }
+        for (int device = 0; device < devices; device++) {
+            start[device + 1] += start[device];
+        }
+        int[] neighbours = new int[start[devices]];
+        int[] fill = Arrays.copyOf(start, devices);
+        for (int link = 0; link < links; link++) {
+            Link l = simulator.getLink(link);
+            neighbours[fill[l.getSource()]++] = l.getTarget();
+            neighbours[fill[l.getTarget()]++] = l.getSource();
+        }
+
+        int[] partitionOf = new int[devices];
+        Arrays.fill(partitionOf, -1);
+        int[] order = new int[devices];
+        int head = 0;
+        int tail = 0;
+        for (int root = 0; root < devices; root++) {
+            if (partitionOf[root] >= 0) {
+                continue;
+            }
+            partitionOf[root] = 0;
+            order[tail++] = root;
+            while (head < tail) {
+                int device = order[head++];
+                for (int i = start[device]; i < start[device + 1]; i++) {
+                    int neighbour = neighbours[i];
+                    if (partitionOf[neighbour] < 0) {
+                        partitionOf[neighbour] = 0;
+                        order[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < devices; i++) {
+            partitionOf[order[i]] = (int) ((long) i * partitions / devices);
+        }
+        return partitionOf;
+    }
+
+    // Smallest propagation delay of the links between partitions, Long.MAX_VALUE if none cross
+    static long lookahead(NetworkSimulator simulator, int[] partitionOf) {
+        long lookahead = Long.MAX_VALUE;
+        for (int link = 0; link < simulator.getLinkCount(); link++) {
+            Link l = simulator.getLink(link);
+            if (partitionOf[l.getSource()] != partitionOf[l.getTarget()]) {
+                lookahead = Math.min(lookahead, l.getPropagationDelayNanos());
+            }
+        }
+        return lookahead;
+    }
+
+    /**
+     * Runs every engine to completion, the first on the calling thread, and returns their
+     * packet outcome counts added up.
+     */
+    long[] run() {
+        nextRound();
+        Thread[] threads = new Thread[engines.length];
+        for (int partition = 1; partition < engines.length; partition++) {
+            int p = partition;
+            threads[partition] = new Thread(() -> runPartition(p), "simulator-partition-" + partition);
+            threads[partition].start();
+        }
+        runPartition(0);
+        for (int partition = 1; partition < engines.length; partition++) {
+            try {
+                threads[partition].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Partitioned simulation failed", failure);
+        }
+
+        long[] counts = new long[SimulationEngine.OUTCOME_COUNT];
+        for (SimulationEngine engine : engines) {
+            long[] engineCounts = engine.getOutcomeCounts();
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                counts[outcome] += engineCounts[outcome];
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void post(int from, int to, long arrival, PacketTable packets, int packet) {
+        mailboxes[from][to].add(arrival, packets, packet);
+    }
+
+    // A partition that fails keeps meeting the others at the barriers, so they all see the
+    // failure in the next barrier action and stop together
+    private void runPartition(int partition) {
+        SimulationEngine engine = engines[partition];
+        try {
+            while (windowEnd != Long.MIN_VALUE) {
+                try {
+                    engine.run(windowEnd - 1);
+                } catch (RuntimeException | Error e) {
+                    fail(e);
+                }
+                roundEnd.await();
+                try {
+                    for (int from = 0; from < engines.length; from++) {
+                        if (from != partition) {
+                            mailboxes[from][partition].deliver(engine);
+                        }
+                    }
+                } catch (RuntimeException | Error e) {
+                    fail(e);
+                }
+                roundStart.await();
+            }
+        } catch (InterruptedException e) {
+            // Interrupting a waiting thread breaks the barriers, which ends the other partitions
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (BrokenBarrierException e) {
+            // Another partition was interrupted; its failure is reported
+        }
+    }
+
+    // Barrier action: the next round ends one lookahead past the earliest pending event, or
+    // the run is over once no engine has events left
+    private void nextRound() {
+        long earliest = Long.MAX_VALUE;
+        for (int partition = 0; partition < engines.length; partition++) {
+            earliest = Math.min(earliest, engines[partition].nextEventTime());
+        }
+        if (earliest == Long.MAX_VALUE || failure != null) {
+            windowEnd = Long.MIN_VALUE;
+        } else {
+            windowEnd = earliest > Long.MAX_VALUE - lookahead ? Long.MAX_VALUE : earliest + lookahead;
+        }
+    }
+
+    private synchronized void fail(Throwable e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package networksimulator;
+
+import java.util.Arrays;
+
+/**
+ * Binary trie over int-encoded IPv4 prefixes used as a device's forwarding table.
+ * Nodes live in flat int arrays, so a lookup walks at most 32 levels and allocates nothing.
+ */
+class PrefixTrie {
+    static final int NO_MATCH = -1;
+
+    private int[] children; // children[2 * node] = 0-branch, children[2 * node + 1] = 1-branch, 0 = none
+    private int[] values;   // value stored at a node, NO_MATCH if no prefix ends there
+    private int nodeCount;
+    private int size;
+
+    PrefixTrie() {
+        children = new int[2 * 16];
+        values = new int[16];
+        clear();
+    }
+
+    /**
+     * Stores a value for prefix/length. Bits below the prefix length are ignored.
+     * Returns false and keeps the existing value if the prefix is already present.
+     */
+    boolean insert(int prefix, int prefixLength, int value) {
+        int node = 0;
+        for (int depth = 0; depth < prefixLength; depth++) {
+            int slot = 2 * node + ((prefix >>> (31 - depth)) & 1);
+            int child = children[slot];
+            if (child == 0) {
+                child = newNode();
+                children[slot] = child;
+            }
+            node = child;
+        }
+        if (values[node] != NO_MATCH) {
+            return false;
+        }
+        values[node] = value;
+        size++;
+        return true;
+    }
+
+    /** Returns the value stored for exactly prefix/length, or NO_MATCH. */
+    int get(int prefix, int prefixLength) {
+        int node = find(prefix, prefixLength);
+        return node < 0 ? NO_MATCH : values[node];
+    }
+
+    /** Changes the value of a prefix that is already present; returns false if it is not. */
+    boolean replace(int prefix, int prefixLength, int value) {
+        int node = find(prefix, prefixLength);
+        if (node < 0 || values[node] == NO_MATCH) {
+            return false;
+        }
+        values[node] = value;
+        return true;
+    }
+
+    /**
+     * Removes a prefix; returns false if it was not present. Its nodes stay in place for a
+     * later insert, so lookups simply fall back to the next shorter prefix.
+     */
+    boolean remove(int prefix, int prefixLength) {
+        int node = find(prefix, prefixLength);
+        if (node < 0 || values[node] == NO_MATCH) {
+            return false;
+        }
+        values[node] = NO_MATCH;
+        size--;
+        return true;
+    }
+
+    /** Returns the value of the longest prefix containing address, or NO_MATCH. */
+    int lookup(int address) {
+        int best = values[0];
+        int node = 0;
+        for (int depth = 0; depth < 32; depth++) {
+            node = children[2 * node + ((address >>> (31 - depth)) & 1)];
+            if (node == 0) {
+                break;
+            }
+            if (values[node] != NO_MATCH) {
+                best = values[node];
+            }
+        }
+        return best;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(children, 0);
+        Arrays.fill(values, NO_MATCH);
+        nodeCount = 1; // node 0 is the root (the /0 prefix)
+        size = 0;
+    }
+
+    // Node of exactly prefix/length, or -1 if the path to it does not exist
+    private int find(int prefix, int prefixLength) {
+        int node = 0;
+        for (int depth = 0; depth < prefixLength; depth++) {
+            node = children[2 * node + ((prefix >>> (31 - depth)) & 1)];
+            if (node == 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+
+    private int newNode() {
+        if (nodeCount == values.length) {
+            int capacity = values.length * 2;
+            children = Arrays.copyOf(children, 2 * capacity);
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(values, oldLength, capacity, NO_MATCH);
+        }
+        return nodeCount++;
+    }
+}
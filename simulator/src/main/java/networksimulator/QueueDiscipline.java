@@ -0,0 +1,9 @@
+package networksimulator;
+
+/**
+ * How a link's output queue decides which arriving packets to drop.
+ */
+public enum QueueDiscipline {
+    DROP_TAIL, // Drop only when the queue is full
+    RED // Random early detection: drop with rising probability as the average queue grows
+}
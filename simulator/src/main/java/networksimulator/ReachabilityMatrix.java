@@ -0,0 +1,194 @@
+package networksimulator;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Next hop, path and reachability for every source/destination device pair, computed from the
+ * compiled routing tables with one pass per destination. Paths are rebuilt by following next
+ * hops, so a query costs O(path length). Memory grows with the square of the device count.
+ * A route to a next-hop group is followed through one member, the one a flow hashing to 0
+ * takes, so a pair counts as reachable by that path even if other members' flows fail.
+ */
+public class ReachabilityMatrix {
+    public static final byte REACHABLE = 0;
+    public static final byte NO_ROUTE = 1; // A device on the way has no matching route
+    public static final byte UNKNOWN_DEVICE = 2; // A route on the way points at a missing device
+    public static final byte ROUTING_LOOP = 3;
+
+    private final int version;
+    private final int deviceCount;
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] nextHops; // [destination * deviceCount + source]
+    private final byte[] statuses; // Same layout as nextHops
+    private final long[] pairCounts; // Source/destination pairs per status, excluding a device to itself
+
+    ReachabilityMatrix(List<NetworkSimulator.NetworkDevice> devices, int version) {
+        this.version = version;
+        this.deviceCount = devices.size();
+        if ((long) deviceCount * deviceCount > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many devices for an all-pairs matrix: " + deviceCount);
+        }
+        this.names = new String[deviceCount];
+        this.ids = new HashMap<>();
+        for (int i = 0; i < deviceCount; i++) {
+            names[i] = devices.get(i).getName();
+            ids.put(names[i], i);
+        }
+        this.nextHops = new int[deviceCount * deviceCount];
+        this.statuses = new byte[deviceCount * deviceCount];
+        this.pairCounts = IntStream.range(0, deviceCount).parallel()
+            .mapToObj(destination -> computeColumn(devices, destination))
+            .reduce(new long[4], (a, b) -> new long[] {a[0] + b[0], a[1] + b[1], a[2] + b[2], a[3] + b[3]});
+    }
+
+    // Fills next hops and statuses towards one destination, walking each forwarding chain once
+    private long[] computeColumn(List<NetworkSimulator.NetworkDevice> devices, int destination) {
+        int base = destination * deviceCount;
+        int address = devices.get(destination).getAddress();
+        for (int source = 0; source < deviceCount; source++) {
+            nextHops[base + source] = source == destination ? destination : devices.get(source).findNextHopId(address);
+        }
+
+        long[] counts = new long[4];
+        boolean[] settled = new boolean[deviceCount];
+        int[] walkMarks = new int[deviceCount];
+        Arrays.fill(walkMarks, -1);
+        int[] walk = new int[deviceCount];
+        statuses[base + destination] = REACHABLE;
+        settled[destination] = true;
+
+        for (int source = 0; source < deviceCount; source++) {
+            int length = 0;
+            int current = source;
+            byte status;
+            while (true) {
+                if (settled[current]) {
+                    status = statuses[base + current];
+                    break;
+                }
+                if (walkMarks[current] == source) {
+                    status = ROUTING_LOOP;
+                    break;
+                }
+                walkMarks[current] = source;
+                walk[length++] = current;
+                int next = nextHops[base + current];
+                if (next == NetworkSimulator.NO_ROUTE) {
+                    status = NO_ROUTE;
+                    break;
+                }
+                if (next == NetworkSimulator.UNKNOWN_DEVICE) {
+                    status = UNKNOWN_DEVICE;
+                    break;
+                }
+                current = next;
+            }
+            // Everything on the walk shares the fate of where it ended
+            for (int i = 0; i < length; i++) {
+                statuses[base + walk[i]] = status;
+                settled[walk[i]] = true;
+            }
+            counts[status] += length;
+        }
+        return counts;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    public byte getStatus(String source, String destination) {
+        return statuses[index(source, destination)];
+    }
+
+    public boolean isReachable(String source, String destination) {
+        return getStatus(source, destination) == REACHABLE;
+    }
+
+    // Next device a packet from source to destination is handed to, or null if there is none
+    public String getNextHop(String source, String destination) {
+        int next = nextHops[index(source, destination)];
+        return next < 0 ? null : names[next];
+    }
+
+    // Devices a packet visits from source towards destination. Stops where a black hole swallows
+    // it, or just before a routing loop repeats a device.
+    public List<String> getPath(String source, String destination) {
+        int destinationId = id(destination);
+        int base = destinationId * deviceCount;
+        List<String> path = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        int current = id(source);
+        while (current >= 0 && visited.add(current)) {
+            path.add(names[current]);
+            if (current == destinationId) {
+                break;
+            }
+            current = nextHops[base + current];
+        }
+        return path;
+    }
+
+    public long getReachablePairs() {
+        return pairCounts[REACHABLE];
+    }
+
+    public long getBlackHolePairs() {
+        return pairCounts[NO_ROUTE] + pairCounts[UNKNOWN_DEVICE];
+    }
+
+    public long getLoopPairs() {
+        return pairCounts[ROUTING_LOOP];
+    }
+
+    // Human-readable lines for up to limit unreachable pairs
+    public List<String> describeProblems(int limit) {
+        List<String> problems = new ArrayList<>();
+        for (int destination = 0; destination < deviceCount; destination++) {
+            for (int source = 0; source < deviceCount; source++) {
+                if (problems.size() >= limit) {
+                    return problems;
+                }
+                byte status = statuses[destination * deviceCount + source];
+                if (status == REACHABLE) {
+                    continue;
+                }
+                List<String> path = getPath(names[source], names[destination]);
+                String last = path.get(path.size() - 1);
+                String pair = names[source] + " -> " + names[destination];
+                if (status == ROUTING_LOOP) {
+                    problems.add("Routing loop: " + pair + " circles back after " + last);
+                } else if (status == NO_ROUTE) {
+                    problems.add("Black hole: " + pair + " has no route at " + last);
+                } else {
+                    problems.add("Black hole: " + pair + " is forwarded to a missing device by " + last);
+                }
+            }
+        }
+        return problems;
+    }
+
+    @Override
+    public String toString() {
+        return "devices=" + deviceCount + " reachable=" + getReachablePairs() + " blackHoles=" + getBlackHolePairs()
+            + " loops=" + getLoopPairs();
+    }
+
+    private int index(String source, String destination) {
+        return id(destination) * deviceCount + id(source);
+    }
+
+    private int id(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown device: " + name);
+        }
+        return id;
+    }
+}
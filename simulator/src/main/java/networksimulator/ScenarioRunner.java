@@ -0,0 +1,506 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs a scenario without the Swing UI: builds the network described by a scenario file,
+ * sends its traffic matrix through NetworkSimulator.simulateLoad at full speed and prints the
+ * throughput, loss and latency results as JSON or CSV on standard output. Everything the
+ * simulator itself prints goes to standard error, so the results can be piped straight into
+ * other tools.
+ *
+ * Scenario files hold one directive per line; '#' starts a comment and paths are relative to
+ * the scenario file:
+ *   topology &lt;file&gt;                       topology file as read by loadTopology
+ *   snapshot &lt;file&gt;                       snapshot to restore; must come first
+ *   device &lt;name&gt; &lt;ip&gt; &lt;mask&gt;
+ *   route &lt;source&gt; &lt;destination[/prefix]&gt; &lt;next hop&gt;
+ *   link &lt;device&gt; &lt;device&gt; &lt;cost&gt;          adjacency for link-state routing
+ *   linkdefaults &lt;bits/s&gt; &lt;delay ms&gt; &lt;queue&gt; &lt;drop-tail|red&gt;
+ *   linkconfig &lt;source&gt; &lt;next hop&gt; &lt;bits/s&gt; &lt;delay ms&gt; &lt;queue&gt; &lt;drop-tail|red&gt;
+ *   loss &lt;source&gt; &lt;next hop&gt; bernoulli &lt;p&gt;
+ *   loss &lt;source&gt; &lt;next hop&gt; gilbert-elliott &lt;good-to-bad&gt; &lt;bad-to-good&gt; &lt;good loss&gt; &lt;bad loss&gt;
+ *   loss &lt;source&gt; &lt;next hop&gt; delay &lt;threshold ms&gt;   loss model of a link, see LossModel
+ *   compress                              compress the forwarding tables once the network is built (ORTC)
+ *   packetsize &lt;bytes&gt;
+ *   flow &lt;source&gt; &lt;destination&gt; &lt;packets/s&gt; [packets]
+ *   duration &lt;seconds&gt;                    sending time of flows without a packet count
+ *   seed &lt;number&gt;                        seed for random drops; the same seed repeats a run
+ *
+ * Usage: ScenarioRunner &lt;scenario&gt; [--seed n] [--duration seconds] [--format json|csv] [--partitions n]
+ * With --partitions the run is split over that many threads (0 for one per processor); the
+ * results are the same as on one thread. Exits with 1 if the scenario has errors, including lines the
+ * simulator rejects (a taken device name, a route on an unknown device), and 2 on bad arguments.
+ */
+public final class ScenarioRunner {
+    private static final int BUSIEST_LINKS = 10;
+    private static final int TOP_TALKERS = 10;
+
+    private final Path scenario;
+    private final NetworkSimulator simulator = new NetworkSimulator();
+    private final List<String[]> flowLines = new ArrayList<>();
+    private final List<String> errors = new ArrayList<>();
+    private double durationSeconds = -1;
+    private Long seed;
+    private boolean inlineLinks;
+    private boolean compress;
+    private TrafficResult result;
+    private int flowCount;
+    private int partitions = 1;
+
+    public ScenarioRunner(Path scenario) {
+        this.scenario = scenario;
+    }
+
+    public static void main(String[] args) {
+        PrintStream results = System.out;
+        System.setOut(System.err); // Keep simulator messages out of the machine-readable output
+        int status = run(args, results);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // Runs the command line, writing the results to results and errors to standard error, and
+    // returns the exit status
+    static int run(String[] args, PrintStream results) {
+        Path file = null;
+        String format = "json";
+        Long seed = null;
+        double duration = -1;
+        int partitions = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--duration":
+                        duration = Double.parseDouble(args[++i]);
+                        break;
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    case "--partitions":
+                        partitions = Integer.parseInt(args[++i]);
+                        if (partitions < 0) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        break;
+                    default:
+                        if (file != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        file = Paths.get(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            file = null;
+        }
+        if (file == null || !(format.equals("json") || format.equals("csv"))) {
+            System.err.println("Usage: ScenarioRunner <scenario> [--seed n] [--duration seconds] [--format json|csv]"
+                + " [--partitions n]");
+            return 2;
+        }
+
+        ScenarioRunner runner = new ScenarioRunner(file);
+        runner.setPartitions(partitions);
+        if (!runner.load(seed, duration)) {
+            runner.getErrors().forEach(System.err::println);
+            return 1;
+        }
+        runner.run();
+        if (format.equals("csv")) {
+            runner.writeCsv(results);
+        } else {
+            runner.writeJson(results);
+        }
+        results.flush();
+        return 0;
+    }
+
+    /**
+     * Reads the scenario and builds its network. A seed or duration given here overrides the
+     * file's. Returns false, with getErrors filled, if the scenario cannot be run.
+     */
+    public boolean load(Long seedOverride, double durationOverride) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(scenario, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            errors.add("Error: Could not read scenario " + scenario + ": " + e.getMessage());
+            return false;
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            String[] tokens = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (tokens[0].isEmpty()) {
+                continue;
+            }
+            try {
+                apply(tokens);
+            } catch (NumberFormatException e) {
+                errors.add("Error: " + scenario + ":" + (i + 1) + ": invalid number (" + e.getMessage() + ")");
+            } catch (IOException | RuntimeException e) {
+                errors.add("Error: " + scenario + ":" + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (seedOverride != null) {
+            seed = seedOverride;
+        }
+        if (durationOverride >= 0) {
+            durationSeconds = durationOverride;
+        }
+        if (inlineLinks) {
+            simulator.enableLinkStateRouting();
+        }
+        if (compress) {
+            simulator.compressForwardingTables();
+        }
+        if (flowLines.isEmpty()) {
+            errors.add("Error: " + scenario + ": no flows");
+        }
+        for (String[] flow : flowLines) {
+            if (flow.length < 5 && durationSeconds < 0) {
+                errors.add("Error: " + scenario + ": flow " + flow[1] + " -> " + flow[2] + " has no packet count and no duration is set");
+                break;
+            }
+        }
+        return errors.isEmpty();
+    }
+
+    /** Sends the traffic matrix and keeps the result for writeJson / writeCsv. */
+    public TrafficResult run() {
+        List<TrafficFlow> flows = prepareRun();
+        result = partitions == 1 ? simulator.simulateLoad(flows) : simulator.simulateLoad(flows, partitions);
+        return result;
+    }
+
+    // Applies the seed, clears the metrics and returns the traffic matrix, in scenario order
+    List<TrafficFlow> prepareRun() {
+        if (seed != null) {
+            simulator.setSeed(seed);
+        }
+        List<TrafficFlow> flows = new ArrayList<>(flowLines.size());
+        for (String[] flow : flowLines) {
+            double rate = Double.parseDouble(flow[3]);
+            long count = flow.length > 4 ? Long.parseLong(flow[4]) : Math.round(rate * durationSeconds);
+            flows.add(new TrafficFlow(flow[1], flow[2], count, rate));
+        }
+        flowCount = flows.size();
+        simulator.getMetrics().reset();
+        return flows;
+    }
+
+    // Threads to split the run over, 0 for one per processor; 1, the default, runs it on the caller's
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public NetworkSimulator getSimulator() {
+        return simulator;
+    }
+
+    public void writeJson(PrintStream out) {
+        report().writeJson(out);
+    }
+
+    // One header line and one row, for appending runs to a spreadsheet
+    public void writeCsv(PrintStream out) {
+        report().writeCsv(out);
+    }
+
+    private Report report() {
+        return new Report(scenario.toString(), simulator.getSeed(), simulator.getDeviceCount(), routeCount(), flowCount,
+            simulator.getPacketSize(), result, simulator.getMetricsSnapshot());
+    }
+
+    private void apply(String[] tokens) throws IOException {
+        switch (tokens[0]) {
+            case "topology":
+                expect(tokens, 2);
+                check(simulator.loadTopology(resolve(tokens[1])), "lines of topology " + tokens[1] + " were skipped");
+                break;
+            case "snapshot":
+                expect(tokens, 2);
+                if (simulator.getDeviceCount() > 0) {
+                    throw new IllegalArgumentException("snapshot must come before any device");
+                }
+                simulator.restoreSnapshot(resolve(tokens[1]));
+                break;
+            case "device":
+                expect(tokens, 4);
+                check(simulator.addDevice(tokens[1], tokens[2], tokens[3]), "device " + tokens[1] + " was not added");
+                break;
+            case "route":
+                expect(tokens, 4);
+                check(simulator.addStaticRoute(tokens[1], tokens[2], tokens[3]), "route " + tokens[2] + " on " + tokens[1] + " was not added");
+                break;
+            case "link":
+                expect(tokens, 4);
+                check(simulator.connect(tokens[1], tokens[2], Integer.parseInt(tokens[3])),
+                    "link " + tokens[1] + " - " + tokens[2] + " was not added");
+                inlineLinks = true;
+                break;
+            case "linkdefaults":
+                expect(tokens, 5);
+                check(simulator.setLinkDefaults(Long.parseLong(tokens[1]), Double.parseDouble(tokens[2]),
+                    Integer.parseInt(tokens[3]), discipline(tokens[4])), "link defaults were not changed");
+                break;
+            case "linkconfig":
+                expect(tokens, 7);
+                check(simulator.configureLink(tokens[1], tokens[2], Long.parseLong(tokens[3]), Double.parseDouble(tokens[4]),
+                    Integer.parseInt(tokens[5]), discipline(tokens[6])), "link " + tokens[1] + " -> " + tokens[2] + " was not configured");
+                break;
+            case "loss":
+                LossModel model = lossModel(tokens);
+                check(simulator.setLossModel(tokens[1], tokens[2], model), "loss model of " + tokens[1] + " -> " + tokens[2] + " was not set");
+                break;
+            case "compress":
+                expect(tokens, 1);
+                compress = true;
+                break;
+            case "packetsize":
+                expect(tokens, 2);
+                check(simulator.setPacketSize(Integer.parseInt(tokens[1])), "packet size was not changed");
+                break;
+            case "flow":
+                if (tokens.length != 4 && tokens.length != 5) {
+                    throw new IllegalArgumentException("expected 'flow <source> <destination> <packets/s> [packets]'");
+                }
+                if (!(Double.parseDouble(tokens[3]) >= 0) || (tokens.length == 5 && Long.parseLong(tokens[4]) < 0)) {
+                    throw new IllegalArgumentException("negative flow rate or packet count");
+                }
+                if (!simulator.getDevices().containsKey(tokens[1]) || !simulator.getDevices().containsKey(tokens[2])) {
+                    throw new IllegalArgumentException("unknown device in flow " + tokens[1] + " -> " + tokens[2]);
+                }
+                flowLines.add(tokens);
+                break;
+            case "duration":
+                expect(tokens, 2);
+                durationSeconds = Double.parseDouble(tokens[1]);
+                if (!(durationSeconds >= 0)) {
+                    throw new IllegalArgumentException("duration must not be negative");
+                }
+                break;
+            case "seed":
+                expect(tokens, 2);
+                seed = Long.parseLong(tokens[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown directive '" + tokens[0] + "'");
+        }
+    }
+
+    // The simulator has already printed why; this makes the line count as an error
+    private static void check(boolean applied, String message) {
+        if (!applied) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static void expect(String[] tokens, int count) {
+        if (tokens.length != count) {
+            throw new IllegalArgumentException("'" + tokens[0] + "' takes " + (count - 1) + " arguments");
+        }
+    }
+
+    private Path resolve(String file) {
+        Path parent = scenario.toAbsolutePath().getParent();
+        return parent == null ? Paths.get(file) : parent.resolve(file);
+    }
+
+    private static LossModel lossModel(String[] tokens) {
+        switch (tokens.length > 3 ? tokens[3] : "") {
+            case "bernoulli":
+                expect(tokens, 5);
+                return LossModel.bernoulli(Double.parseDouble(tokens[4]));
+            case "gilbert-elliott":
+                expect(tokens, 8);
+                return LossModel.gilbertElliott(Double.parseDouble(tokens[4]), Double.parseDouble(tokens[5]),
+                    Double.parseDouble(tokens[6]), Double.parseDouble(tokens[7]));
+            case "delay":
+                expect(tokens, 5);
+                return LossModel.delayThreshold(Double.parseDouble(tokens[4]));
+            default:
+                throw new IllegalArgumentException("expected 'loss <source> <next hop> bernoulli|gilbert-elliott|delay <parameters>'");
+        }
+    }
+
+    private static QueueDiscipline discipline(String name) {
+        return QueueDiscipline.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    long routeCount() {
+        long routes = 0;
+        for (int id = 0; id < simulator.getDeviceCount(); id++) {
+            routes += simulator.getDevice(id).getRoutingTable().size();
+        }
+        return routes;
+    }
+
+    // Ids of the links that carried the most packets, busiest first and by name among equals, so
+    // sharded runs, which number links differently, list the same ones
+    private static int[] busiestLinks(MetricsSnapshot metrics) {
+        int[] top = new int[Math.min(BUSIEST_LINKS, metrics.getLinkCount())];
+        int size = 0;
+        for (int link = 0; link < metrics.getLinkCount(); link++) {
+            if (metrics.getLinkPackets(link) == 0 || (size == top.length && !busier(metrics, link, top[size - 1]))) {
+                continue;
+            }
+            int i = size < top.length ? size++ : size - 1;
+            while (i > 0 && busier(metrics, link, top[i - 1])) {
+                top[i] = top[i - 1];
+                i--;
+            }
+            top[i] = link;
+        }
+        return Arrays.copyOf(top, size);
+    }
+
+    private static boolean busier(MetricsSnapshot metrics, int link, int other) {
+        long packets = metrics.getLinkPackets(link);
+        long otherPackets = metrics.getLinkPackets(other);
+        return packets != otherPackets ? packets > otherPackets
+            : metrics.getLinkName(link).compareTo(metrics.getLinkName(other)) < 0;
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.6g", value) : "null";
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String csv(String text) {
+        return text.contains(",") || text.contains("\"") ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+    }
+
+    /** Results of a run as printed by writeJson and writeCsv; ShardCoordinator fills one from its shards. */
+    static final class Report {
+        private final String scenario;
+        private final long seed;
+        private final int devices;
+        private final long routes;
+        private final int flows;
+        private final int packetSize;
+        private final TrafficResult result;
+        private final MetricsSnapshot metrics;
+
+        Report(String scenario, long seed, int devices, long routes, int flows, int packetSize, TrafficResult result,
+               MetricsSnapshot metrics) {
+            this.scenario = scenario;
+            this.seed = seed;
+            this.devices = devices;
+            this.routes = routes;
+            this.flows = flows;
+            this.packetSize = packetSize;
+            this.result = result;
+            this.metrics = metrics;
+        }
+
+        void writeJson(PrintStream out) {
+            Histogram latencies = metrics.getLatencies();
+            StringBuilder json = new StringBuilder(1024);
+            json.append("{\n");
+            field(json, "scenario", quote(scenario));
+            field(json, "seed", Long.toString(seed));
+            field(json, "devices", Integer.toString(devices));
+            field(json, "routes", Long.toString(routes));
+            field(json, "flows", Integer.toString(flows));
+            field(json, "packetSizeBytes", Integer.toString(packetSize));
+            field(json, "simulatedSeconds", number(simulatedSeconds()));
+            field(json, "wallSeconds", number(result.getElapsedNanos() / 1e9));
+            field(json, "packetsSent", Long.toString(result.getPacketsSent()));
+            field(json, "packetsDelivered", Long.toString(result.getPacketsDelivered()));
+            field(json, "packetsLost", Long.toString(result.getPacketsLost()));
+            field(json, "packetsUnroutable", Long.toString(result.getPacketsUnroutable()));
+            field(json, "lossRatio", number(result.getLossRatio()));
+            field(json, "throughputPacketsPerSecond", number(throughputPackets()));
+            field(json, "throughputBitsPerSecond", number(throughputPackets() * packetSize * 8));
+            field(json, "latencyMillis", "{\"mean\": " + number(latencies.getMean() / 1e6)
+                + ", \"p50\": " + number(latencies.getPercentile(50) / 1e6)
+                + ", \"p90\": " + number(latencies.getPercentile(90) / 1e6)
+                + ", \"p99\": " + number(latencies.getPercentile(99) / 1e6)
+                + ", \"max\": " + number(latencies.getMax() / 1e6) + "}");
+            field(json, "meanHops", number(metrics.getHopCounts().getMean()));
+            json.append("  \"busiestLinks\": [");
+            int[] busiest = busiestLinks(metrics);
+            for (int i = 0; i < busiest.length; i++) {
+                int link = busiest[i];
+                json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"link\": ").append(quote(metrics.getLinkName(link)))
+                    .append(", \"packets\": ").append(metrics.getLinkPackets(link))
+                    .append(", \"utilization\": ").append(number(metrics.getLinkUtilization(link)))
+                    .append(", \"meanQueueDelayMillis\": ").append(number(metrics.getLinkMeanQueueDelayMillis(link)))
+                    .append(", \"queueDrops\": ").append(metrics.getLinkQueueDrops(link)).append('}');
+            }
+            json.append(busiest.length == 0 ? "],\n" : "\n  ],\n");
+            json.append("  \"topTalkers\": [");
+            HeavyHitters talkers = metrics.getTalkers();
+            long[] top = talkers.top(TOP_TALKERS);
+            for (int i = 0; i < top.length; i++) {
+                json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"source\": ").append(quote(NetworkSimulator.formatAddress(HeavyHitters.pairSource(top[i]))))
+                    .append(", \"destination\": ")
+                    .append(quote(NetworkSimulator.formatAddress(HeavyHitters.pairDestination(top[i]))))
+                    .append(", \"packets\": ").append(talkers.estimate(top[i])).append('}');
+            }
+            json.append(top.length == 0 ? "]\n" : "\n  ]\n").append("}");
+            out.println(json);
+        }
+
+        void writeCsv(PrintStream out) {
+            Histogram latencies = metrics.getLatencies();
+            out.println("scenario,seed,devices,flows,simulated_s,wall_s,sent,delivered,lost,unroutable,loss_ratio,"
+                + "throughput_pps,throughput_bps,latency_mean_ms,latency_p50_ms,latency_p90_ms,latency_p99_ms,latency_max_ms");
+            out.println(String.join(",", csv(scenario), Long.toString(seed),
+                Integer.toString(devices), Integer.toString(flows), number(simulatedSeconds()),
+                number(result.getElapsedNanos() / 1e9), Long.toString(result.getPacketsSent()),
+                Long.toString(result.getPacketsDelivered()), Long.toString(result.getPacketsLost()),
+                Long.toString(result.getPacketsUnroutable()), number(result.getLossRatio()), number(throughputPackets()),
+                number(throughputPackets() * packetSize * 8), number(latencies.getMean() / 1e6),
+                number(latencies.getPercentile(50) / 1e6), number(latencies.getPercentile(90) / 1e6),
+                number(latencies.getPercentile(99) / 1e6), number(latencies.getMax() / 1e6)));
+        }
+
+        private double simulatedSeconds() {
+            return metrics.getSimulatedNanos() / 1e9;
+        }
+
+        private double throughputPackets() {
+            double seconds = simulatedSeconds();
+            return seconds > 0 ? result.getPacketsDelivered() / seconds : 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package networksimulator;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One end of the connection between ShardCoordinator and a ShardWorker. A message is its
+ * length, a type byte and a little-endian payload, built in and read from direct buffers that
+ * grow to the largest message seen, so a round's batch of packets costs one write and one read
+ * however many packets it holds.
+ */
+final class ShardChannel implements AutoCloseable {
+    // Message types
+    static final byte CONFIGURE = 1; // Coordinator: shard, shard count, block size, scenario and overrides
+    static final byte READY = 2; // Shard: errors, or lookahead, first event time and what it loaded
+    static final byte WINDOW = 3; // Coordinator: end of the round and the packets arriving from other shards
+    static final byte DONE = 4; // Shard: next event time and the packets it put on links to other shards
+    static final byte FINISH = 5; // Coordinator: no events are left anywhere, send the results
+    static final byte RESULT = 6; // Shard: outcome counts and metrics
+    static final byte ABORT = 7; // Coordinator: the run is off
+
+    private static final int MAX_MESSAGE = 1 << 30;
+
+    private final SocketChannel channel;
+    private ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer in = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer length = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    ShardChannel(SocketChannel channel) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(true);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    // Starts a message; fill it with the put methods and hand it over with send
+    void begin(byte type) {
+        out.clear();
+        out.putInt(0);
+        out.put(type);
+    }
+
+    void send() throws IOException {
+        out.putInt(0, out.position() - 4);
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+
+    // Waits for the next message and returns its type; read the payload with the get methods
+    byte receive() throws IOException {
+        length.clear();
+        readFully(length);
+        int size = length.getInt(0);
+        if (size < 1 || size > MAX_MESSAGE) {
+            throw new IOException("Corrupt shard message of " + size + " bytes");
+        }
+        if (in.capacity() < size) {
+            in = ByteBuffer.allocateDirect(Math.max(size, 2 * in.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        in.clear().limit(size);
+        readFully(in);
+        in.flip();
+        return in.get();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Shard connection closed");
+            }
+        }
+    }
+
+    private void ensure(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(out.capacity() * 2, out.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            out.flip();
+            grown.put(out);
+            out = grown;
+        }
+    }
+
+    void putByte(int value) {
+        ensure(1);
+        out.put((byte) value);
+    }
+
+    void putInt(int value) {
+        ensure(4);
+        out.putInt(value);
+    }
+
+    void putLong(long value) {
+        ensure(8);
+        out.putLong(value);
+    }
+
+    void putDouble(double value) {
+        ensure(8);
+        out.putDouble(value);
+    }
+
+    void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length);
+        out.put(bytes);
+    }
+
+    byte getByte() throws IOException {
+        check(1);
+        return in.get();
+    }
+
+    int getInt() throws IOException {
+        check(4);
+        return in.getInt();
+    }
+
+    // A count that must lie in [0, limit]
+    int getCount(int limit) throws IOException {
+        int count = getInt();
+        if (count < 0 || count > limit) {
+            throw new IOException("Corrupt shard message: count " + count + " out of range");
+        }
+        return count;
+    }
+
+    long getLong() throws IOException {
+        check(8);
+        return in.getLong();
+    }
+
+    double getDouble() throws IOException {
+        check(8);
+        return in.getDouble();
+    }
+
+    String getString() throws IOException {
+        int size = getCount(in.remaining());
+        byte[] bytes = new byte[size];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void check(int bytes) throws IOException {
+        if (in.remaining() < bytes) {
+            throw new IOException("Corrupt shard message: unexpected end");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
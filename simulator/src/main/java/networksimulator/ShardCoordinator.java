@@ -0,0 +1,412 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a ScenarioRunner scenario sharded over several processes, for networks whose routing
+ * tables do not fit in one heap. Devices are dealt out to the shards in blocks of consecutive
+ * ids and each ShardWorker keeps only its own devices' routes; the coordinator holds no
+ * network at all.
+ *
+ * The shards connect over TCP and run in rounds like the partitions of ParallelLoad: each
+ * round the coordinator sends every shard the end of the round, the earliest pending event of
+ * any shard or packet in transit plus the smallest propagation delay of a link between shards,
+ * together with the packets that arrive at it from other shards. The shards simulate up to
+ * there and answer with their next event time and the packets they put on links to other
+ * shards, which the coordinator passes on in the next round. Once nothing is left it collects
+ * and merges the shards' counters and prints them like ScenarioRunner, with the same results
+ * as a single-process run of the scenario.
+ *
+ * Usage: ShardCoordinator &lt;scenario&gt; --shards n [--local] [--port p] [--block devices]
+ *                         [--seed n] [--duration seconds] [--format json|csv]
+ * With --local the coordinator starts the shards itself as processes on this machine;
+ * otherwise start them with ShardWorker --coordinator host:port, where the scenario must be at
+ * the same path. Exits with 1 if the run fails and 2 on bad arguments.
+ */
+public final class ShardCoordinator {
+    private static final int DEFAULT_BLOCK = 256;
+    private static final long CONNECT_TIMEOUT_MILLIS = 60_000;
+
+    private final Path scenario; // As given, for the report; shards get the absolute path
+    private final int shards;
+    private final int block;
+    private final Long seed;
+    private final double duration;
+    private final ShardChannel[] channels;
+    private final PacketMailbox[] inTransit; // Packets for each shard, passed on in the next round
+
+    // Facts the shards report once loaded
+    private long lookahead = Long.MAX_VALUE;
+    private long sent;
+    private long expected; // Packets the scenario sends in a single-process run
+    private int flows;
+    private int devices;
+    private long routes;
+    private int packetSize;
+    private long runSeed;
+    private final long[] nextEvent;
+
+    ShardCoordinator(Path scenario, int shards, int block, Long seed, double duration) {
+        this.scenario = scenario;
+        this.shards = shards;
+        this.block = block;
+        this.seed = seed;
+        this.duration = duration;
+        this.channels = new ShardChannel[shards];
+        this.inTransit = new PacketMailbox[shards];
+        this.nextEvent = new long[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            inTransit[shard] = new PacketMailbox();
+        }
+    }
+
+    // Shard that owns a device: blocks of consecutive ids, dealt out in turn
+    static int shardOf(int device, int shards, int block) {
+        return (device / block) % shards;
+    }
+
+    public static void main(String[] args) {
+        PrintStream results = System.out;
+        System.setOut(System.err); // Keep simulator messages out of the machine-readable output
+
+        Path file = null;
+        int shards = 0;
+        int port = 0;
+        int block = DEFAULT_BLOCK;
+        boolean local = false;
+        Long seed = null;
+        double duration = -1;
+        String format = "json";
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--shards":
+                        shards = Integer.parseInt(args[++i]);
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--block":
+                        block = Integer.parseInt(args[++i]);
+                        break;
+                    case "--local":
+                        local = true;
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--duration":
+                        duration = Double.parseDouble(args[++i]);
+                        break;
+                    case "--format":
+                        format = args[++i];
+                        break;
+                    default:
+                        if (file != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException(args[i]);
+                        }
+                        file = Paths.get(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            file = null;
+        }
+        if (file == null || shards < 1 || block < 1 || port < 0 || port > 65535
+            || !(format.equals("json") || format.equals("csv"))) {
+            System.err.println("Usage: ShardCoordinator <scenario> --shards n [--local] [--port p] [--block devices]"
+                + " [--seed n] [--duration seconds] [--format json|csv]");
+            System.exit(2);
+        }
+
+        ShardCoordinator coordinator = new ShardCoordinator(file, shards, block, seed, duration);
+        List<Process> processes = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            int bound = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            System.out.println("Waiting for " + shards + " shards on port " + bound);
+            if (local) {
+                processes = startLocalShards(shards, bound);
+            }
+            coordinator.accept(server);
+            ScenarioRunner.Report report = coordinator.run();
+            if (report == null) {
+                System.exit(1);
+            }
+            if (format.equals("csv")) {
+                report.writeCsv(results);
+            } else {
+                report.writeJson(results);
+            }
+            results.flush();
+        } catch (IOException e) {
+            System.out.println("Error: Sharded run failed: " + e.getMessage());
+            processes.forEach(Process::destroy);
+            System.exit(1);
+        } finally {
+            coordinator.close();
+        }
+        for (Process process : processes) {
+            try {
+                process.waitFor(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Starts the shards as child processes of this JVM's java and class path
+    private static List<Process> startLocalShards(int shards, int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(), "--coordinator", "localhost:" + port)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start());
+        }
+        return processes;
+    }
+
+    // Waits for every shard to connect; they are numbered in the order they arrive
+    void accept(ServerSocketChannel server) throws IOException {
+        server.configureBlocking(false);
+        try (Selector selector = Selector.open()) {
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            int connected = 0;
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+            while (connected < shards) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("Only " + connected + " of " + shards + " shards connected");
+                }
+                selector.select(remaining);
+                selector.selectedKeys().clear();
+                SocketChannel channel;
+                while (connected < shards && (channel = server.accept()) != null) {
+                    channels[connected++] = new ShardChannel(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Configures the connected shards and runs the scenario to the end. Returns the merged
+     * results, or null after printing the shards' errors if the scenario cannot be run.
+     */
+    ScenarioRunner.Report run() throws IOException {
+        for (int shard = 0; shard < shards; shard++) {
+            ShardChannel channel = channels[shard];
+            channel.begin(ShardChannel.CONFIGURE);
+            channel.putInt(shard);
+            channel.putInt(shards);
+            channel.putInt(block);
+            channel.putString(scenario.toAbsolutePath().toString());
+            channel.putByte(seed != null ? 1 : 0);
+            channel.putLong(seed != null ? seed : 0);
+            channel.putDouble(duration);
+            channel.send();
+        }
+        if (!ready()) {
+            abort();
+            return null;
+        }
+        if (lookahead == 0) {
+            System.out.println("Error: Links between shards need a propagation delay.");
+            abort();
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long windowEnd;
+        while ((windowEnd = nextWindow()) != Long.MIN_VALUE) {
+            for (int shard = 0; shard < shards; shard++) {
+                ShardChannel channel = channels[shard];
+                channel.begin(ShardChannel.WINDOW);
+                channel.putLong(windowEnd);
+                inTransit[shard].write(channel);
+                inTransit[shard].clear();
+                channel.send();
+            }
+            for (int shard = 0; shard < shards; shard++) {
+                ShardChannel channel = channels[shard];
+                expect(channel.receive(), ShardChannel.DONE);
+                nextEvent[shard] = channel.getLong();
+                for (int to = 0; to < shards; to++) {
+                    inTransit[to].read(channel);
+                }
+            }
+        }
+        return results(System.nanoTime() - start);
+    }
+
+    // Reads every shard's READY; false after printing their errors if any failed to load
+    private boolean ready() throws IOException {
+        boolean ok = true;
+        for (int shard = 0; shard < shards; shard++) {
+            ShardChannel channel = channels[shard];
+            expect(channel.receive(), ShardChannel.READY);
+            int errors = channel.getCount(Integer.MAX_VALUE);
+            if (errors > 0) {
+                // Every shard reads the same scenario, so the first one's errors are enough
+                for (int i = 0; i < errors; i++) {
+                    String error = channel.getString();
+                    if (ok) {
+                        System.out.println(error);
+                    }
+                }
+                ok = false;
+                continue;
+            }
+            lookahead = Math.min(lookahead, channel.getLong());
+            nextEvent[shard] = channel.getLong();
+            sent += channel.getLong();
+            long shardExpected = channel.getLong();
+            double shardDuration = channel.getDouble();
+            if (Double.compare(shardDuration, duration) != 0) {
+                System.out.println("Error: Shard " + shard + " was configured with duration " + shardDuration
+                    + " instead of " + duration + ".");
+                ok = false;
+            }
+            if (shard > 0 && shardExpected != expected) {
+                System.out.println("Error: Shards disagree on the packets the scenario sends.");
+                ok = false;
+            }
+            expected = shardExpected;
+            flows = channel.getInt();
+            devices = channel.getInt();
+            routes += channel.getLong();
+            packetSize = channel.getInt();
+            runSeed = channel.getLong();
+        }
+        if (ok && sent != expected) {
+            System.out.println("Error: Shards send " + sent + " packets, but the scenario sends " + expected + ".");
+            ok = false;
+        }
+        return ok;
+    }
+
+    // End of the next round, or Long.MIN_VALUE once no shard has events and no packet is in transit
+    private long nextWindow() {
+        long earliest = Long.MAX_VALUE;
+        for (int shard = 0; shard < shards; shard++) {
+            earliest = Math.min(earliest, Math.min(nextEvent[shard], inTransit[shard].earliest()));
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return Long.MIN_VALUE;
+        }
+        return earliest > Long.MAX_VALUE - lookahead ? Long.MAX_VALUE : earliest + lookahead;
+    }
+
+    // Collects and merges the shards' results
+    private ScenarioRunner.Report results(long elapsedNanos) throws IOException {
+        long[] counts = new long[SimulationEngine.OUTCOME_COUNT];
+        long simulatedNanos = 0;
+        Histogram hopCounts = new Histogram();
+        Histogram latencies = new Histogram();
+        HeavyHitters talkers = new HeavyHitters();
+        Map<Integer, String> deviceNames = new LinkedHashMap<>();
+        Map<Integer, long[]> deviceCounters = new LinkedHashMap<>();
+        Map<String, long[]> linkCounters = new LinkedHashMap<>();
+        for (ShardChannel channel : channels) {
+            channel.begin(ShardChannel.FINISH);
+            channel.send();
+        }
+        for (ShardChannel channel : channels) {
+            expect(channel.receive(), ShardChannel.RESULT);
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                counts[outcome] += channel.getLong();
+            }
+            simulatedNanos = Math.max(simulatedNanos, channel.getLong());
+            hopCounts.add(channel);
+            latencies.add(channel);
+            talkers.add(channel);
+            int activeDevices = channel.getCount(devices);
+            for (int i = 0; i < activeDevices; i++) {
+                int device = channel.getCount(devices - 1);
+                deviceNames.put(device, channel.getString());
+                long[] counters = deviceCounters.computeIfAbsent(device, d -> new long[3]);
+                for (int counter = 0; counter < counters.length; counter++) {
+                    counters[counter] += channel.getLong();
+                }
+            }
+            int activeLinks = channel.getCount(Integer.MAX_VALUE);
+            for (int i = 0; i < activeLinks; i++) {
+                long[] counters = linkCounters.computeIfAbsent(channel.getString(), name -> new long[4]);
+                for (int counter = 0; counter < counters.length; counter++) {
+                    counters[counter] += channel.getLong();
+                }
+            }
+        }
+
+        // Snapshot over the devices and links that saw traffic
+        int deviceCount = deviceCounters.size();
+        String[] names = deviceNames.values().toArray(new String[0]);
+        long[][] device = new long[3][deviceCount];
+        int index = 0;
+        for (long[] counters : deviceCounters.values()) {
+            for (int counter = 0; counter < 3; counter++) {
+                device[counter][index] = counters[counter];
+            }
+            index++;
+        }
+        String[] linkNames = linkCounters.keySet().toArray(new String[0]);
+        long[][] link = new long[4][linkNames.length];
+        index = 0;
+        for (long[] counters : linkCounters.values()) {
+            for (int counter = 0; counter < 4; counter++) {
+                link[counter][index] = counters[counter];
+            }
+            index++;
+        }
+        MetricsSnapshot metrics = new MetricsSnapshot(names, device[0], device[1], device[2], linkNames, link[0],
+            link[1], link[2], link[3], hopCounts, latencies, talkers, simulatedNanos);
+
+        TrafficResult result = NetworkSimulator.outcomeResult(counts, sent, elapsedNanos);
+        return new ScenarioRunner.Report(scenario.toString(), runSeed, devices, routes, flows, packetSize, result,
+            metrics);
+    }
+
+    // Tells the shards to give up; those that failed to load have already hung up
+    private void abort() {
+        for (ShardChannel channel : channels) {
+            try {
+                channel.begin(ShardChannel.ABORT);
+                channel.send();
+            } catch (IOException e) {
+                // Nothing left to stop
+            }
+        }
+    }
+
+    private static void expect(byte type, byte expected) throws IOException {
+        if (type != expected) {
+            throw new IOException("Unexpected shard message " + type + ", expected " + expected);
+        }
+    }
+
+    void close() {
+        for (ShardChannel channel : channels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+            }
+        }
+    }
+}
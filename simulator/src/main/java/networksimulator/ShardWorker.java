@@ -0,0 +1,199 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * One shard of a ShardCoordinator run, in a process of its own. It connects to the
+ * coordinator, loads the scenario it is told to with only the routes of its own devices, and
+ * then simulates the coordinator's rounds: packets from other shards in, events up to the end
+ * of the round, packets for other shards out. Device ids come from the order of the scenario,
+ * so every shard numbers the devices alike and packets need no translation between them.
+ *
+ * Usage: ShardWorker --coordinator &lt;host:port&gt;
+ */
+public final class ShardWorker implements SimulationEngine.Handoff {
+    private final ShardChannel channel;
+    private PacketMailbox[] outboxes; // Packets for each other shard in the current round
+    private final PacketMailbox inbox = new PacketMailbox();
+
+    private ShardWorker(ShardChannel channel) {
+        this.channel = channel;
+    }
+
+    public static void main(String[] args) {
+        System.setOut(System.err); // Results go to the coordinator; keep stdout free like ScenarioRunner
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // Serves one coordinator run and returns the exit status: 1 if it failed, 2 on bad arguments
+    static int run(String[] args) {
+        if (args.length != 2 || !args[0].equals("--coordinator") || args[1].lastIndexOf(':') < 0) {
+            System.err.println("Usage: ShardWorker --coordinator <host:port>");
+            return 2;
+        }
+        String host = args[1].substring(0, args[1].lastIndexOf(':'));
+        int port;
+        try {
+            port = Integer.parseInt(args[1].substring(args[1].lastIndexOf(':') + 1));
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: ShardWorker --coordinator <host:port>");
+            return 2;
+        }
+        try (ShardChannel channel = new ShardChannel(SocketChannel.open(new InetSocketAddress(host, port)))) {
+            new ShardWorker(channel).serve();
+        } catch (IOException e) {
+            System.err.println("Error: Shard failed: " + e.getMessage());
+            return 1;
+        }
+        return 0;
+    }
+
+    private void serve() throws IOException {
+        if (channel.receive() != ShardChannel.CONFIGURE) {
+            throw new IOException("Expected the coordinator's configuration");
+        }
+        int shard = channel.getInt();
+        int shards = channel.getInt();
+        int block = channel.getInt();
+        String scenario = channel.getString();
+        boolean seeded = channel.getByte() != 0;
+        long rawSeed = channel.getLong(); // Always sent, 0 when there is no seed
+        Long seed = seeded ? rawSeed : null;
+        double duration = channel.getDouble();
+
+        ScenarioRunner runner = new ScenarioRunner(Paths.get(scenario));
+        NetworkSimulator simulator = runner.getSimulator();
+        simulator.restrictRoutes(device -> ShardCoordinator.shardOf(device, shards, block) == shard);
+        if (!runner.load(seed, duration)) {
+            channel.begin(ShardChannel.READY);
+            channel.putInt(runner.getErrors().size());
+            for (String error : runner.getErrors()) {
+                channel.putString(error);
+            }
+            channel.send();
+            return;
+        }
+
+        List<TrafficFlow> flows = runner.prepareRun();
+        SimulationEngine engine = simulator.newLoadEngine();
+        int[] shardOf = new int[simulator.getDeviceCount()];
+        for (int device = 0; device < shardOf.length; device++) {
+            shardOf[device] = ShardCoordinator.shardOf(device, shards, block);
+        }
+        engine.partition(this, shardOf, shard);
+        outboxes = new PacketMailbox[shards];
+        for (int to = 0; to < shards; to++) {
+            outboxes[to] = new PacketMailbox();
+        }
+        SimulationEngine[] engines = new SimulationEngine[shards];
+        engines[shard] = engine;
+        long sent = simulator.sendFlows(flows, engines, shardOf);
+        // What a single-process run would send, so the coordinator can tell if shards lost flows
+        long expected = 0;
+        for (TrafficFlow flow : flows) {
+            if (simulator.getDevices().containsKey(flow.getSource())
+                    && simulator.getDevices().containsKey(flow.getDestination())) {
+                expected += flow.getCount();
+            }
+        }
+
+        channel.begin(ShardChannel.READY);
+        channel.putInt(0);
+        channel.putLong(ParallelLoad.lookahead(simulator, shardOf));
+        channel.putLong(engine.nextEventTime());
+        channel.putLong(sent);
+        channel.putLong(expected);
+        channel.putDouble(duration);
+        channel.putInt(flows.size());
+        channel.putInt(simulator.getDeviceCount());
+        channel.putLong(runner.routeCount());
+        channel.putInt(simulator.getPacketSize());
+        channel.putLong(simulator.getSeed());
+        channel.send();
+
+        while (true) {
+            switch (channel.receive()) {
+                case ShardChannel.WINDOW:
+                    long windowEnd = channel.getLong();
+                    inbox.read(channel);
+                    inbox.deliver(engine);
+                    engine.run(windowEnd - 1);
+                    channel.begin(ShardChannel.DONE);
+                    channel.putLong(engine.nextEventTime());
+                    for (PacketMailbox outbox : outboxes) {
+                        outbox.write(channel);
+                        outbox.clear();
+                    }
+                    channel.send();
+                    break;
+                case ShardChannel.FINISH:
+                    sendResult(engine, simulator.getMetricsSnapshot());
+                    return;
+                case ShardChannel.ABORT:
+                    return;
+                default:
+                    throw new IOException("Unexpected message from the coordinator");
+            }
+        }
+    }
+
+    @Override
+    public void post(int from, int to, long arrival, PacketTable packets, int packet) {
+        outboxes[to].add(arrival, packets, packet);
+    }
+
+    // Outcome counts, histograms, the talker sketch and the counters of the devices and links that
+    // saw traffic
+    private void sendResult(SimulationEngine engine, MetricsSnapshot metrics) throws IOException {
+        channel.begin(ShardChannel.RESULT);
+        for (long count : engine.getOutcomeCounts()) {
+            channel.putLong(count);
+        }
+        channel.putLong(metrics.getSimulatedNanos());
+        metrics.getHopCounts().write(channel);
+        metrics.getLatencies().write(channel);
+        metrics.getTalkers().write(channel);
+
+        int devices = 0;
+        for (int device = 0; device < metrics.getDeviceCount(); device++) {
+            if (metrics.getForwarded(device) + metrics.getDropped(device) + metrics.getNoRoute(device) > 0) {
+                devices++;
+            }
+        }
+        channel.putInt(devices);
+        for (int device = 0; device < metrics.getDeviceCount(); device++) {
+            if (metrics.getForwarded(device) + metrics.getDropped(device) + metrics.getNoRoute(device) > 0) {
+                channel.putInt(device);
+                channel.putString(metrics.getDeviceName(device));
+                channel.putLong(metrics.getForwarded(device));
+                channel.putLong(metrics.getDropped(device));
+                channel.putLong(metrics.getNoRoute(device));
+            }
+        }
+
+        int links = 0;
+        for (int link = 0; link < metrics.getLinkCount(); link++) {
+            if (metrics.getLinkPackets(link) + metrics.getLinkQueueDrops(link) > 0) {
+                links++;
+            }
+        }
+        channel.putInt(links);
+        for (int link = 0; link < metrics.getLinkCount(); link++) {
+            if (metrics.getLinkPackets(link) + metrics.getLinkQueueDrops(link) > 0) {
+                channel.putString(metrics.getLinkName(link));
+                channel.putLong(metrics.getLinkPackets(link));
+                channel.putLong(metrics.getLinkBusyNanos(link));
+                channel.putLong(metrics.getLinkQueueNanos(link));
+                channel.putLong(metrics.getLinkQueueDrops(link));
+            }
+        }
+        channel.send();
+    }
+}
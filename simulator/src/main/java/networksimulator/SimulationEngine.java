@@ -0,0 +1,679 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Discrete-event core behind the packet simulations. Each hop is a sequence of timestamped
+ * events on a virtual clock, so modelled delays cost no wall time and drop decisions depend
+ * only on simulated time.
+ *
+ * A hop queues the packet on the link to its next hop. Each link transmits one packet at a
+ * time for its serialization time, then the packet propagates for the link's delay; packets
+ * arriving meanwhile wait in the link's output queue, an int ring buffer of packet ids, or are
+ * dropped by its drop-tail or RED discipline. Queue state belongs to the engine, so only
+ * packets simulated by the same engine compete for a link.
+ *
+ * Packets live in a PacketTable with recycled slots and events carry only slot numbers, so in
+ * steady state the forwarding loop allocates nothing per packet. Paths are only recorded for
+ * packets sent with recordPath.
+ *
+ * Simultaneous events are ordered by the serial of their packet and each link draws its random
+ * decisions from a stream of its own, so what happens on a link depends only on the events that
+ * reach it. That lets ParallelLoad split a run over several engines, one per partition of the
+ * devices, and still get exactly the result of a single engine: a packet crossing into another
+ * partition is handed over when it goes on the wire and picked up where it lands.
+ */
+class SimulationEngine implements LossModel.Draws {
+    // Event kinds
+    static final int PACKET_ARRIVAL = 0;
+    static final int TRANSMIT_COMPLETE = 1;
+    static final int PACKET_DROP = 2;
+    static final int SERIALIZED = 3; // Packet fully on the wire; its link can start the next one
+    static final int FLOW_SEND = 4; // Next packet of a paced flow; the event carries the flow index
+
+    // Packet outcomes
+    static final int IN_FLIGHT = 0;
+    static final int DELIVERED = 1;
+    static final int LOST = 2;
+    static final int DROPPED_DELAY = 3;
+    static final int NO_ROUTE = 4;
+    static final int UNKNOWN_DEVICE = 5;
+    static final int TTL_EXPIRED = 6;
+    static final int ROUTING_LOOP = 7;
+    static final int DROPPED_QUEUE = 8;
+    static final int OUTCOME_COUNT = 9;
+
+    // Transport fields of the 5-tuple packets are hashed on
+    private static final int UDP = 17;
+    private static final int FLOW_PORT = 5001;
+    private static final int FIRST_EPHEMERAL_PORT = 49152;
+    private static final int EPHEMERAL_PORTS = 16384;
+
+    private final NetworkSimulator simulator;
+    private final SimulatorMetrics metrics;
+    private long delayThreshold; // Nanoseconds, for DROP_ON_DELAY packets
+    private final int initialTtl;
+    private final ConsoleTraceSink console; // Human-readable hop log, null for quiet engines
+    private final int engineId;
+    private TraceSink trace = TraceSink.NONE;
+    private long packetSerial;
+    private final EventQueue events = new EventQueue();
+    private final PacketTable packets = new PacketTable(64);
+    private final long[] outcomeCounts = new long[OUTCOME_COUNT];
+    private long now; // Virtual clock in nanoseconds
+    private long seed; // Loss and RED drop decisions, see nextRandom
+    private int packetSize;
+
+    // Per-link transmitter and output queue state, indexed by link id
+    private boolean[] transmitting = new boolean[0];
+    private int[][] queues = new int[0][]; // Ring buffers of packet ids, allocated on first use
+    private int[] queueHead = new int[0];
+    private int[] queueLength = new int[0];
+    private double[] averageQueue = new double[0]; // RED's moving average of the queue length
+    private int[] sinceDrop = new int[0]; // Packets RED has admitted since it last dropped one
+    private long[] idleSince = new long[0];
+    private long[] randomDraws = new long[0];
+    private int[] lossState = new int[0]; // Each link's LossModel state
+    private int drawLink; // Link whose stream nextDouble draws from
+
+    // Paced flows of sendFlow, indexed by flow
+    private int flowCount;
+    private int[] flowId = new int[0]; // Caller's number for the flow, part of its packets' serials
+    private int[] flowSource = new int[0];
+    private int[] flowDestination = new int[0];
+    private long[] flowSent = new long[0];
+    private long[] flowRemaining = new long[0];
+    private long[] flowInterval = new long[0];
+
+    // Partitioned runs: packets for devices of other partitions are handed to the coordinator
+    private Handoff coordinator;
+    private int[] partitionOf;
+    private int partition;
+
+    SimulationEngine(NetworkSimulator simulator, int initialTtl, ConsoleTraceSink console) {
+        this.simulator = simulator;
+        this.metrics = simulator.getMetrics();
+        this.initialTtl = initialTtl;
+        this.console = console;
+        this.engineId = simulator.nextEngineId();
+        this.seed = simulator.getSeed() + engineId;
+    }
+
+    /** Restarts the random loss and drop decisions from a seed, so a run can be repeated exactly. */
+    void reseed(long seed) {
+        this.seed = seed;
+        Arrays.fill(randomDraws, 0);
+        Arrays.fill(lossState, 0);
+    }
+
+    /** Takes the packets a partitioned engine puts on links towards other partitions. */
+    interface Handoff {
+        // The packet's fields are read before the call returns; the slot is then released
+        void post(int from, int to, long arrival, PacketTable packets, int packet);
+    }
+
+    /**
+     * Makes this engine simulate one partition of a ParallelLoad or ShardCoordinator run: it
+     * only forwards packets at devices whose entry in partitionOf is partition, and posts
+     * packets leaving for other partitions to the coordinator.
+     */
+    void partition(Handoff coordinator, int[] partitionOf, int partition) {
+        this.coordinator = coordinator;
+        this.partitionOf = partitionOf;
+        this.partition = partition;
+        prepare();
+    }
+
+    /**
+     * Injects a packet at the source at the current simulated time and returns its slot.
+     * Packets are dropped when their link's queue rejects them, when they outlive the delay
+     * threshold, by their link's LossModel or, with randomLoss and no model, with its loss
+     * probability on every hop. The slot stays valid after the packet completes so its outcome and path can be read; hand it back
+     * with release once done.
+     */
+    int send(NetworkSimulator.NetworkDevice source, NetworkSimulator.NetworkDevice destination,
+             boolean recordPath, boolean dropOnDelay, boolean randomLoss) {
+        prepare();
+        int flags = PacketTable.RETAINED | (recordPath ? PacketTable.RECORD_PATH : 0)
+            | (dropOnDelay ? PacketTable.DROP_ON_DELAY : 0) | (randomLoss ? PacketTable.RANDOM_LOSS : 0);
+        return inject(source.getId(), destination.getId(), destination.getAddress(), flags);
+    }
+
+    /** Frees the slot of a packet returned by send once it has completed. */
+    void release(int packet) {
+        packets.release(packet);
+    }
+
+    /**
+     * Sends count packets from source to destination, one every intervalNanos of simulated
+     * time starting now, or all at once if the interval is zero. Packets are generated as the
+     * clock reaches them and are only dropped by full queues, so queueing delay shows up in
+     * their latency instead of the delay threshold. They release their slots as they complete
+     * and are only counted in getOutcomeCounts.
+     *
+     * Packet serials are made of id and the packet's position in the flow, so give every flow
+     * of a run a different id; runs split over several engines then still order simultaneous
+     * events the same way.
+     */
+    void sendFlow(NetworkSimulator.NetworkDevice source, NetworkSimulator.NetworkDevice destination, long count,
+                  long intervalNanos, int id) {
+        if (events.isEmpty()) {
+            flowCount = 0;
+        }
+        if (count == 0) {
+            return;
+        }
+        prepare();
+        if (flowCount == flowSource.length) {
+            int capacity = Math.max(16, 2 * flowCount);
+            flowId = Arrays.copyOf(flowId, capacity);
+            flowSource = Arrays.copyOf(flowSource, capacity);
+            flowDestination = Arrays.copyOf(flowDestination, capacity);
+            flowSent = Arrays.copyOf(flowSent, capacity);
+            flowRemaining = Arrays.copyOf(flowRemaining, capacity);
+            flowInterval = Arrays.copyOf(flowInterval, capacity);
+        }
+        flowId[flowCount] = id;
+        flowSource[flowCount] = source.getId();
+        flowDestination[flowCount] = destination.getId();
+        flowSent[flowCount] = 0;
+        flowRemaining[flowCount] = count;
+        flowInterval[flowCount] = intervalNanos;
+        events.schedule(now, FLOW_SEND, flowCount, flowSerial(flowCount));
+        flowCount++;
+    }
+
+    // Serial of the next packet of a flow, above those of packets sent on their own
+    private long flowSerial(int flow) {
+        return (flowId[flow] + 1L) << 40 | flowSent[flow];
+    }
+
+    // Picks up settings and link state sized for the current topology before packets are injected
+    private void prepare() {
+        trace = simulator.getTraceSink();
+        packetSize = simulator.getPacketSize();
+        delayThreshold = TimeUnit.MILLISECONDS.toNanos(simulator.getDelayThresholdMillis());
+        int links = simulator.getLinkCount();
+        if (transmitting.length < links) {
+            int capacity = Math.max(links, 2 * transmitting.length);
+            transmitting = Arrays.copyOf(transmitting, capacity);
+            queues = Arrays.copyOf(queues, capacity);
+            queueHead = Arrays.copyOf(queueHead, capacity);
+            queueLength = Arrays.copyOf(queueLength, capacity);
+            averageQueue = Arrays.copyOf(averageQueue, capacity);
+            sinceDrop = Arrays.copyOf(sinceDrop, capacity);
+            idleSince = Arrays.copyOf(idleSince, capacity);
+            randomDraws = Arrays.copyOf(randomDraws, capacity);
+            lossState = Arrays.copyOf(lossState, capacity);
+        }
+    }
+
+    private int inject(int source, int destination, int destinationAddress, int flags) {
+        long serial = packetSerial++;
+        return inject(source, destination, destinationAddress, flags, serial, (int) (serial % EPHEMERAL_PORTS));
+    }
+
+    // Packets are UDP to FLOW_PORT from an ephemeral port given by the flow, which is all that
+    // tells flows between the same devices apart when next-hop groups hash them
+    private int inject(int source, int destination, int destinationAddress, int flags, long serial, int port) {
+        int id = packets.allocate();
+        int sourceAddress = simulator.getDevice(source).getAddress();
+        packets.serial[id] = serial;
+        packets.flowHash[id] = NextHopGroup.flowHash(sourceAddress, destinationAddress, FIRST_EPHEMERAL_PORT + port,
+            FLOW_PORT, UDP);
+        packets.flags[id] = trace.samples(serial) ? flags | PacketTable.TRACED : flags;
+        packets.currentDevice[id] = source;
+        packets.destinationDevice[id] = destination;
+        packets.destinationAddress[id] = destinationAddress;
+        packets.sentAt[id] = now;
+        packets.ttl[id] = initialTtl;
+        packets.hops[id] = 0;
+        packets.loopMark[id] = -1;
+        packets.outcome[id] = IN_FLIGHT;
+
+        emit(id, TraceSink.SENT, source, destination);
+        metrics.recordSent(sourceAddress, destinationAddress);
+        events.schedule(now, PACKET_ARRIVAL, id, serial);
+        return id;
+    }
+
+    /**
+     * Takes over a packet another partition put on the wire towards one of this partition's
+     * devices; it lands there at the given simulated time. The fields are those a
+     * PacketMailbox copied out of the sending engine's PacketTable.
+     */
+    void receive(long time, long serial, int flags, int destinationDevice, int destinationAddress, long sentAt,
+                 int ttl, int hops, int loopMark, int nextHop, int flowHash) {
+        int id = packets.allocate();
+        packets.serial[id] = serial;
+        packets.flowHash[id] = flowHash;
+        packets.flags[id] = flags;
+        packets.currentDevice[id] = nextHop;
+        packets.destinationDevice[id] = destinationDevice;
+        packets.destinationAddress[id] = destinationAddress;
+        packets.sentAt[id] = sentAt;
+        packets.ttl[id] = ttl;
+        packets.hops[id] = hops;
+        packets.loopMark[id] = loopMark;
+        packets.nextHop[id] = nextHop;
+        packets.link[id] = -1;
+        packets.outcome[id] = IN_FLIGHT;
+        events.schedule(time, TRANSMIT_COMPLETE, id, serial);
+    }
+
+    // Simulated time of the earliest pending event, Long.MAX_VALUE if there is none
+    long nextEventTime() {
+        return events.isEmpty() ? Long.MAX_VALUE : events.peekTime();
+    }
+
+    /** Processes events until none are left, advancing the virtual clock as it goes. */
+    void run() {
+        run(Long.MAX_VALUE);
+    }
+
+    /**
+     * Processes the events due at or before the given simulated time and returns whether any
+     * are left, so a long run can be taken in slices and checkpointed between them.
+     */
+    boolean run(long until) {
+        while (!events.isEmpty() && events.peekTime() <= until) {
+            events.poll();
+            now = events.polledTime();
+            int id = events.polledPacket();
+            switch (events.polledKind()) {
+                case PACKET_ARRIVAL:
+                    arrive(id);
+                    break;
+                case TRANSMIT_COMPLETE:
+                    transmitComplete(id);
+                    break;
+                case PACKET_DROP:
+                    drop(id);
+                    break;
+                case SERIALIZED:
+                    serialized(id);
+                    break;
+                case FLOW_SEND:
+                    flowSend(id);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event kind " + events.polledKind());
+            }
+        }
+        metrics.recordSimulatedTime(now);
+        return !events.isEmpty();
+    }
+
+    // Clock, pending events, packets, link queues and flows, so a restored engine resumes the
+    // run exactly where it stopped
+    void write(SnapshotWriter out) throws IOException {
+        out.putLong(now);
+        out.putLong(packetSerial);
+        out.putLong(seed);
+        out.putLongs(outcomeCounts, OUTCOME_COUNT);
+        events.write(out);
+        packets.write(out);
+
+        int links = Math.min(transmitting.length, simulator.getLinkCount());
+        out.putInt(links);
+        for (int link = 0; link < links; link++) {
+            out.putBoolean(transmitting[link]);
+            out.putInt(queueLength[link]);
+            for (int i = 0; i < queueLength[link]; i++) {
+                out.putInt(queues[link][(queueHead[link] + i) % queues[link].length]);
+            }
+        }
+        out.putDoubles(averageQueue, links);
+        out.putInts(sinceDrop, links);
+        out.putLongs(idleSince, links);
+        out.putLongs(randomDraws, links);
+        out.putInts(lossState, links);
+
+        out.putInt(flowCount);
+        out.putInts(flowId, flowCount);
+        out.putInts(flowSource, flowCount);
+        out.putInts(flowDestination, flowCount);
+        out.putLongs(flowSent, flowCount);
+        out.putLongs(flowRemaining, flowCount);
+        out.putLongs(flowInterval, flowCount);
+    }
+
+    void read(SnapshotReader in) throws IOException {
+        now = in.getLong();
+        packetSerial = in.getLong();
+        seed = in.getLong();
+        in.getLongs(outcomeCounts, OUTCOME_COUNT);
+        events.read(in);
+        packets.read(in);
+
+        prepare();
+        int links = in.getCount(simulator.getLinkCount());
+        for (int link = 0; link < links; link++) {
+            transmitting[link] = in.getBoolean();
+            int length = in.getCount(Integer.MAX_VALUE / 2);
+            queues[link] = length == 0 ? null : new int[Math.max(length, simulator.getLink(link).getQueueCapacity())];
+            queueHead[link] = 0;
+            queueLength[link] = length;
+            if (length > 0) {
+                in.getInts(queues[link], length);
+            }
+        }
+        in.getDoubles(averageQueue, links);
+        in.getInts(sinceDrop, links);
+        in.getLongs(idleSince, links);
+        in.getLongs(randomDraws, links);
+        in.getInts(lossState, links);
+
+        flowCount = in.getCount(Integer.MAX_VALUE / 2);
+        if (flowCount > flowSource.length) {
+            flowId = new int[flowCount];
+            flowSource = new int[flowCount];
+            flowDestination = new int[flowCount];
+            flowSent = new long[flowCount];
+            flowRemaining = new long[flowCount];
+            flowInterval = new long[flowCount];
+        }
+        in.getInts(flowId, flowCount);
+        in.getInts(flowSource, flowCount);
+        in.getInts(flowDestination, flowCount);
+        in.getLongs(flowSent, flowCount);
+        in.getLongs(flowRemaining, flowCount);
+        in.getLongs(flowInterval, flowCount);
+    }
+
+    int getOutcome(int packet) {
+        return packets.outcome[packet];
+    }
+
+    // Names of the devices a packet sent with recordPath visited
+    List<String> getPath(int packet) {
+        int length = packets.pathLength[packet];
+        List<String> path = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            path.add(simulator.getDevice(packets.pathDevices[packet][i]).getName());
+        }
+        return path;
+    }
+
+    // Simulated nanoseconds after sending at which the packet reached each device of getPath
+    long[] getPathTimes(int packet) {
+        long[] times = packets.pathTimes[packet];
+        return times == null ? new long[0] : Arrays.copyOf(times, packets.pathLength[packet]);
+    }
+
+    // Packets completed by this engine so far, by outcome
+    long[] getOutcomeCounts() {
+        return outcomeCounts.clone();
+    }
+
+    // Packets sent and not yet released
+    int getPacketsHeld() {
+        return packets.size();
+    }
+
+    long getTime() {
+        return now;
+    }
+
+    // Moves the clock on to a time no pending event is due before, so packets sent next start
+    // there; LiveSimulation keeps the clock in step with the wall clock this way
+    void advance(long time) {
+        if (time > now && nextEventTime() >= time) {
+            now = time;
+            metrics.recordSimulatedTime(now);
+        }
+    }
+
+    private void arrive(int id) {
+        PacketTable p = packets;
+        int device = p.currentDevice[id];
+        NetworkSimulator.NetworkDevice current = simulator.getDevice(device);
+        if (p.has(id, PacketTable.RECORD_PATH)) {
+            p.recordHop(id, device, now - p.sentAt[id]);
+        }
+        if (device == p.destinationDevice[id]) {
+            emit(id, TraceSink.DELIVERED, device, -1);
+            metrics.recordDelivered(p.hops[id], now - p.sentAt[id]);
+            complete(id, DELIVERED);
+            return;
+        }
+
+        // Forwarding is destination-based and groups pick by the packet's own flow hash, so a
+        // packet back at a device it has visited will keep circling. Brent's method catches the
+        // revisit with one remembered device, the one reached at the last power-of-two hop count,
+        // within twice the hops into and around the loop, so that loops in networks larger than
+        // the TTL are not reported as TTL_EXPIRED. More hops than devices is a revisit, too.
+        int hops = p.hops[id];
+        if ((hops > 0 && device == p.loopMark[id]) || hops >= simulator.getDeviceCount()) {
+            emit(id, TraceSink.ROUTING_LOOP, device, -1);
+            metrics.recordDropped(device);
+            complete(id, ROUTING_LOOP);
+            return;
+        }
+        if ((hops & (hops - 1)) == 0) {
+            p.loopMark[id] = device;
+        }
+        if (p.ttl[id] == 0) {
+            emit(id, TraceSink.TTL_EXPIRED, device, -1);
+            metrics.recordDropped(device);
+            complete(id, TTL_EXPIRED);
+            return;
+        }
+
+        // Find the next-hop using longest prefix match
+        int route = current.findRoute(p.destinationAddress[id]);
+        if (route == PrefixTrie.NO_MATCH) {
+            emit(id, TraceSink.NO_ROUTE, device, -1);
+            metrics.recordNoRoute(device);
+            complete(id, NO_ROUTE);
+            return;
+        }
+        int nextHop = current.getNextHopId(route);
+        int link;
+        if (nextHop == NetworkSimulator.NEXT_HOP_GROUP) {
+            link = current.getGroupLinkId(route, p.flowHash[id]);
+            nextHop = link < 0 ? NetworkSimulator.UNKNOWN_DEVICE : simulator.getLink(link).getTarget();
+        } else {
+            link = current.getLinkId(route);
+        }
+        if (nextHop == NetworkSimulator.UNKNOWN_DEVICE) {
+            emit(id, TraceSink.UNKNOWN_DEVICE, device, p.destinationDevice[id]);
+            metrics.recordNoRoute(device);
+            complete(id, UNKNOWN_DEVICE);
+            return;
+        }
+
+        p.nextHop[id] = nextHop;
+        p.link[id] = link;
+        p.queuedAt[id] = now;
+        if (!transmitting[link]) {
+            if (simulator.getLink(link).getDiscipline() == QueueDiscipline.RED) {
+                updateAverage(link, simulator.getLink(link));
+            }
+            startTransmission(id, link);
+        } else if (admit(link)) {
+            enqueue(link, id);
+        } else {
+            emit(id, TraceSink.DROPPED_QUEUE, device, nextHop);
+            metrics.recordQueueDrop(device, link);
+            complete(id, DROPPED_QUEUE);
+        }
+    }
+
+    // Records the packet's outcome and frees its slot unless the sender still needs to read it
+    private void complete(int id, int outcome) {
+        packets.outcome[id] = outcome;
+        outcomeCounts[outcome]++;
+        if (!packets.has(id, PacketTable.RETAINED)) {
+            packets.release(id);
+        }
+    }
+
+    private void startTransmission(int id, int link) {
+        long serialization = simulator.getLink(link).serializationNanos(packetSize);
+        transmitting[link] = true;
+        emit(id, TraceSink.FORWARDED, packets.currentDevice[id], packets.nextHop[id]);
+        metrics.recordForwarded(packets.currentDevice[id], link, serialization, now - packets.queuedAt[id]);
+        events.schedule(now + serialization, SERIALIZED, id, packets.serial[id]);
+    }
+
+    // The packet is on the wire: it propagates to the next hop unless lost, and the link moves on
+    private void serialized(int id) {
+        int link = packets.link[id];
+        Link properties = simulator.getLink(link);
+        LossModel loss = properties.lossModel(packets.has(id, PacketTable.RANDOM_LOSS));
+        if (loss != null && lost(loss, link, id)) {
+            metrics.recordDropped(packets.currentDevice[id]);
+            packets.outcome[id] = LOST;
+            events.schedule(now, PACKET_DROP, id, packets.serial[id]);
+        } else if (partitionOf != null && partitionOf[packets.nextHop[id]] != partition) {
+            coordinator.post(partition, partitionOf[packets.nextHop[id]], now + properties.getPropagationDelayNanos(),
+                packets, id);
+            packets.release(id);
+        } else {
+            events.schedule(now + properties.getPropagationDelayNanos(), TRANSMIT_COMPLETE, id, packets.serial[id]);
+        }
+
+        if (queueLength[link] > 0) {
+            startTransmission(dequeue(link), link);
+        } else {
+            transmitting[link] = false;
+            idleSince[link] = now;
+        }
+    }
+
+    // Whether a packet arriving at a busy link may join its queue
+    private boolean admit(int link) {
+        Link properties = simulator.getLink(link);
+        int capacity = properties.getQueueCapacity();
+        if (properties.getDiscipline() != QueueDiscipline.RED) {
+            return queueLength[link] < capacity;
+        }
+        double average = updateAverage(link, properties);
+        if (queueLength[link] >= capacity || average >= Link.RED_MAX_THRESHOLD * capacity) {
+            sinceDrop[link] = 0;
+            return false;
+        }
+        double minimum = Link.RED_MIN_THRESHOLD * capacity;
+        if (average < minimum) {
+            sinceDrop[link] = 0;
+            return true;
+        }
+        // Spread drops out evenly: the probability rises with the packets admitted since the last one
+        double base = Link.RED_MAX_PROBABILITY * (average - minimum) / ((Link.RED_MAX_THRESHOLD - Link.RED_MIN_THRESHOLD) * capacity);
+        double probability = base / Math.max(1e-9, 1 - sinceDrop[link] * base);
+        if (sinceDrop[link] * base >= 1 || nextRandom(link) < probability) {
+            sinceDrop[link] = 0;
+            return false;
+        }
+        sinceDrop[link]++;
+        return true;
+    }
+
+    // Runs the link's loss model for the packet going on the wire and keeps the state it returns
+    private boolean lost(LossModel loss, int link, int id) {
+        drawLink = link;
+        int decision = loss.decide(lossState[link], now - packets.sentAt[id], this);
+        lossState[link] = decision & ~LossModel.LOST;
+        return (decision & LossModel.LOST) != 0;
+    }
+
+    @Override
+    public double nextDouble() {
+        return nextRandom(drawLink);
+    }
+
+    // Uniform draw in [0, 1) from the link's stream: SplitMix64 started at a point picked by the
+    // seed and the link id, advanced by one step per draw
+    private double nextRandom(int link) {
+        long z = mix(seed ^ mix(link + 1L)) + 0x9E3779B97F4A7C15L * ++randomDraws[link];
+        return (mix(z) >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Moves RED's exponentially weighted queue average towards the current length. While the
+    // link was idle the average decays as if empty packets had been sampled at line rate.
+    private double updateAverage(int link, Link properties) {
+        double average = averageQueue[link];
+        if (!transmitting[link]) {
+            long serialization = Math.max(1, properties.serializationNanos(packetSize));
+            average *= Math.pow(1 - Link.RED_WEIGHT, (double) (now - idleSince[link]) / serialization);
+        }
+        average += Link.RED_WEIGHT * (queueLength[link] - average);
+        averageQueue[link] = average;
+        return average;
+    }
+
+    private void enqueue(int link, int id) {
+        int capacity = simulator.getLink(link).getQueueCapacity();
+        int[] queue = queues[link];
+        if (queue == null || queue.length < capacity) {
+            int[] grown = new int[Math.max(capacity, 1)];
+            for (int i = 0; i < queueLength[link]; i++) {
+                grown[i] = queue[(queueHead[link] + i) % queue.length];
+            }
+            queues[link] = queue = grown;
+            queueHead[link] = 0;
+        }
+        queue[(queueHead[link] + queueLength[link]) % queue.length] = id;
+        queueLength[link]++;
+    }
+
+    private int dequeue(int link) {
+        int[] queue = queues[link];
+        int id = queue[queueHead[link]];
+        queueHead[link] = (queueHead[link] + 1) % queue.length;
+        queueLength[link]--;
+        return id;
+    }
+
+    private void flowSend(int flow) {
+        long serial = flowSerial(flow);
+        flowSent[flow]++;
+        inject(flowSource[flow], flowDestination[flow], simulator.getDevice(flowDestination[flow]).getAddress(), 0,
+            serial, flowId[flow] % EPHEMERAL_PORTS);
+        if (--flowRemaining[flow] > 0) {
+            events.schedule(now + flowInterval[flow], FLOW_SEND, flow, flowSerial(flow));
+        }
+    }
+
+    private void transmitComplete(int id) {
+        PacketTable p = packets;
+        int device = p.nextHop[id];
+        p.currentDevice[id] = device;
+        p.hops[id]++;
+        p.ttl[id]--;
+        if (p.has(id, PacketTable.DROP_ON_DELAY) && now - p.sentAt[id] > delayThreshold) {
+            metrics.recordDropped(device);
+            p.outcome[id] = DROPPED_DELAY;
+            events.schedule(now, PACKET_DROP, id, p.serial[id]);
+            return;
+        }
+        events.schedule(now, PACKET_ARRIVAL, id, p.serial[id]);
+    }
+
+    // Second half of a loss or delay drop, whose outcome is already set
+    private void drop(int id) {
+        int outcome = packets.outcome[id];
+        emit(id, outcome == DROPPED_DELAY ? TraceSink.DROPPED_DELAY : TraceSink.LOST, packets.currentDevice[id], -1);
+        complete(id, outcome);
+    }
+
+    private void emit(int id, int event, int device, int other) {
+        if (packets.has(id, PacketTable.TRACED)) {
+            trace.record(event, now, engineId, packets.serial[id], device, other);
+        }
+        if (console != null) {
+            console.record(event, device, other, packets.flowHash[id]);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-device and per-link counters plus hop-count and latency histograms, updated by the
+ * simulation engines on every hop, and a sketch of the heaviest source/destination pairs.
+ * Recording is lock-free and allocation-free. The counters grow whenever devices or links are
+ * added, even while engines run, without losing their updates; the histograms and sketch take
+ * the same memory however long a run goes.
+ */
+public class SimulatorMetrics implements SimulatorMetricsMBean {
+    private final NetworkSimulator simulator;
+    private volatile Counters deviceForwarded = new Counters(0);
+    private volatile Counters deviceDropped = new Counters(0);
+    private volatile Counters deviceNoRoute = new Counters(0);
+    private volatile Counters linkPackets = new Counters(0);
+    private volatile Counters linkBusyNanos = new Counters(0);
+    private volatile Counters linkQueueNanos = new Counters(0); // Time packets waited in the queue
+    private volatile Counters linkQueueDrops = new Counters(0);
+    private final Histogram hopCounts = new Histogram();
+    private final Histogram latencies = new Histogram(); // End-to-end, simulated nanoseconds
+    private final HeavyHitters talkers = new HeavyHitters(); // Packets sent, by HeavyHitters.pair of addresses
+    private final AtomicLong simulatedNanos = new AtomicLong(); // Longest simulated span seen by an engine
+
+    SimulatorMetrics(NetworkSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    // Makes room for counters of new devices and links; safe while engines are recording
+    synchronized void ensureCapacity(int devices, int links) {
+        if (deviceForwarded.length() < devices) {
+            int capacity = Math.max(devices, 2 * deviceForwarded.length());
+            deviceForwarded = deviceForwarded.grow(capacity);
+            deviceDropped = deviceDropped.grow(capacity);
+            deviceNoRoute = deviceNoRoute.grow(capacity);
+        }
+        if (linkPackets.length() < links) {
+            int capacity = Math.max(links, 2 * linkPackets.length());
+            linkPackets = linkPackets.grow(capacity);
+            linkBusyNanos = linkBusyNanos.grow(capacity);
+            linkQueueNanos = linkQueueNanos.grow(capacity);
+            linkQueueDrops = linkQueueDrops.grow(capacity);
+        }
+    }
+
+    void recordForwarded(int device, int link, long busyNanos, long queueNanos) {
+        deviceForwarded.increment(device);
+        linkPackets.increment(link);
+        linkBusyNanos.add(link, busyNanos);
+        if (queueNanos > 0) {
+            linkQueueNanos.add(link, queueNanos);
+        }
+    }
+
+    void recordQueueDrop(int device, int link) {
+        deviceDropped.increment(device);
+        linkQueueDrops.increment(link);
+    }
+
+    void recordDropped(int device) {
+        deviceDropped.increment(device);
+    }
+
+    void recordNoRoute(int device) {
+        deviceNoRoute.increment(device);
+    }
+
+    void recordSent(int sourceAddress, int destinationAddress) {
+        talkers.record(HeavyHitters.pair(sourceAddress, destinationAddress));
+    }
+
+    void recordDelivered(int hops, long latencyNanos) {
+        hopCounts.record(hops);
+        latencies.record(latencyNanos);
+    }
+
+    void recordSimulatedTime(long nanos) {
+        long current = simulatedNanos.get();
+        while (nanos > current && !simulatedNanos.compareAndSet(current, nanos)) {
+            current = simulatedNanos.get();
+        }
+    }
+
+    // The live sketch, which keeps changing while engines run
+    HeavyHitters getTalkers() {
+        return talkers;
+    }
+
+    public MetricsSnapshot snapshot() {
+        int devices = simulator.getDeviceCount();
+        String[] deviceNames = new String[devices];
+        for (int i = 0; i < devices; i++) {
+            deviceNames[i] = simulator.getDevice(i).getName();
+        }
+        int links = simulator.getLinkCount();
+        String[] linkNames = new String[links];
+        for (int i = 0; i < links; i++) {
+            linkNames[i] = simulator.getLinkName(i);
+        }
+        return new MetricsSnapshot(deviceNames, deviceForwarded.copy(devices), deviceDropped.copy(devices),
+            deviceNoRoute.copy(devices), linkNames, linkPackets.copy(links), linkBusyNanos.copy(links),
+            linkQueueNanos.copy(links), linkQueueDrops.copy(links), hopCounts.copy(), latencies.copy(), talkers.copy(),
+            simulatedNanos.get());
+    }
+
+    @Override
+    public long getPacketsForwarded() {
+        return deviceForwarded.sum();
+    }
+
+    @Override
+    public long getPacketsDropped() {
+        return deviceDropped.sum();
+    }
+
+    @Override
+    public long getPacketsWithoutRoute() {
+        return deviceNoRoute.sum();
+    }
+
+    @Override
+    public long getPacketsDelivered() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getPacketsDroppedByQueues() {
+        return linkQueueDrops.sum();
+    }
+
+    @Override
+    public int getDeviceCount() {
+        return simulator.getDeviceCount();
+    }
+
+    @Override
+    public int getLinkCount() {
+        return simulator.getLinkCount();
+    }
+
+    @Override
+    public double getMeanHopCount() {
+        return hopCounts.getMean();
+    }
+
+    @Override
+    public long getHopCountP99() {
+        return hopCounts.getPercentile(99);
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latencies.getPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latencies.getPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latencies.getMax() / 1e6;
+    }
+
+    @Override
+    public String getDeviceCounters(String device) {
+        NetworkSimulator.NetworkDevice networkDevice = simulator.getDevices().get(device);
+        if (networkDevice == null || networkDevice.getId() >= deviceForwarded.length()) {
+            return "forwarded=0 dropped=0 noRoute=0";
+        }
+        int id = networkDevice.getId();
+        return "forwarded=" + deviceForwarded.get(id) + " dropped=" + deviceDropped.get(id)
+            + " noRoute=" + deviceNoRoute.get(id);
+    }
+
+    @Override
+    public String[] getBusiestLinks(int limit) {
+        return snapshot().getBusiestLinks(limit).toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getTopTalkers(int limit) {
+        return simulator.getTopTalkers(limit).toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getBusiestDevices(int limit) {
+        return snapshot().getBusiestDevices(limit).toArray(new String[0]);
+    }
+
+    @Override
+    public synchronized void reset() {
+        deviceForwarded = new Counters(deviceForwarded.length());
+        deviceDropped = new Counters(deviceDropped.length());
+        deviceNoRoute = new Counters(deviceNoRoute.length());
+        linkPackets = new Counters(linkPackets.length());
+        linkBusyNanos = new Counters(linkBusyNanos.length());
+        linkQueueNanos = new Counters(linkQueueNanos.length());
+        linkQueueDrops = new Counters(linkQueueDrops.length());
+        hopCounts.reset();
+        latencies.reset();
+        talkers.reset();
+        simulatedNanos.set(0);
+    }
+
+    // Counters of the first devices devices and links links, then the histograms and the sketch
+    synchronized void write(SnapshotWriter out, int devices, int links) throws IOException {
+        ensureCapacity(devices, links);
+        for (Counters counters : new Counters[] {deviceForwarded, deviceDropped, deviceNoRoute}) {
+            out.putLongs(counters.copy(devices), devices);
+        }
+        for (Counters counters : new Counters[] {linkPackets, linkBusyNanos, linkQueueNanos, linkQueueDrops}) {
+            out.putLongs(counters.copy(links), links);
+        }
+        hopCounts.write(out);
+        latencies.write(out);
+        out.putLong(simulatedNanos.get());
+        talkers.write(out);
+    }
+
+    synchronized void read(SnapshotReader in, int devices, int links) throws IOException {
+        deviceForwarded = read(in, devices);
+        deviceDropped = read(in, devices);
+        deviceNoRoute = read(in, devices);
+        linkPackets = read(in, links);
+        linkBusyNanos = read(in, links);
+        linkQueueNanos = read(in, links);
+        linkQueueDrops = read(in, links);
+        hopCounts.read(in);
+        latencies.read(in);
+        simulatedNanos.set(in.getLong());
+        talkers.read(in);
+    }
+
+    // Read in bulk into a plain array, which is much faster than a volatile read per counter
+    private static Counters read(SnapshotReader in, int length) throws IOException {
+        long[] values = new long[length];
+        in.getLongs(values, length);
+        return Counters.of(values, length);
+    }
+}
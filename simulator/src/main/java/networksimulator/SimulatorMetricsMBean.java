@@ -0,0 +1,45 @@
+package networksimulator;
+
+/**
+ * JMX view of a simulator's forwarding counters and histograms.
+ */
+public interface SimulatorMetricsMBean {
+    long getPacketsForwarded();
+
+    long getPacketsDropped();
+
+    long getPacketsWithoutRoute();
+
+    long getPacketsDelivered();
+
+    // Packets dropped by full or RED output queues; also counted in getPacketsDropped
+    long getPacketsDroppedByQueues();
+
+    int getDeviceCount();
+
+    int getLinkCount();
+
+    double getMeanHopCount();
+
+    long getHopCountP99();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    // "forwarded=.. dropped=.. noRoute=.." for one device
+    String getDeviceCounters(String device);
+
+    // Links ordered by packets carried, busiest first
+    String[] getBusiestLinks(int limit);
+
+    // Devices ordered by packets forwarded, busiest first
+    String[] getBusiestDevices(int limit);
+
+    // Source/destination pairs ordered by the estimated packets sent between them, heaviest first
+    String[] getTopTalkers(int limit);
+
+    void reset();
+}
@@ -0,0 +1,147 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a snapshot written by SnapshotWriter. The file is memory-mapped a region at a time and
+ * primitive arrays are copied straight out of the mapping in bulk, so restoring costs little
+ * more than building the objects. A wrong magic number, another format version, a misplaced section
+ * tag or a truncated file is reported as an IOException.
+ */
+final class SnapshotReader implements AutoCloseable {
+    private static final long REGION_SIZE = 64L << 20; // Bytes mapped at a time
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    SnapshotReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        map(0);
+        if (size < 8 || region.getInt() != SnapshotWriter.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a simulator snapshot");
+        }
+        short version = region.getShort();
+        region.getShort();
+        if (version != SnapshotWriter.VERSION) {
+            channel.close();
+            throw new IOException("Snapshot version " + version + " is not supported; expected version "
+                + SnapshotWriter.VERSION);
+        }
+    }
+
+    void section(int tag) throws IOException {
+        int found = getInt();
+        if (found != tag) {
+            throw new IOException("Corrupt snapshot: expected section " + Integer.toHexString(tag) + " but found "
+                + Integer.toHexString(found));
+        }
+    }
+
+    boolean getBoolean() throws IOException {
+        return getByte() != 0;
+    }
+
+    int getByte() throws IOException {
+        ensure(1);
+        return region.get();
+    }
+
+    int getInt() throws IOException {
+        ensure(4);
+        return region.getInt();
+    }
+
+    long getLong() throws IOException {
+        ensure(8);
+        return region.getLong();
+    }
+
+    double getDouble() throws IOException {
+        ensure(8);
+        return region.getDouble();
+    }
+
+    String getString() throws IOException {
+        ensure(2);
+        int length = region.getShort() & 0xFFFF;
+        ensure(length);
+        byte[] bytes = new byte[length];
+        region.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Reads a count written as an int and checks it against a sane bound
+    int getCount(long limit) throws IOException {
+        int count = getInt();
+        if (count < 0 || count > limit) {
+            throw new IOException("Corrupt snapshot: count " + count + " out of range");
+        }
+        return count;
+    }
+
+    void getInts(int[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(4);
+            int count = Math.min(length - offset, region.remaining() / 4);
+            region.asIntBuffer().get(values, offset, count);
+            region.position(region.position() + 4 * count);
+            offset += count;
+        }
+    }
+
+    void getLongs(long[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(8);
+            int count = Math.min(length - offset, region.remaining() / 8);
+            region.asLongBuffer().get(values, offset, count);
+            region.position(region.position() + 8 * count);
+            offset += count;
+        }
+    }
+
+    void getDoubles(double[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(8);
+            int count = Math.min(length - offset, region.remaining() / 8);
+            region.asDoubleBuffer().get(values, offset, count);
+            region.position(region.position() + 8 * count);
+            offset += count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Remaps at the current position when the region holds fewer than bytes
+    private void ensure(int bytes) throws IOException {
+        if (region.remaining() >= bytes) {
+            return;
+        }
+        long position = regionStart + region.position();
+        if (position + bytes > size) {
+            throw new IOException("Corrupt snapshot: unexpected end of file");
+        }
+        map(position);
+    }
+
+    private void map(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regionStart = start;
+    }
+}
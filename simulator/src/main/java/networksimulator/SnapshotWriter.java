@@ -0,0 +1,139 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a simulator snapshot: a header {int magic, short version, short reserved} followed by
+ * sections that each start with an int tag, all little-endian. Values are staged in a direct
+ * buffer and handed to the file channel a megabyte at a time; primitive arrays are copied in
+ * bulk through views of that buffer. The classes that own the state write their own part, in
+ * the order NetworkSimulator.saveSnapshot calls them, and SnapshotReader reads it back.
+ */
+final class SnapshotWriter implements AutoCloseable {
+    static final int MAGIC = 0x4E534E50; // "NSNP"
+    static final short VERSION = 1; // Readers accept this version only
+    // Section tags, in file order
+    static final int SETTINGS = 1;
+    static final int DEVICES = 2;
+    static final int LINKS = 3;
+    static final int ROUTING = 4;
+    static final int LINK_STATE = 5;
+    static final int METRICS = 6;
+    static final int ENGINES = 7;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    SnapshotWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+    }
+
+    void section(int tag) throws IOException {
+        putInt(tag);
+    }
+
+    void putBoolean(boolean value) throws IOException {
+        putByte(value ? 1 : 0);
+    }
+
+    void putByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    // Unsigned short length and UTF-8 bytes, as in trace files
+    void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String of " + bytes.length + " bytes is too long for a snapshot: "
+                + value.substring(0, 40) + "...");
+        }
+        ensure(2 + bytes.length);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    // The first length values; the reader must know the length
+    void putInts(int[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(4);
+            int count = Math.min(length - offset, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + 4 * count);
+            offset += count;
+        }
+    }
+
+    void putLongs(long[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(8);
+            int count = Math.min(length - offset, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + 8 * count);
+            offset += count;
+        }
+    }
+
+    void putDoubles(double[] values, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            ensure(8);
+            int count = Math.min(length - offset, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + 8 * count);
+            offset += count;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+            if (buffer.remaining() < bytes) {
+                throw new IOException("Value of " + bytes + " bytes does not fit the snapshot buffer");
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,215 @@
+package networksimulator;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canvas for the network topology and the packets moving through it. Devices and routes change
+ * rarely, so they are drawn once into an off-screen image that is only rebuilt when the
+ * topology or panel size changes. Packets are composited on top by a Swing timer at a fixed
+ * frame rate, each one placed by interpolating its recorded hop times against an animation
+ * clock that runs in simulated time. Everything runs on the event dispatch thread.
+ */
+class TopologyCanvas extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final int FRAME_MILLIS = 33; // About 30 frames per second
+    private static final double PLAYBACK_SPEED = 0.2; // Simulated nanoseconds per wall-clock nanosecond
+    private static final int DEVICE_SIZE = 50;
+    private static final int PACKET_SIZE = 10;
+    private static final int LABEL_LIMIT = 2000; // Beyond this many devices, names are left out
+    private static final int ROUND_PACKET_LIMIT = 500; // Beyond this many packets, they are drawn as squares
+
+    private final Map<String, Point> deviceLocations;
+    private final List<? extends Line> routes;
+    private final Timer timer = new Timer(FRAME_MILLIS, e -> repaint());
+    private BufferedImage topologyLayer;
+    private boolean topologyChanged = true;
+
+    // In-flight packets as parallel arrays; finished packets are swapped out from the end
+    private int packetCount;
+    private int[][] pathX = new int[64][];
+    private int[][] pathY = new int[64][];
+    private long[][] hopTimes = new long[64][]; // Simulated arrival time at each path point, from 0
+    private long[] startTimes = new long[64]; // Animation time the packet left its source
+    private final long clockOrigin = System.nanoTime();
+
+    /** A drawable line between two device locations. */
+    interface Line {
+        Point from();
+
+        Point to();
+    }
+
+    TopologyCanvas(Map<String, Point> deviceLocations, List<? extends Line> routes) {
+        this.deviceLocations = deviceLocations;
+        this.routes = routes;
+        setBackground(Color.WHITE);
+        timer.setCoalesce(true);
+    }
+
+    /** Marks the cached topology layer stale after devices or routes were added. */
+    void topologyChanged() {
+        topologyChanged = true;
+        repaint();
+    }
+
+    /**
+     * Starts animating a packet along the given device locations, arriving at path point i at
+     * hopTimes[i] simulated nanoseconds after it is sent. Must be called on the EDT.
+     */
+    void animatePacket(List<Point> path, long[] times) {
+        if (path.size() < 2) {
+            return;
+        }
+        if (packetCount == startTimes.length) {
+            int capacity = packetCount * 2;
+            pathX = Arrays.copyOf(pathX, capacity);
+            pathY = Arrays.copyOf(pathY, capacity);
+            hopTimes = Arrays.copyOf(hopTimes, capacity);
+            startTimes = Arrays.copyOf(startTimes, capacity);
+        }
+        int[] xs = new int[path.size()];
+        int[] ys = new int[path.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = path.get(i).x + (DEVICE_SIZE - PACKET_SIZE) / 2;
+            ys[i] = path.get(i).y + (DEVICE_SIZE - PACKET_SIZE) / 2;
+        }
+        pathX[packetCount] = xs;
+        pathY[packetCount] = ys;
+        hopTimes[packetCount] = times;
+        startTimes[packetCount] = animationTime();
+        packetCount++;
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    int getPacketCount() {
+        return packetCount;
+    }
+
+    /** Drops every in-flight packet animation. */
+    void clearPackets() {
+        for (int i = 0; i < packetCount; i++) {
+            pathX[i] = pathY[i] = null;
+            hopTimes[i] = null;
+        }
+        packetCount = 0;
+        timer.stop();
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (topologyChanged || topologyLayer == null
+                || topologyLayer.getWidth() != getWidth() || topologyLayer.getHeight() != getHeight()) {
+            renderTopology();
+        }
+        if (topologyLayer != null) {
+            g.drawImage(topologyLayer, 0, 0, null);
+        }
+        drawPackets(g);
+    }
+
+    private long animationTime() {
+        return (long) ((System.nanoTime() - clockOrigin) * PLAYBACK_SPEED);
+    }
+
+    private void renderTopology() {
+        topologyChanged = false;
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            topologyLayer = null;
+            return;
+        }
+        if (topologyLayer == null || topologyLayer.getWidth() != getWidth() || topologyLayer.getHeight() != getHeight()) {
+            topologyLayer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g = topologyLayer.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+
+        // Draw routes
+        g.setColor(Color.GREEN);
+        for (Line route : routes) {
+            g.drawLine(route.from().x, route.from().y, route.to().x, route.to().y);
+        }
+
+        // Draw devices
+        boolean labels = deviceLocations.size() <= LABEL_LIMIT;
+        for (Map.Entry<String, Point> entry : deviceLocations.entrySet()) {
+            String deviceName = entry.getKey();
+            Point location = entry.getValue();
+            if (location.x > getWidth() || location.y > getHeight()) {
+                continue;
+            }
+            boolean isRouter = deviceName.toLowerCase().contains("router");
+
+            g.setColor(isRouter ? Color.BLUE : Color.BLACK);
+            if (isRouter) {
+                g.drawOval(location.x, location.y, DEVICE_SIZE, DEVICE_SIZE);
+            } else {
+                g.drawRect(location.x, location.y, DEVICE_SIZE, DEVICE_SIZE);
+            }
+
+            if (labels) {
+                g.setColor(Color.BLACK);
+                g.drawString(deviceName, location.x + 5, location.y - 5);
+            }
+        }
+        g.dispose();
+    }
+
+    private void drawPackets(Graphics g) {
+        if (packetCount == 0) {
+            return;
+        }
+        long now = animationTime();
+        g.setColor(Color.BLUE);
+        boolean round = packetCount <= ROUND_PACKET_LIMIT;
+        int i = 0;
+        while (i < packetCount) {
+            long elapsed = now - startTimes[i];
+            long[] times = hopTimes[i];
+            int last = times.length - 1;
+            if (elapsed >= times[last]) {
+                removePacket(i); // Swaps the last packet into slot i
+                continue;
+            }
+            int hop = 0;
+            while (hop < last - 1 && elapsed >= times[hop + 1]) {
+                hop++;
+            }
+            long span = times[hop + 1] - times[hop];
+            double fraction = span <= 0 ? 1 : Math.max(0, elapsed - times[hop]) / (double) span;
+            int[] xs = pathX[i];
+            int[] ys = pathY[i];
+            int x = xs[hop] + (int) ((xs[hop + 1] - xs[hop]) * fraction);
+            int y = ys[hop] + (int) ((ys[hop + 1] - ys[hop]) * fraction);
+            if (round) {
+                g.fillOval(x, y, PACKET_SIZE, PACKET_SIZE);
+            } else {
+                g.fillRect(x, y, PACKET_SIZE, PACKET_SIZE);
+            }
+            i++;
+        }
+        if (packetCount == 0) {
+            timer.stop();
+        }
+    }
+
+    private void removePacket(int i) {
+        int last = --packetCount;
+        pathX[i] = pathX[last];
+        pathY[i] = pathY[last];
+        hopTimes[i] = hopTimes[last];
+        startTimes[i] = startTimes[last];
+        pathX[last] = pathY[last] = null;
+        hopTimes[last] = null;
+    }
+}
@@ -0,0 +1,66 @@
+package networksimulator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes a simulator's devices, static routes and link-state adjacencies in the format
+ * TopologyLoader reads. Devices come first in id order, then each device's routes in the order
+ * they were added, then the adjacencies, so loading the file back reproduces the same device
+ * ids and routing tables. Routes installed by link-state routing are left out; the loader
+ * recomputes them from the adjacencies.
+ */
+public final class TopologyExporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private TopologyExporter() {
+    }
+
+    public static void export(NetworkSimulator simulator, Path file) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(
+                new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            int count = simulator.getDeviceCount();
+            out.write("# " + count + " devices\n");
+            for (int id = 0; id < count; id++) {
+                NetworkSimulator.NetworkDevice device = simulator.getDevice(id);
+                out.write("device ");
+                out.write(device.getName());
+                out.write(' ');
+                out.write(device.getIpAddress());
+                out.write(' ');
+                out.write(device.getSubnetMask());
+                out.write('\n');
+            }
+            for (int id = 0; id < count; id++) {
+                NetworkSimulator.NetworkDevice device = simulator.getDevice(id);
+                for (NetworkSimulator.RouteEntry route : device.getRoutingTable()) {
+                    if (route.isDynamic()) {
+                        continue;
+                    }
+                    out.write("route ");
+                    out.write(device.getName());
+                    out.write(' ');
+                    out.write(NetworkSimulator.formatAddress(route.getDestination()));
+                    out.write('/');
+                    out.write(Integer.toString(route.getPrefixLength()));
+                    out.write(' ');
+                    out.write(route.getNextHop());
+                    out.write('\n');
+                }
+            }
+            for (int[] adjacency : simulator.getAdjacencies()) {
+                out.write("link ");
+                out.write(simulator.getDevice(adjacency[0]).getName());
+                out.write(' ');
+                out.write(simulator.getDevice(adjacency[1]).getName());
+                out.write(' ');
+                out.write(Integer.toString(adjacency[2]));
+                out.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a topology file into a simulator. The file is memory-mapped a region at a time and
+ * parsed in place: addresses and prefix lengths are read straight from the mapped bytes, and
+ * only device names become Strings, with the last source and next-hop names reused while
+ * consecutive lines repeat them. Malformed lines are reported and skipped.
+ *
+ * Format, one entry per line; '#' starts a comment:
+ *   device &lt;name&gt; &lt;ip&gt; &lt;mask&gt;
+ *   route &lt;source&gt; &lt;destination[/prefix]&gt; &lt;next hop&gt;
+ *   link &lt;device&gt; &lt;device&gt; &lt;cost&gt;
+ * TopologyExporter writes the same format.
+ */
+public class TopologyLoader {
+    private static final long REGION_SIZE = 64L << 20; // Bytes mapped at a time
+    private static final int MAX_TOKENS = 5;
+    private static final int MAX_REPORTED_ERRORS = 20;
+    private static final byte[] DEVICE = "device".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROUTE = "route".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINK = "link".getBytes(StandardCharsets.US_ASCII);
+
+    private final NetworkSimulator simulator;
+    private final ByteView view = new ByteView();
+    private final int[] tokenStart = new int[MAX_TOKENS];
+    private final int[] tokenEnd = new int[MAX_TOKENS];
+    private NetworkSimulator.NetworkDevice lastSource;
+    private byte[] lastSourceName = new byte[0];
+    private String lastNextHop = "";
+    private byte[] lastNextHopName = new byte[0];
+    private long lineNumber;
+    private int devicesLoaded;
+    private long routesLoaded;
+    private long linksLoaded;
+    private long errors;
+
+    public TopologyLoader(NetworkSimulator simulator) {
+        this.simulator = simulator;
+    }
+
+    public void load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(REGION_SIZE, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int consumed = parseRegion(region, (int) length, last);
+                if (consumed == 0) {
+                    throw new IOException("Line " + (lineNumber + 1) + " is longer than " + REGION_SIZE + " bytes");
+                }
+                position += consumed;
+            }
+        }
+    }
+
+    public int getDevicesLoaded() {
+        return devicesLoaded;
+    }
+
+    public long getRoutesLoaded() {
+        return routesLoaded;
+    }
+
+    public long getLinksLoaded() {
+        return linksLoaded;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    // Parses the complete lines in the region; returns the bytes consumed
+    private int parseRegion(MappedByteBuffer region, int length, boolean last) {
+        view.buffer = region;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (region.get(i) == '\n') {
+                lineNumber++;
+                parseLine(lineStart, i);
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < length) {
+            lineNumber++;
+            parseLine(lineStart, length);
+            lineStart = length;
+        }
+        return lineStart;
+    }
+
+    private void parseLine(int start, int end) {
+        int tokens = 0;
+        int i = start;
+        while (i < end) {
+            byte b = view.buffer.get(i);
+            if (b == '#') {
+                break;
+            }
+            if (b == ' ' || b == '\t' || b == '\r') {
+                i++;
+                continue;
+            }
+            if (tokens == MAX_TOKENS) {
+                tokens++;
+                break;
+            }
+            tokenStart[tokens] = i;
+            while (i < end && !isSeparator(view.buffer.get(i))) {
+                i++;
+            }
+            tokenEnd[tokens++] = i;
+        }
+
+        if (tokens == 0) {
+            return;
+        }
+        if (tokens == 4 && tokenEquals(0, DEVICE)) {
+            parseDevice();
+        } else if (tokens == 4 && tokenEquals(0, ROUTE)) {
+            parseRoute();
+        } else if (tokens == 4 && tokenEquals(0, LINK)) {
+            parseLink();
+        } else {
+            error("expected 'device <name> <ip> <mask>', 'route <source> <destination> <next hop>' or 'link <device> <device> <cost>'");
+        }
+    }
+
+    private void parseDevice() {
+        long address = NetworkSimulator.parseAddress(view, tokenStart[2], tokenEnd[2]);
+        long mask = NetworkSimulator.parseAddress(view, tokenStart[3], tokenEnd[3]);
+        if (address < 0 || mask < 0) {
+            error("invalid IP address or subnet mask");
+            return;
+        }
+        NetworkSimulator.NetworkDevice device = simulator.addDevice(token(1), token(2), token(3), (int) address, (int) mask);
+        if (device == null) {
+            errors++;
+        } else {
+            devicesLoaded++;
+        }
+    }
+
+    private void parseRoute() {
+        int start = tokenStart[2];
+        int end = tokenEnd[2];
+        int slash = start;
+        while (slash < end && view.buffer.get(slash) != '/') {
+            slash++;
+        }
+        long destination = NetworkSimulator.parseAddress(view, start, slash);
+        int prefixLength = 32;
+        if (slash < end) {
+            try {
+                prefixLength = Integer.parseInt(view, slash + 1, end, 10);
+            } catch (NumberFormatException e) {
+                prefixLength = -1;
+            }
+        }
+        if (destination < 0 || prefixLength < 0 || prefixLength > 32) {
+            error("invalid destination IP address or prefix length");
+            return;
+        }
+
+        NetworkSimulator.NetworkDevice source = source();
+        if (source == null) {
+            error("source device " + token(1) + " not found");
+            return;
+        }
+        if (!simulator.addRoute(source, (int) destination, prefixLength, nextHop())) {
+            error("invalid next-hop group " + token(3));
+            return;
+        }
+        routesLoaded++;
+    }
+
+    private void parseLink() {
+        int cost;
+        try {
+            cost = Integer.parseInt(view, tokenStart[3], tokenEnd[3], 10);
+        } catch (NumberFormatException e) {
+            cost = -1;
+        }
+        if (cost <= 0) {
+            error("invalid link cost");
+            return;
+        }
+        NetworkSimulator.NetworkDevice a = source();
+        NetworkSimulator.NetworkDevice b = simulator.getDevices().get(token(2));
+        if (a == null || b == null || a == b) {
+            error("invalid devices for a link: " + token(1) + ", " + token(2));
+            return;
+        }
+        simulator.addAdjacency(a, b, cost);
+        linksLoaded++;
+    }
+
+    // Route files are usually grouped by source, so the previous lookup is reused when the name repeats
+    private NetworkSimulator.NetworkDevice source() {
+        if (lastSource == null || !tokenEquals(1, lastSourceName)) {
+            lastSourceName = tokenBytes(1);
+            lastSource = simulator.getDevices().get(new String(lastSourceName, StandardCharsets.UTF_8));
+        }
+        return lastSource;
+    }
+
+    private String nextHop() {
+        if (!tokenEquals(3, lastNextHopName)) {
+            lastNextHopName = tokenBytes(3);
+            lastNextHop = new String(lastNextHopName, StandardCharsets.UTF_8);
+        }
+        return lastNextHop;
+    }
+
+    private void error(String message) {
+        if (++errors <= MAX_REPORTED_ERRORS) {
+            System.out.println("Error: Line " + lineNumber + ": " + message + ".");
+        } else if (errors == MAX_REPORTED_ERRORS + 1) {
+            System.out.println("Error: Further malformed lines are counted but not reported.");
+        }
+    }
+
+    private boolean tokenEquals(int token, byte[] expected) {
+        int length = tokenEnd[token] - tokenStart[token];
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (view.buffer.get(tokenStart[token] + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] tokenBytes(int token) {
+        byte[] bytes = new byte[tokenEnd[token] - tokenStart[token]];
+        view.buffer.get(tokenStart[token], bytes);
+        return bytes;
+    }
+
+    private String token(int token) {
+        return new String(tokenBytes(token), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '#';
+    }
+
+    // Reads mapped bytes as Latin-1 characters so the number parsers can work on them in place
+    private static final class ByteView implements CharSequence {
+        MappedByteBuffer buffer;
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder text = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                text.append(charAt(i));
+            }
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
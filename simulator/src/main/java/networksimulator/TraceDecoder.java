@@ -0,0 +1,92 @@
+package networksimulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Prints a BinaryTrace file as text, one event per line.
+ * Usage: java -cp network-simulator.jar networksimulator.TraceDecoder trace.bin [maxRecords]
+ */
+public class TraceDecoder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java networksimulator.TraceDecoder <trace file> [max records]");
+            return;
+        }
+        long limit = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+        decode(Paths.get(args[0]), limit, System.out);
+    }
+
+    public static void decode(Path file, long limit, PrintStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryTrace.HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != BinaryTrace.MAGIC) {
+                throw new IOException("Not a simulator trace: " + file);
+            }
+            short version = header.getShort();
+            if (version != BinaryTrace.VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            int recordSize = header.getShort();
+            long recordCount = header.getLong();
+            long droppedRecords = header.getLong();
+
+            long namesStart = BinaryTrace.HEADER_SIZE + recordCount * recordSize;
+            String[] names = readNames(channel, namesStart);
+            out.println("# records=" + recordCount + " dropped=" + droppedRecords + " devices=" + names.length);
+
+            long shown = Math.min(limit, recordCount);
+            long position = BinaryTrace.HEADER_SIZE;
+            long end = BinaryTrace.HEADER_SIZE + shown * recordSize;
+            while (position < end) {
+                long length = Math.min(end - position, (Integer.MAX_VALUE / recordSize) * (long) recordSize);
+                MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                records.order(ByteOrder.LITTLE_ENDIAN);
+                while (records.hasRemaining()) {
+                    long time = records.getLong();
+                    long packet = records.getLong();
+                    int event = records.getInt();
+                    int engine = records.getInt();
+                    int device = records.getInt();
+                    int other = records.getInt();
+                    StringBuilder line = new StringBuilder();
+                    line.append(time).append(' ').append(engine).append(':').append(packet).append(' ')
+                        .append(event >= 0 && event < TraceSink.EVENT_NAMES.length ? TraceSink.EVENT_NAMES[event] : "EVENT" + event)
+                        .append(' ').append(name(names, device));
+                    if (other >= 0) {
+                        line.append(" -> ").append(name(names, other));
+                    }
+                    out.println(line);
+                }
+                position += length;
+            }
+        }
+    }
+
+    private static String[] readNames(FileChannel channel, long start) throws IOException {
+        if (channel.size() <= start) {
+            return new String[0];
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, channel.size() - start);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        String[] names = new String[buffer.getInt()];
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[buffer.getShort()];
+            buffer.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    private static String name(String[] names, int device) {
+        return device >= 0 && device < names.length ? names[device] : "#" + device;
+    }
+}
@@ -0,0 +1,10 @@
+package networksimulator;
+
+/**
+ * How much of the forwarding path a simulator records to its binary trace.
+ */
+public enum TraceMode {
+    OFF,
+    SAMPLED, // Every event of one packet in sampleEvery
+    FULL
+}
@@ -0,0 +1,42 @@
+package networksimulator;
+
+/**
+ * Receives forwarding events from the simulation engines. Events carry only primitives so
+ * that recording them costs no allocation on the forwarding path.
+ */
+public interface TraceSink {
+    int SENT = 0;
+    int FORWARDED = 1; // device handed the packet to other
+    int DELIVERED = 2;
+    int LOST = 3;
+    int DROPPED_DELAY = 4;
+    int NO_ROUTE = 5;
+    int UNKNOWN_DEVICE = 6; // device routes to a missing next hop; other is the destination
+    int TTL_EXPIRED = 7;
+    int ROUTING_LOOP = 8;
+    int DROPPED_QUEUE = 9; // device's output queue towards other was full
+
+    String[] EVENT_NAMES = {
+        "SENT", "FORWARDED", "DELIVERED", "LOST", "DROPPED_DELAY", "NO_ROUTE", "UNKNOWN_DEVICE", "TTL_EXPIRED",
+        "ROUTING_LOOP", "DROPPED_QUEUE"
+    };
+
+    TraceSink NONE = new TraceSink() {
+        @Override
+        public boolean samples(long packet) {
+            return false;
+        }
+
+        @Override
+        public void record(int event, long time, int engine, long packet, int device, int other) {
+        }
+    };
+
+    // Whether events of the given packet should be recorded at all
+    default boolean samples(long packet) {
+        return true;
+    }
+
+    // device and other are device ids; other is -1 where an event has no second device
+    void record(int event, long time, int engine, long packet, int device, int other);
+}
@@ -0,0 +1,45 @@
+package networksimulator;
+
+/**
+ * One entry of a traffic matrix: count packets sent from source to destination, optionally
+ * paced at packetsPerSecond for NetworkSimulator.simulateLoad.
+ */
+public class TrafficFlow {
+    private final String source;
+    private final String destination;
+    private final long count;
+    private final double packetsPerSecond; // 0 for unpaced
+
+    public TrafficFlow(String source, String destination, long count) {
+        this(source, destination, count, 0);
+    }
+
+    public TrafficFlow(String source, String destination, long count, double packetsPerSecond) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Packet count must not be negative: " + count);
+        }
+        if (!(packetsPerSecond >= 0)) {
+            throw new IllegalArgumentException("Packet rate must not be negative: " + packetsPerSecond);
+        }
+        this.source = source;
+        this.destination = destination;
+        this.count = count;
+        this.packetsPerSecond = packetsPerSecond;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getPacketsPerSecond() {
+        return packetsPerSecond;
+    }
+}
@@ -0,0 +1,56 @@
+package networksimulator;
+
+/**
+ * Aggregate delivery and loss statistics of a NetworkSimulator.simulateTraffic batch.
+ */
+public class TrafficResult {
+    private final long packetsSent;
+    private final long packetsDelivered;
+    private final long packetsLost;
+    private final long packetsUnroutable;
+    private final long elapsedNanos;
+
+    public TrafficResult(long packetsSent, long packetsDelivered, long packetsLost, long packetsUnroutable, long elapsedNanos) {
+        this.packetsSent = packetsSent;
+        this.packetsDelivered = packetsDelivered;
+        this.packetsLost = packetsLost;
+        this.packetsUnroutable = packetsUnroutable;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsDelivered() {
+        return packetsDelivered;
+    }
+
+    public long getPacketsLost() {
+        return packetsLost;
+    }
+
+    // Packets that hit a missing route, an unknown next-hop device, a routing loop or TTL expiry
+    public long getPacketsUnroutable() {
+        return packetsUnroutable;
+    }
+
+    // Wall-clock time the batch took
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getDeliveryRatio() {
+        return packetsSent == 0 ? 0 : (double) packetsDelivered / packetsSent;
+    }
+
+    public double getLossRatio() {
+        return packetsSent == 0 ? 0 : (double) packetsLost / packetsSent;
+    }
+
+    @Override
+    public String toString() {
+        return "sent=" + packetsSent + " delivered=" + packetsDelivered + " lost=" + packetsLost
+            + " unroutable=" + packetsUnroutable + " elapsedMs=" + elapsedNanos / 1_000_000;
+    }
+}
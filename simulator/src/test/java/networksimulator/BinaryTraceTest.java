@@ -0,0 +1,69 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryTraceTest {
+    @TempDir
+    Path directory;
+
+    private static List<String> decode(Path file, long limit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TraceDecoder.decode(file, limit, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    // The event name and devices of a decoded line, without the time and packet id
+    private static String event(String line) {
+        String[] fields = line.split(" ", 3);
+        return fields[2];
+    }
+
+    @Test
+    void fullTraceDecodesEveryHop() throws IOException {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        Path file = directory.resolve("trace.bin");
+        simulator.startTrace(file, TraceMode.FULL, 1);
+        simulator.simulatePacketPath("D0", "D3");
+        simulator.stopTrace();
+
+        List<String> lines = decode(file, Long.MAX_VALUE);
+        assertEquals("# records=5 dropped=0 devices=4", lines.get(0));
+        assertEquals(List.of("SENT D0 -> D3", "FORWARDED D0 -> D1", "FORWARDED D1 -> D2", "FORWARDED D2 -> D3",
+            "DELIVERED D3"), lines.subList(1, lines.size()).stream().map(BinaryTraceTest::event).toList());
+        assertTrue(lines.get(5).startsWith("300036000 "), lines::toString);
+
+        assertEquals(3, decode(file, 2).size());
+    }
+
+    @Test
+    void sampledTraceKeepsOnePacketInN() throws IOException {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        Path file = directory.resolve("sampled.bin");
+        simulator.startTrace(file, TraceMode.SAMPLED, 4);
+        simulator.simulateTraffic(List.of(new TrafficFlow("D0", "D3", 8, 100)));
+        simulator.stopTrace();
+
+        List<String> lines = decode(file, Long.MAX_VALUE);
+        assertEquals("# records=10 dropped=0 devices=4", lines.get(0));
+        assertEquals(2, lines.stream().filter(line -> line.endsWith("DELIVERED D3")).count());
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = directory.resolve("other.bin");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> decode(file, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,88 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class FibCompressorTest {
+    @Test
+    void siblingsMergeIntoParent() {
+        FibCompressor compressor = new FibCompressor();
+        compressor.compress(new int[] {0, 1 << 31}, new int[] {1, 1}, new int[] {7, 7}, 2);
+
+        assertEquals(1, compressor.size());
+        assertEquals(0, compressor.length(0));
+        assertEquals(7, compressor.nextHop(0));
+    }
+
+    @Test
+    void randomTablesForwardAlike() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int table = 0; table < 20; table++) {
+            PrefixTrie original = new PrefixTrie();
+            int[] prefixes = new int[200];
+            int[] lengths = new int[200];
+            int[] hops = new int[200];
+            int count = 0;
+            for (int i = 0; i < prefixes.length; i++) {
+                int length = 8 + random.nextInt(17);
+                int prefix = (0x0A000000 | random.nextInt(1 << 24)) & NetworkSimulator.prefixMask(length);
+                if (original.insert(prefix, length, count)) {
+                    prefixes[count] = prefix;
+                    lengths[count] = length;
+                    hops[count] = random.nextInt(4);
+                    count++;
+                }
+            }
+
+            FibCompressor compressor = new FibCompressor();
+            compressor.compress(prefixes, lengths, hops, count);
+            PrefixTrie compressed = new PrefixTrie();
+            for (int i = 0; i < compressor.size(); i++) {
+                compressed.insert(compressor.prefix(i), compressor.length(i), i);
+            }
+            assertTrue(compressor.size() <= count);
+
+            for (int i = 0; i < 10_000; i++) {
+                int address = 0x0A000000 | random.nextInt(1 << 24);
+                int before = original.lookup(address);
+                int after = compressed.lookup(address);
+                assertEquals(before == PrefixTrie.NO_MATCH ? NetworkSimulator.NO_ROUTE : hops[before],
+                    after == PrefixTrie.NO_MATCH ? NetworkSimulator.NO_ROUTE : compressor.nextHop(after),
+                    NetworkSimulator.formatAddress(address));
+            }
+        }
+    }
+
+    @Test
+    void compressedDevicesForwardAlike() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("R", "10.0.0.1", "255.255.255.0");
+        simulator.addDevice("A", "10.0.1.1", "255.255.255.0");
+        simulator.addDevice("B", "10.0.2.1", "255.255.255.0");
+        simulator.addStaticRoute("R", "0.0.0.0/0", "A");
+        simulator.addStaticRoute("R", "10.0.0.0/8", "A");
+        simulator.addStaticRoute("R", "10.1.0.0/16", "A");
+        simulator.addStaticRoute("R", "10.2.0.0/16", "B");
+        simulator.addStaticRoute("R", "10.2.128.0/17", "A");
+        simulator.addStaticRoute("R", "10.3.0.0/16", "B");
+        simulator.compileForwarding();
+        NetworkSimulator.NetworkDevice device = simulator.getDevices().get("R");
+        SplittableRandom random = new SplittableRandom(7);
+        int[] addresses = random.ints(10_000, 0x09000000, 0x0B000000).toArray();
+        int[] before = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            before[i] = device.findNextHopId(addresses[i]);
+        }
+
+        CompressionResult result = simulator.compressForwardingTables();
+
+        assertEquals(0, result.getUnverified());
+        assertTrue(result.getEntriesAfter() < result.getRoutesBefore());
+        for (int i = 0; i < addresses.length; i++) {
+            assertEquals(before[i], device.findNextHopId(addresses[i]));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HeavyHittersTest {
+    // Keys 1 to 5 heavy, with 1 the heaviest, among lightKeys light ones seen twice each
+    private static void record(HeavyHitters sketch, int firstLightKey, int lightKeys) {
+        for (int round = 0; round < 2; round++) {
+            for (int key = firstLightKey; key < firstLightKey + lightKeys; key++) {
+                sketch.record(key);
+            }
+        }
+        for (int key = 1; key <= 5; key++) {
+            for (int i = 0; i < 10_000 * (6 - key); i++) {
+                sketch.record(key);
+            }
+        }
+    }
+
+    @Test
+    void topKeysComeOutHeaviestFirst() {
+        HeavyHitters sketch = new HeavyHitters();
+        record(sketch, 1000, 100_000);
+
+        assertArrayEquals(new long[] {1, 2, 3, 4, 5}, sketch.top(5));
+        assertEquals(3, sketch.top(3).length);
+        long total = 200_000 + 150_000;
+        assertEquals(total, sketch.getTotal());
+        for (int key = 1; key <= 5; key++) {
+            long estimate = sketch.estimate(key);
+            long count = 10_000L * (6 - key);
+            assertTrue(estimate >= count && estimate - count <= total * 3 / 10_000, key + ": " + estimate);
+        }
+    }
+
+    @Test
+    void mergedSketchesCountBothParts() {
+        HeavyHitters first = new HeavyHitters();
+        record(first, 1000, 50_000);
+        HeavyHitters second = new HeavyHitters();
+        record(second, 51_000, 50_000);
+        second.record(6);
+
+        HeavyHitters merged = first.copy();
+        merged.add(second);
+
+        assertArrayEquals(new long[] {1, 2, 3, 4, 5}, merged.top(5));
+        assertEquals(first.getTotal() + second.getTotal(), merged.getTotal());
+        assertTrue(merged.estimate(1) >= 2 * 50_000);
+        assertEquals(first.estimate(1) + second.estimate(1), merged.estimate(1), 2 * merged.getTotal() * 3 / 10_000);
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        HeavyHitters sketch = new HeavyHitters();
+        record(sketch, 1000, 1000);
+        sketch.reset();
+
+        assertEquals(0, sketch.getTotal());
+        assertEquals(0, sketch.estimate(1));
+        assertEquals(0, sketch.top(5).length);
+    }
+
+    @Test
+    void simulatorNamesTheTopTalkers() {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        simulator.simulateLoad(List.of(new TrafficFlow("D0", "D3", 30), new TrafficFlow("D1", "D3", 20),
+            new TrafficFlow("D2", "D3", 10)));
+
+        assertEquals(List.of("D0->D3 packets=30", "D1->D3 packets=20"), simulator.getTopTalkers(2));
+    }
+}
@@ -0,0 +1,96 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class LinkStateRoutingTest {
+    private static final int ROUTERS = 40;
+
+    private static NetworkSimulator routers() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        for (int i = 0; i < ROUTERS; i++) {
+            simulator.addDevice("R" + i, "10.0." + i + ".1", "255.255.255.0");
+        }
+        return simulator;
+    }
+
+    // A fresh simulator with the adjacencies, routed by one full rebuild
+    private static NetworkSimulator rebuilt(Map<String, Integer> adjacencies) {
+        NetworkSimulator simulator = routers();
+        adjacencies.forEach((pair, cost) -> {
+            String[] ends = pair.split("-");
+            simulator.connect(ends[0], ends[1], cost);
+        });
+        simulator.enableLinkStateRouting();
+        return simulator;
+    }
+
+    private static String pair(int a, int b) {
+        return "R" + Math.min(a, b) + "-R" + Math.max(a, b);
+    }
+
+    // Distances must match exactly; with equal-cost paths the first hops may differ, so each
+    // one is checked to start a shortest path
+    private static void assertSameRouting(NetworkSimulator expected, NetworkSimulator actual, Map<String, Integer> adjacencies) {
+        LinkStateRouting want = expected.getLinkStateRouting();
+        LinkStateRouting got = actual.getLinkStateRouting();
+        for (int a = 0; a < ROUTERS; a++) {
+            for (int b = 0; b < ROUTERS; b++) {
+                String from = "R" + a;
+                String to = "R" + b;
+                int distance = want.getDistance(from, to);
+                assertEquals(distance, got.getDistance(from, to), from + " to " + to);
+
+                String nextHop = actual.getDevices().get(from).findNextHop("10.0." + b + ".1");
+                if (a == b || distance == LinkStateRouting.UNREACHABLE) {
+                    assertNull(nextHop, from + " to " + to);
+                } else {
+                    int first = Integer.parseInt(nextHop.substring(1));
+                    assertEquals(distance, adjacencies.get(pair(a, first)) + want.getDistance(nextHop, to), from + " to " + to);
+                }
+            }
+        }
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFullRebuild() {
+        Random random = new Random(7);
+        Map<String, Integer> adjacencies = new TreeMap<>();
+        NetworkSimulator simulator = routers();
+        for (int i = 1; i < ROUTERS; i++) {
+            int other = random.nextInt(i);
+            int cost = 1 + random.nextInt(10);
+            simulator.connect("R" + i, "R" + other, cost);
+            adjacencies.put(pair(i, other), cost);
+        }
+        simulator.enableLinkStateRouting();
+        assertSameRouting(rebuilt(adjacencies), simulator, adjacencies);
+
+        for (int step = 0; step < 60; step++) {
+            if (random.nextInt(3) == 0) {
+                String[] ends = adjacencies.keySet().toArray(new String[0])[random.nextInt(adjacencies.size())].split("-");
+                simulator.disconnect(ends[0], ends[1]);
+                adjacencies.remove(ends[0] + "-" + ends[1]);
+            } else {
+                // New adjacencies and cost changes both ways
+                int a = random.nextInt(ROUTERS);
+                int b = (a + 1 + random.nextInt(ROUTERS - 1)) % ROUTERS;
+                int cost = 1 + random.nextInt(10);
+                simulator.connect("R" + a, "R" + b, cost);
+                adjacencies.put(pair(a, b), cost);
+            }
+            if (step % 10 == 9) {
+                assertSameRouting(rebuilt(adjacencies), simulator, adjacencies);
+            }
+        }
+
+        simulator.disconnectDevice("R0");
+        adjacencies.keySet().removeIf(pair -> pair.startsWith("R0-"));
+        assertSameRouting(rebuilt(adjacencies), simulator, adjacencies);
+    }
+}
@@ -0,0 +1,51 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LiveSimulationTest {
+    // Ten thousand seconds of traffic at the wall clock's pace, far longer than any test waits
+    private static final TrafficFlow ENDLESS = new TrafficFlow("D0", "D3", 1_000_000, 100);
+
+    @Test
+    void cancelStopsTheRun() throws InterruptedException {
+        LiveSimulation live = SimulationEngineTest.chain(4).startLive(List.of(ENDLESS), 1, null);
+        assertFalse(live.await(200, TimeUnit.MILLISECONDS));
+        assertTrue(live.isRunning());
+
+        live.cancel();
+
+        assertFalse(live.isRunning());
+        assertFalse(live.addFlow(new TrafficFlow("D0", "D3", 1)));
+        long sent = live.getResult().getPacketsSent();
+        assertTrue(sent > 0 && sent < 1_000_000, () -> "sent " + sent);
+    }
+
+    @Test
+    void stopSimulationCancelsEveryRun() throws InterruptedException {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        LiveSimulation first = simulator.startLive(List.of(ENDLESS), 1, null);
+        LiveSimulation second = simulator.startLive(List.of(ENDLESS), 1, null);
+
+        simulator.stopSimulation();
+
+        assertTrue(first.await(1, TimeUnit.SECONDS));
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void runEndsOnceItsPacketsComplete() throws InterruptedException {
+        // A thousand simulated seconds per second: 50 packets 10 ms apart take well under a millisecond
+        LiveSimulation live = SimulationEngineTest.chain(4).startLive(List.of(new TrafficFlow("D0", "D3", 50, 100)), 1000, null);
+
+        assertTrue(live.await(10, TimeUnit.SECONDS));
+        assertEquals(50, live.getResult().getPacketsSent());
+        assertEquals(50, live.getResult().getPacketsDelivered());
+        assertFalse(live.addFlow(new TrafficFlow("D0", "D3", 1)));
+    }
+}
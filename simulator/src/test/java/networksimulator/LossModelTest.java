@@ -0,0 +1,65 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class LossModelTest {
+    private static int lost(LossModel model, int packets, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int state = 0;
+        int lost = 0;
+        for (int i = 0; i < packets; i++) {
+            state = model.decide(state, 0, random::nextDouble);
+            if ((state & LossModel.LOST) != 0) {
+                lost++;
+                state &= ~LossModel.LOST;
+            }
+        }
+        return lost;
+    }
+
+    @Test
+    void bernoulliLosesItsShare() {
+        assertEquals(0, lost(LossModel.bernoulli(0), 10_000, 1));
+        assertEquals(10_000, lost(LossModel.bernoulli(1), 10_000, 1));
+        assertEquals(0.2, lost(LossModel.bernoulli(0.2), 100_000, 1) / 100_000.0, 0.01);
+    }
+
+    @Test
+    void gilbertElliottLosesAtItsStationaryRate() {
+        // The chain spends goodToBad / (goodToBad + badToGood) = 1/5 of the time in the bad state
+        LossModel model = LossModel.gilbertElliott(0.05, 0.2, 0, 0.5);
+        assertEquals(0.1, lost(model, 200_000, 2) / 200_000.0, 0.01);
+    }
+
+    @Test
+    void delayThresholdLosesLatePackets() {
+        LossModel model = LossModel.delayThreshold(5);
+        assertEquals(0, model.decide(0, 5_000_000, () -> 0.5));
+        assertEquals(LossModel.LOST, model.decide(0, 5_000_001, () -> 0.5));
+    }
+
+    @Test
+    void invalidProbabilitiesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LossModel.bernoulli(1.5));
+        assertThrows(IllegalArgumentException.class, () -> LossModel.gilbertElliott(0.1, -0.1, 0, 1));
+    }
+
+    @Test
+    void lossyLinkDropsItsPackets() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("A", "10.0.0.1", "255.255.255.0");
+        simulator.addDevice("B", "10.0.1.1", "255.255.255.0");
+        simulator.addStaticRoute("A", "10.0.1.0/24", "B");
+        simulator.setLossModel("A", "B", LossModel.bernoulli(1));
+
+        TrafficResult result = simulator.simulateLoad(List.of(new TrafficFlow("A", "B", 100, 1000)));
+
+        assertEquals(100, result.getPacketsLost());
+        assertEquals(0, result.getPacketsDelivered());
+    }
+}
@@ -0,0 +1,155 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NextHopGroupTest {
+    @TempDir
+    Path directory;
+
+    // S splits traffic for D's subnet over the next hops, which route it on to D
+    private static NetworkSimulator diamond(String nextHops) {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("S", "10.0.0.1", "255.255.255.0");
+        simulator.addDevice("A", "10.0.1.1", "255.255.255.0");
+        simulator.addDevice("B", "10.0.2.1", "255.255.255.0");
+        simulator.addDevice("D", "10.0.3.1", "255.255.255.0");
+        assertTrue(simulator.addStaticRoute("S", "10.0.3.0/24", nextHops));
+        simulator.addStaticRoute("A", "10.0.3.0/24", "D");
+        simulator.addStaticRoute("B", "10.0.3.0/24", "D");
+        return simulator;
+    }
+
+    @Test
+    void parseSortsMembers() {
+        NextHopGroup group = NextHopGroup.parse("R2*3,R1");
+
+        assertNotNull(group);
+        assertEquals("R1,R2*3", group.toString());
+        assertEquals(group, NextHopGroup.of(new String[] {"R1", "R2"}, new int[] {1, 3}));
+    }
+
+    @Test
+    void invalidGroupsAreRejected() {
+        assertNull(NextHopGroup.parse("R1,R1"));
+        assertNull(NextHopGroup.parse("R1,R2*0"));
+        assertNull(NextHopGroup.parse("R1,"));
+        assertNull(NextHopGroup.parse("R1*x"));
+    }
+
+    @Test
+    void flowsSpreadByWeight() {
+        NextHopGroup group = NextHopGroup.parse("R1,R2*3");
+        int[] chosen = new int[group.size()];
+        int flows = 40_000;
+        for (int port = 0; port < flows; port++) {
+            int hash = NextHopGroup.flowHash(0x0A000001, 0x0A000002, 49152 + port, 5001, 17);
+            int member = group.select(hash, 5);
+            assertEquals(member, group.select(hash, 5));
+            chosen[member]++;
+        }
+
+        assertEquals(0.25, chosen[0] / (double) flows, 0.02);
+        assertEquals(0.75, chosen[1] / (double) flows, 0.02);
+    }
+
+    @Test
+    void routeSpreadsFlowsOverMembers() {
+        NetworkSimulator simulator = diamond("A,B");
+
+        List<TrafficFlow> flows = new ArrayList<>();
+        for (int flow = 0; flow < 64; flow++) {
+            flows.add(new TrafficFlow("S", "D", 10, 1000));
+        }
+        TrafficResult result = simulator.simulateLoad(flows);
+
+        assertEquals(640, result.getPacketsDelivered());
+        Map<String, Long> loads = simulator.getLinkLoads("S");
+        assertEquals(640, loads.get("A") + loads.get("B"));
+        assertTrue(loads.get("A") > 0 && loads.get("B") > 0);
+        assertEquals(0, loads.get("A") % 10, "packets of one flow take one path");
+    }
+
+    @Test
+    void ecmpRouteMatchesTheGroupText() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("S", "10.0.0.1", "255.255.255.0");
+        assertTrue(simulator.addEcmpRoute("S", "10.0.3.0/24", new String[] {"B", "A"}, new int[] {3, 1}));
+
+        assertEquals("A,B*3", simulator.getDevices().get("S").getRoutingTable().get(0).getNextHop());
+    }
+
+    @Test
+    void nextHopIsTheMemberOfTheFlow() {
+        NetworkSimulator simulator = diamond("A,B");
+        NetworkSimulator.NetworkDevice source = simulator.getDevices().get("S");
+        NextHopGroup group = source.getRoutingTable().get(0).getNextHopGroup();
+        int destination = simulator.getDevices().get("D").getAddress();
+
+        Set<String> chosen = new HashSet<>();
+        for (int port = 0; port < 64; port++) {
+            int hash = NextHopGroup.flowHash(source.getAddress(), destination, 49152 + port, 5001, 17);
+            String member = group.getMember(group.select(hash, source.getId()));
+            assertEquals(member, source.findNextHop(destination, hash));
+            chosen.add(member);
+        }
+        assertEquals(Set.of("A", "B"), chosen);
+
+        // Halves of the subnet through the same group fold into the one entry
+        simulator.addStaticRoute("S", "10.0.3.0/25", "B,A");
+        simulator.addStaticRoute("S", "10.0.3.128/25", "A,B");
+        simulator.compressForwardingTables();
+        assertEquals(1, source.getForwardingTableSize());
+        for (int port = 0; port < 64; port++) {
+            int hash = NextHopGroup.flowHash(source.getAddress(), destination, 49152 + port, 5001, 17);
+            assertEquals(group.getMember(group.select(hash, source.getId())), source.findNextHop(destination, hash));
+        }
+    }
+
+    @Test
+    void missingMemberIsNamedByItself() {
+        NetworkSimulator simulator = diamond("A,X");
+        List<String> log = new ArrayList<>();
+        simulator.setEventLog(log::add);
+
+        for (int packet = 0; packet < 32; packet++) {
+            simulator.simulatePacketPath("S", "D");
+        }
+
+        List<String> errors = log.stream().filter(line -> line.startsWith("Error:")).toList();
+        assertTrue(!errors.isEmpty() && errors.size() < 32, log::toString);
+        assertEquals(Set.of("Error: Device X not found."), new HashSet<>(errors));
+    }
+
+    @Test
+    void loaderReportsInvalidGroups() throws IOException {
+        Path file = directory.resolve("groups.txt");
+        Files.write(file, List.of(
+            "device S 10.0.0.1 255.255.255.0",
+            "device A 10.0.1.1 255.255.255.0",
+            "route S 10.0.3.0/24 A,A",
+            "route S 10.0.4.0/24 A,B*0",
+            "route S 10.0.5.0/24 A,B*2"));
+
+        NetworkSimulator simulator = new NetworkSimulator();
+        TopologyLoader loader = new TopologyLoader(simulator);
+        loader.load(file);
+
+        assertEquals(1, loader.getRoutesLoaded());
+        assertEquals(2, loader.getErrors());
+        assertEquals(1, simulator.getDevices().get("S").getRoutingTable().size());
+    }
+}
@@ -0,0 +1,30 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+// Partitioned runs on threads must match a run on one thread
+class ParallelLoadTest {
+    @Test
+    void partitionedLoadMatchesSingleThread() {
+        NetworkSimulator single = SnapshotTest.ring(12);
+        TrafficResult expected = single.simulateLoad(SnapshotTest.flows(12));
+        MetricsSnapshot expectedMetrics = single.getMetricsSnapshot();
+
+        for (int partitions : new int[] {2, 3, 5}) {
+            NetworkSimulator parallel = SnapshotTest.ring(12);
+            TrafficResult result = parallel.simulateLoad(SnapshotTest.flows(12), partitions);
+            MetricsSnapshot metrics = parallel.getMetricsSnapshot();
+
+            assertEquals(expected.getPacketsDelivered(), result.getPacketsDelivered());
+            assertEquals(expected.getPacketsLost(), result.getPacketsLost());
+            assertEquals(expectedMetrics.getSimulatedNanos(), metrics.getSimulatedNanos());
+            assertEquals(expectedMetrics.getLatencies().getMax(), metrics.getLatencies().getMax());
+            for (int link = 0; link < expectedMetrics.getLinkCount(); link++) {
+                assertEquals(expectedMetrics.getLinkPackets(link), metrics.getLinkPackets(link));
+                assertEquals(expectedMetrics.getLinkQueueDrops(link), metrics.getLinkQueueDrops(link));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PrefixTrieTest {
+    private static int address(String ip) {
+        return (int) NetworkSimulator.parseAddress(ip, 0, ip.length());
+    }
+
+    @Test
+    void longestPrefixWins() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert(0, 0, 0);
+        trie.insert(address("10.0.0.0"), 8, 1);
+        trie.insert(address("10.1.0.0"), 16, 2);
+        trie.insert(address("10.1.2.3"), 32, 3);
+
+        assertEquals(0, trie.lookup(address("192.168.0.1")));
+        assertEquals(1, trie.lookup(address("10.200.0.1")));
+        assertEquals(2, trie.lookup(address("10.1.2.4")));
+        assertEquals(3, trie.lookup(address("10.1.2.3")));
+    }
+
+    @Test
+    void missWithoutDefaultRoute() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert(address("10.0.0.0"), 8, 1);
+        assertEquals(PrefixTrie.NO_MATCH, trie.lookup(address("11.0.0.1")));
+    }
+
+    @Test
+    void firstInsertKeepsPrefix() {
+        PrefixTrie trie = new PrefixTrie();
+        assertTrue(trie.insert(address("10.0.0.0"), 8, 1));
+        assertFalse(trie.insert(address("10.0.0.0"), 8, 2));
+        assertEquals(1, trie.get(address("10.0.0.0"), 8));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void replaceAndRemove() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert(address("10.0.0.0"), 8, 1);
+        trie.insert(address("10.1.0.0"), 16, 2);
+
+        assertTrue(trie.replace(address("10.1.0.0"), 16, 5));
+        assertEquals(5, trie.lookup(address("10.1.0.1")));
+        assertFalse(trie.replace(address("10.2.0.0"), 16, 6));
+
+        assertTrue(trie.remove(address("10.1.0.0"), 16));
+        assertFalse(trie.remove(address("10.1.0.0"), 16));
+        assertEquals(1, trie.lookup(address("10.1.0.1")));
+        assertEquals(PrefixTrie.NO_MATCH, trie.get(address("10.1.0.0"), 16));
+    }
+}
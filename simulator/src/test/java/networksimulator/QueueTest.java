@@ -0,0 +1,60 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QueueTest {
+    // A 1 Mbit/s link from A to B with room for 20 waiting packets, about 83 packets per second
+    private static NetworkSimulator pair(QueueDiscipline discipline) {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("A", "10.0.0.1", "255.255.255.0");
+        simulator.addDevice("B", "10.0.1.1", "255.255.255.0");
+        simulator.addStaticRoute("A", "10.0.1.0/24", "B");
+        simulator.configureLink("A", "B", 1_000_000, 1, 20, discipline);
+        simulator.setSeed(3);
+        return simulator;
+    }
+
+    @Test
+    void trafficBelowTheBandwidthIsNotQueued() {
+        for (QueueDiscipline discipline : QueueDiscipline.values()) {
+            NetworkSimulator simulator = pair(discipline);
+            TrafficResult result = simulator.simulateLoad(List.of(new TrafficFlow("A", "B", 200, 50)));
+
+            assertEquals(200, result.getPacketsDelivered(), discipline::name);
+            assertEquals(0, simulator.getMetricsSnapshot().getLinkMeanQueueDelayMillis(0), discipline::name);
+        }
+    }
+
+    @Test
+    void dropTailDropsOnlyWhenFull() {
+        NetworkSimulator simulator = pair(QueueDiscipline.DROP_TAIL);
+        TrafficResult result = simulator.simulateLoad(List.of(new TrafficFlow("A", "B", 100)));
+
+        // One packet on the wire and 20 waiting
+        assertEquals(21, result.getPacketsDelivered());
+        assertEquals(79, result.getPacketsLost());
+        assertEquals(79, simulator.getMetricsSnapshot().getLinkQueueDrops(0));
+    }
+
+    @Test
+    void redKeepsTheQueueShorterUnderOverload() {
+        List<TrafficFlow> overload = List.of(new TrafficFlow("A", "B", 2000, 200));
+        NetworkSimulator dropTail = pair(QueueDiscipline.DROP_TAIL);
+        dropTail.simulateLoad(overload);
+        NetworkSimulator red = pair(QueueDiscipline.RED);
+        TrafficResult result = red.simulateLoad(overload);
+
+        MetricsSnapshot snapshot = red.getMetricsSnapshot();
+        assertEquals(result.getPacketsLost(), snapshot.getLinkQueueDrops(0));
+        assertTrue(snapshot.getLinkMeanQueueDelayMillis(0) < dropTail.getMetricsSnapshot().getLinkMeanQueueDelayMillis(0),
+            "RED drops early, before the queue fills");
+
+        // The early drops are random, but drawn from the seed
+        TrafficResult again = pair(QueueDiscipline.RED).simulateLoad(overload);
+        assertEquals(result.getPacketsLost(), again.getPacketsLost());
+    }
+}
@@ -0,0 +1,76 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScenarioRunnerTest {
+    private static final List<String> NETWORK = List.of(
+        "device A 10.0.0.1 255.255.255.0",
+        "device B 10.0.1.1 255.255.255.0",
+        "link A B 1",
+        "flow A B 100 50",
+        "seed 5");
+
+    @TempDir
+    Path directory;
+
+    private final ByteArrayOutputStream results = new ByteArrayOutputStream();
+
+    private Path scenario(List<String> lines) throws IOException {
+        Path file = directory.resolve("scenario.txt");
+        Files.write(file, lines);
+        return file;
+    }
+
+    private int run(String... args) {
+        return ScenarioRunner.run(args, new PrintStream(results, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void validScenarioExitsWithZero() throws IOException {
+        String file = scenario(NETWORK).toString();
+
+        assertEquals(0, run(file, "--format", "json"));
+        String json = results.toString(StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"seed\": 5,"), json);
+        assertTrue(json.contains("\"flows\": 1,"), json);
+
+        results.reset();
+        assertEquals(0, run(file, "--format", "csv", "--seed", "6"));
+        assertEquals(2, results.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void scenarioErrorsExitWithOne() throws IOException {
+        assertEquals(1, run(directory.resolve("missing.txt").toString()));
+        assertEquals(1, run(scenario(List.of("device A 10.0.0.1 255.255.255.0", "device A 10.0.0.2 255.255.255.0",
+            "flow A A 1 1")).toString()));
+        assertEquals(1, run(scenario(List.of("device A 10.0.0.1 255.255.255.0", "route B 10.0.0.0/8 A",
+            "flow A A 1 1")).toString()));
+        assertEquals(1, run(scenario(List.of("device A 10.0.0.1 255.255.255.0", "teleport A")).toString()));
+        assertEquals(0, results.size());
+    }
+
+    @Test
+    void badArgumentsExitWithTwo() throws IOException {
+        String file = scenario(NETWORK).toString();
+
+        assertEquals(2, run());
+        assertEquals(2, run(file, "--format", "xml"));
+        assertEquals(2, run(file, "--seed"));
+        assertEquals(2, run(file, "--partitions", "-1"));
+        assertEquals(2, run(file, "--verbose"));
+        assertEquals(2, run(file, file));
+        assertEquals(0, results.size());
+    }
+}
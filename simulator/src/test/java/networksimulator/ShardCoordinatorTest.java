@@ -0,0 +1,104 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Sharded runs over sockets must match a run in one process
+class ShardCoordinatorTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void shardedRunMatchesScenarioRunner() throws Exception {
+        Path scenario = directory.resolve("ring.txt");
+        List<String> lines = new ArrayList<>();
+        lines.add("linkdefaults 10000000 2 16 drop-tail");
+        for (int i = 0; i < 12; i++) {
+            lines.add("device R" + i + " 10.0." + i + ".1 255.255.255.0");
+        }
+        for (int i = 0; i < 12; i++) {
+            lines.add("link R" + i + " R" + (i + 1) % 12 + " 1");
+        }
+        lines.add("loss R0 R1 bernoulli 0.1");
+        for (int i = 0; i < 12; i++) {
+            lines.add("flow R" + i + " R" + (i + 6) % 12 + " 100 200");
+        }
+        lines.add("seed 11");
+        Files.write(scenario, lines, StandardCharsets.UTF_8);
+
+        ScenarioRunner runner = new ScenarioRunner(scenario);
+        assertTrue(runner.load(null, -1), () -> String.join("\n", runner.getErrors()));
+        runner.run();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        runner.writeJson(new PrintStream(expected, true, StandardCharsets.UTF_8));
+
+        for (int shards : new int[] {2, 3}) {
+            assertEquals(withoutWallTime(expected), withoutWallTime(runSharded(scenario, shards, 4)));
+        }
+    }
+
+    private static ByteArrayOutputStream runSharded(Path scenario, int shards, int block) throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(scenario, shards, block, null, -1);
+        List<Thread> workers = new ArrayList<>();
+        int[] statuses = new int[shards];
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            String address = "localhost:" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+            for (int shard = 0; shard < shards; shard++) {
+                int index = shard;
+                Thread worker = new Thread(() -> statuses[index] = ShardWorker.run(new String[] {"--coordinator", address}));
+                worker.start();
+                workers.add(worker);
+            }
+            coordinator.accept(server);
+            ScenarioRunner.Report report = coordinator.run();
+            assertNotNull(report);
+            report.writeJson(new PrintStream(json, true, StandardCharsets.UTF_8));
+        } finally {
+            coordinator.close();
+            for (Thread worker : workers) {
+                worker.join(10_000);
+            }
+        }
+        assertArrayEquals(new int[shards], statuses);
+        return json;
+    }
+
+    @Test
+    void workerReportsFailuresInItsStatus() throws Exception {
+        assertEquals(2, ShardWorker.run(new String[0]));
+        assertEquals(2, ShardWorker.run(new String[] {"--coordinator", "localhost:port"}));
+
+        String address;
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            address = "localhost:" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+        }
+        assertEquals(1, ShardWorker.run(new String[] {"--coordinator", address}));
+    }
+
+    private static String withoutWallTime(ByteArrayOutputStream json) {
+        StringBuilder text = new StringBuilder();
+        for (String line : json.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.contains("\"wallSeconds\"")) {
+                text.append(line).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SimulationEngineTest {
+    // Devices D0 to D(length - 1), each routing the last one's subnet to the next
+    static NetworkSimulator chain(int length) {
+        NetworkSimulator simulator = new NetworkSimulator();
+        for (int i = 0; i < length; i++) {
+            simulator.addDevice("D" + i, "10." + i / 256 + "." + i % 256 + ".1", "255.255.255.0");
+        }
+        String last = "10." + (length - 1) / 256 + "." + (length - 1) % 256 + ".0/24";
+        for (int i = 0; i < length - 1; i++) {
+            simulator.addStaticRoute("D" + i, last, "D" + (i + 1));
+        }
+        return simulator;
+    }
+
+    @Test
+    void hopsAdvanceTheVirtualClock() {
+        NetworkSimulator simulator = chain(4);
+        List<Long> times = new ArrayList<>();
+
+        assertEquals(List.of("D0", "D1", "D2", "D3"), simulator.simulatePacketPath("D0", "D3", times));
+        assertEquals(0, times.get(0));
+        for (int hop = 1; hop < times.size(); hop++) {
+            long gap = times.get(hop) - times.get(hop - 1);
+            assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(100) && gap < TimeUnit.MILLISECONDS.toNanos(101),
+                "propagation plus transmission delay per hop: " + gap);
+        }
+    }
+
+    @Test
+    void longPathsAreTracedToTheEnd() {
+        assertEquals(8, chain(8).simulatePacketPath("D0", "D7").size());
+    }
+
+    @Test
+    void delayThresholdDropsLatePackets() {
+        NetworkSimulator simulator = chain(8);
+        List<String> log = new ArrayList<>();
+        simulator.setEventLog(log::add);
+        simulator.setDelayThreshold(250);
+
+        assertEquals(List.of("D0", "D1", "D2"), simulator.simulatePacketPath("D0", "D7"));
+        assertTrue(log.contains("Packet dropped due to delay."), log::toString);
+    }
+
+    @Test
+    void ttlExpiresAfterSixtyFourHops() {
+        NetworkSimulator simulator = chain(70);
+        List<String> log = new ArrayList<>();
+        simulator.setEventLog(log::add);
+
+        List<String> path = simulator.simulatePacketPath("D0", "D69");
+
+        assertEquals(65, path.size());
+        assertEquals("Packet dropped: TTL expired at D64", log.get(log.size() - 1));
+    }
+
+    @Test
+    void loopIsDetectedOnRevisit() {
+        NetworkSimulator simulator = chain(4);
+        simulator.addStaticRoute("D2", "10.0.1.0/24", "D1");
+        simulator.addStaticRoute("D1", "10.0.9.0/24", "D2");
+        simulator.addStaticRoute("D2", "10.0.9.0/24", "D1");
+        simulator.addDevice("X", "10.0.9.1", "255.255.255.0");
+        List<String> log = new ArrayList<>();
+        simulator.setEventLog(log::add);
+
+        List<String> path = simulator.simulatePacketPath("D1", "X");
+
+        assertEquals(List.of("D1", "D2", "D1"), path.subList(0, 3));
+        assertTrue(log.get(log.size() - 1).startsWith("Routing loop detected"), log::toString);
+    }
+
+    @Test
+    void loopBeyondTheTtlReachIsNotReportedAsTtlExpiry() {
+        // 100 devices, more than the TTL, with a loop of 11 hops entered after 40
+        NetworkSimulator simulator = new NetworkSimulator();
+        for (int i = 0; i < 100; i++) {
+            simulator.addDevice("D" + i, "10.0." + i + ".1", "255.255.255.0");
+        }
+        for (int i = 0; i < 40; i++) {
+            simulator.addStaticRoute("D" + i, "10.0.99.0/24", "D" + (i + 1));
+        }
+        simulator.addStaticRoute("D40", "10.0.99.0/24", "D30");
+        List<String> log = new ArrayList<>();
+        simulator.setEventLog(log::add);
+
+        List<String> path = simulator.simulatePacketPath("D0", "D99");
+
+        assertTrue(path.size() < 65, path::toString);
+        assertTrue(log.get(log.size() - 1).startsWith("Routing loop detected"), log::toString);
+    }
+}
@@ -0,0 +1,89 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SimulatorMetricsTest {
+    @Test
+    void hopsAreCountedPerDeviceAndLink() {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        simulator.simulatePacketPath("D0", "D3");
+        simulator.simulatePacketPath("D1", "D3");
+
+        MetricsSnapshot snapshot = simulator.getMetricsSnapshot();
+        assertEquals(1, snapshot.getForwarded(0));
+        assertEquals(2, snapshot.getForwarded(1));
+        assertEquals(2, snapshot.getForwarded(2));
+        assertEquals(0, snapshot.getForwarded(3));
+        long linkPackets = 0;
+        for (int link = 0; link < snapshot.getLinkCount(); link++) {
+            linkPackets += snapshot.getLinkPackets(link);
+        }
+        assertEquals(5, linkPackets);
+
+        SimulatorMetrics metrics = simulator.getMetrics();
+        assertEquals(5, metrics.getPacketsForwarded());
+        assertEquals(2, metrics.getPacketsDelivered());
+        assertEquals(2.5, metrics.getMeanHopCount());
+        assertEquals("forwarded=2 dropped=0 noRoute=0", metrics.getDeviceCounters("D1"));
+    }
+
+    @Test
+    void missingRoutesAndDropsAreCounted() {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        simulator.setDelayThreshold(150);
+        simulator.simulatePacketPath("D3", "D0");
+        simulator.simulatePacketPath("D0", "D3");
+
+        SimulatorMetrics metrics = simulator.getMetrics();
+        assertEquals(1, metrics.getPacketsWithoutRoute());
+        assertEquals(1, metrics.getPacketsDropped());
+        assertEquals(0, metrics.getPacketsDelivered());
+    }
+
+    @Test
+    void resetClearsEverything() {
+        NetworkSimulator simulator = SimulationEngineTest.chain(4);
+        simulator.simulatePacketPath("D0", "D3");
+        simulator.getMetrics().reset();
+
+        MetricsSnapshot snapshot = simulator.getMetricsSnapshot();
+        for (int device = 0; device < snapshot.getDeviceCount(); device++) {
+            assertEquals(0, snapshot.getForwarded(device));
+        }
+        assertEquals(0, snapshot.getHopCounts().getCount());
+        assertEquals(0, snapshot.getLatencies().getCount());
+        assertEquals(0, snapshot.getSimulatedNanos());
+
+        simulator.simulatePacketPath("D0", "D3");
+        assertEquals(3, simulator.getMetrics().getPacketsForwarded());
+    }
+
+    @Test
+    void growingKeepsConcurrentUpdates() throws InterruptedException {
+        Counters counters = new Counters(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    counters.increment(0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        // Engines keep counting into the array they hold while it is grown
+        Counters grown = counters;
+        for (int capacity = 2; capacity <= 1 << 14; capacity *= 2) {
+            grown = grown.grow(capacity);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, grown.get(0));
+        assertEquals(1 << 14, grown.length());
+    }
+}
@@ -0,0 +1,127 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotTest {
+    @TempDir
+    Path directory;
+
+    // A ring of routers routed by link-state routing, with a lossy link
+    static NetworkSimulator ring(int routers) {
+        NetworkSimulator simulator = new NetworkSimulator();
+        for (int i = 0; i < routers; i++) {
+            simulator.addDevice("R" + i, "10.0." + i + ".1", "255.255.255.0");
+        }
+        for (int i = 0; i < routers; i++) {
+            simulator.connect("R" + i, "R" + (i + 1) % routers, 1);
+        }
+        simulator.enableLinkStateRouting();
+        simulator.setLinkDefaults(10_000_000, 2, 16, QueueDiscipline.DROP_TAIL);
+        simulator.setLossModel("R0", "R1", LossModel.bernoulli(0.1));
+        simulator.setSeed(11);
+        return simulator;
+    }
+
+    static List<TrafficFlow> flows(int routers) {
+        List<TrafficFlow> flows = new ArrayList<>();
+        for (int i = 0; i < routers; i++) {
+            flows.add(new TrafficFlow("R" + i, "R" + (i + routers / 2) % routers, 200, 100));
+        }
+        return flows;
+    }
+
+    @Test
+    void restoredSimulatorForwardsAlike() throws IOException {
+        NetworkSimulator original = ring(8);
+        original.simulateLoad(flows(8));
+        Path file = directory.resolve("ring.snap");
+        original.saveSnapshot(file);
+
+        NetworkSimulator restored = new NetworkSimulator();
+        restored.restoreSnapshot(file);
+
+        assertEquals(original.getDeviceCount(), restored.getDeviceCount());
+        assertEquals(original.getLinkCount(), restored.getLinkCount());
+        assertEquals(original.getLink("R0", "R1").getLossModel().toString(),
+            restored.getLink("R0", "R1").getLossModel().toString());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(original.simulatePacketPath("R0", "R" + i), restored.simulatePacketPath("R0", "R" + i));
+        }
+        MetricsSnapshot before = original.getMetricsSnapshot();
+        MetricsSnapshot after = restored.getMetricsSnapshot();
+        for (int link = 0; link < before.getLinkCount(); link++) {
+            assertEquals(before.getLinkPackets(link), after.getLinkPackets(link));
+        }
+        assertEquals(before.getTopTalkers(3), after.getTopTalkers(3));
+    }
+
+    @Test
+    void resumedLoadMatchesFullRun() throws IOException {
+        TrafficResult full = ring(8).simulateLoad(flows(8));
+
+        Path checkpoint = directory.resolve("checkpoint.snap");
+        ring(8).simulateLoad(flows(8), 20, checkpoint);
+        NetworkSimulator restored = new NetworkSimulator();
+        restored.restoreSnapshot(checkpoint);
+        TrafficResult resumed = restored.resumeLoad(0, null);
+
+        assertEquals(full.getPacketsSent(), resumed.getPacketsSent());
+        assertEquals(full.getPacketsDelivered(), resumed.getPacketsDelivered());
+        assertEquals(full.getPacketsLost(), resumed.getPacketsLost());
+    }
+
+    @Test
+    void otherVersionsAreRejected() throws IOException {
+        Path file = directory.resolve("old.snap");
+        ring(4).saveSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putShort(4, (short) (SnapshotWriter.VERSION + 1));
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> new NetworkSimulator().restoreSnapshot(file));
+    }
+
+    @Test
+    void failedRestoreLeavesTheSimulatorEmpty() throws IOException {
+        Path file = directory.resolve("ring.snap");
+        NetworkSimulator original = ring(8);
+        original.simulateLoad(flows(8));
+        original.saveSnapshot(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Path truncated = directory.resolve("truncated.snap");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.setPacketSize(500);
+        assertThrows(IOException.class, () -> simulator.restoreSnapshot(truncated));
+
+        assertEquals(0, simulator.getDeviceCount());
+        assertEquals(0, simulator.getLinkCount());
+        assertEquals(500, simulator.getPacketSize());
+        assertEquals(0, simulator.getMetrics().getPacketsForwarded());
+        simulator.restoreSnapshot(file);
+        assertEquals(8, simulator.getDeviceCount());
+        assertEquals(original.simulatePacketPath("R0", "R4"), simulator.simulatePacketPath("R0", "R4"));
+    }
+
+    @Test
+    void overlongNamesAreNotTruncated() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        assertTrue(simulator.addDevice("R".repeat(70_000), "10.0.0.1", "255.255.255.0"));
+
+        assertThrows(IOException.class, () -> simulator.saveSnapshot(directory.resolve("long.snap")));
+    }
+}
@@ -0,0 +1,86 @@
+package networksimulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TopologyFileTest {
+    @TempDir
+    Path directory;
+
+    // Two link-state routers and a host behind each, reached by static routes
+    private static NetworkSimulator network() {
+        NetworkSimulator simulator = new NetworkSimulator();
+        simulator.addDevice("R1", "10.0.0.1", "255.255.255.0");
+        simulator.addDevice("R2", "10.0.1.1", "255.255.255.0");
+        simulator.addDevice("R3", "10.0.2.1", "255.255.255.0");
+        simulator.addDevice("H1", "192.168.1.10", "255.255.255.0");
+        simulator.addDevice("H2", "192.168.2.10", "255.255.255.0");
+        simulator.addStaticRoute("H1", "0.0.0.0/0", "R1");
+        simulator.addStaticRoute("H2", "0.0.0.0/0", "R3");
+        simulator.addStaticRoute("R1", "192.168.1.0/24", "H1");
+        simulator.addStaticRoute("R3", "192.168.2.0/24", "H2");
+        simulator.addStaticRoute("R3", "192.168.1.0/24", "R2");
+        simulator.addStaticRoute("R2", "192.168.1.0/24", "R1");
+        simulator.connect("R1", "R2", 1);
+        simulator.connect("R2", "R3", 2);
+        simulator.connect("R1", "R3", 5);
+        simulator.enableLinkStateRouting();
+        return simulator;
+    }
+
+    @Test
+    void exportedTopologyLoadsBackTheSame() throws IOException {
+        NetworkSimulator original = network();
+        Path file = directory.resolve("topology.txt");
+        original.exportTopology(file);
+
+        NetworkSimulator loaded = new NetworkSimulator();
+        assertTrue(loaded.loadTopology(file));
+        Path again = directory.resolve("again.txt");
+        loaded.exportTopology(again);
+
+        assertEquals(Files.readAllLines(file), Files.readAllLines(again));
+        assertEquals(original.getDeviceCount(), loaded.getDeviceCount());
+        for (int id = 0; id < original.getDeviceCount(); id++) {
+            assertEquals(original.getDevice(id).getName(), loaded.getDevice(id).getName());
+            assertEquals(original.getDevice(id).getRoutingTable().size(), loaded.getDevice(id).getRoutingTable().size());
+        }
+        assertEquals(List.of("H2", "R3", "R2", "R1", "H1"), loaded.simulatePacketPath("H2", "H1"));
+        assertEquals(original.simulatePacketPath("H1", "H2"), loaded.simulatePacketPath("H1", "H2"));
+    }
+
+    @Test
+    void malformedLinesAreSkipped() throws IOException {
+        Path file = directory.resolve("broken.txt");
+        Files.write(file, List.of(
+            "# comment",
+            "device A 10.0.0.1 255.255.255.0",
+            "device B 10.0.0.300 255.255.255.0",
+            "device B 10.0.1.1 255.255.255.0",
+            "route A 10.0.1.0/33 B",
+            "route C 10.0.1.0/24 B",
+            "route A 10.0.1.0/24 B",
+            "link A B 0",
+            "link A A 1",
+            "unknown line"));
+
+        NetworkSimulator simulator = new NetworkSimulator();
+        TopologyLoader loader = new TopologyLoader(simulator);
+        loader.load(file);
+
+        assertEquals(2, loader.getDevicesLoaded());
+        assertEquals(1, loader.getRoutesLoaded());
+        assertEquals(0, loader.getLinksLoaded());
+        assertEquals(6, loader.getErrors());
+        assertEquals(List.of("A", "B"), simulator.simulatePacketPath("A", "B"));
+        assertFalse(simulator.loadTopology(file));
+    }
+}